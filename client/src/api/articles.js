@@ -55,6 +55,12 @@ export async function getArticleDetail(eid, opts) {
         throw new Error("eid required");
     return getWithFallback(`/articles/${encodeURIComponent(eid)}`, undefined, opts);
 }
+/** Details for up to 500 eids in one call; eids the server does not know map to null. */
+export async function getArticleBatch(eids, opts) {
+    if (!eids.length)
+        return {};
+    return postWithFallback("/articles/batch", { eids }, opts);
+}
 export async function getArticleCitations(eid, opts) {
     if (!eid)
         throw new Error("eid required");
@@ -114,6 +114,15 @@ export async function getArticleDetail(
   return getWithFallback<ArticleDetail>(`/articles/${encodeURIComponent(eid)}`, undefined, opts);
 }
 
+/** Details for up to 500 eids in one call; eids the server does not know map to null. */
+export async function getArticleBatch(
+  eids: string[],
+  opts?: { signal?: AbortSignal; timeoutMs?: number }
+): Promise<Record<string, ArticleDetail>> {
+  if (!eids.length) return {};
+  return postWithFallback<Record<string, ArticleDetail>>("/articles/batch", { eids }, opts);
+}
+
 export async function getArticleCitations(
   eid: string,
   opts?: { signal?: AbortSignal; timeoutMs?: number }
@@ -0,0 +1,11 @@
+-- Meta database (SQL Server). Index behind the job lists in JobsDao:
+--   listByUserAfter (GET /jobs/mine?after=...) seeks on user_id, reads in (submitted_at, job_id) order
+--   and stops after TOP (n), so a page costs the same at any depth; listByUser (OFFSET paging) uses it
+--   too. INCLUDE covers the list columns, so neither query touches the clustered index.
+-- Idempotent; safe to re-run.
+IF NOT EXISTS (SELECT 1 FROM sys.indexes
+               WHERE name = 'IX_jobs_user_submitted' AND object_id = OBJECT_ID('dbo.jobs'))
+    CREATE NONCLUSTERED INDEX IX_jobs_user_submitted
+        ON dbo.jobs (user_id, submitted_at DESC, job_id DESC)
+        INCLUDE (state, row_count, bytes, completed_at);
+GO
@@ -0,0 +1,56 @@
+package com.example.clearcard.bench;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Deterministic generator for rows shaped like the article search result
+ * (same columns and roughly the same cell widths as the condition CTE output).
+ */
+public final class ArticleRows {
+
+    public static final List<String> COLUMNS = List.of(
+            "cited_eid", "cited_doi", "cited_title", "cited_journal",
+            "cited_pub_date", "cited_pub_year", "cited_pub_month", "cited_pub_day",
+            "cited_category", "citation_count", "fitness");
+
+    private static final String[] JOURNALS = {
+            "Journal of Applied Physics", "Physical Review B", "Nature Communications",
+            "Scientific Reports", "PLOS ONE", "Applied Physics Letters", "Nano Letters"
+    };
+    private static final String[] CATEGORIES = { "Article", "Review", "Letter", "Conference Paper" };
+    private static final String[] WORDS = {
+            "thermal", "quantum", "graphene", "transport", "spin", "lattice", "dynamics", "phase",
+            "magnetic", "structure", "optical", "electron", "interface", "model", "analysis", "films"
+    };
+
+    private final Random rnd;
+
+    public ArticleRows(long seed) { this.rnd = new Random(seed); }
+
+    public String[] next(long i) {
+        int year = 2008 + rnd.nextInt(11);
+        int month = 1 + rnd.nextInt(12);
+        int day = 1 + rnd.nextInt(28);
+        StringBuilder title = new StringBuilder(96);
+        int words = 6 + rnd.nextInt(10);
+        for (int w = 0; w < words; w++) {
+            if (w > 0) title.append(' ');
+            title.append(WORDS[rnd.nextInt(WORDS.length)]);
+        }
+        if (rnd.nextInt(8) == 0) title.append(", revisited");   // forces CSV quoting now and then
+        return new String[] {
+                "2-s2.0-" + (84_000_000_000L + i),
+                "10.1016/j.bench." + year + "." + i,
+                title.toString(),
+                JOURNALS[rnd.nextInt(JOURNALS.length)],
+                String.format("%04d-%02d-%02d", year, month, day),
+                Integer.toString(year),
+                Integer.toString(month),
+                Integer.toString(day),
+                CATEGORIES[rnd.nextInt(CATEGORIES.length)],
+                Double.toString((double) rnd.nextInt(400)),
+                rnd.nextInt(10) == 0 ? "" : Double.toString(Math.round(rnd.nextDouble() * 10_000) / 100.0)
+        };
+    }
+}
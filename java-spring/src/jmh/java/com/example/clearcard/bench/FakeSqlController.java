@@ -0,0 +1,82 @@
+package com.example.clearcard.bench;
+
+import com.example.clearcard.sql.Row;
+import com.example.clearcard.sql.Schema;
+import com.example.clearcard.sql.SqlChunk;
+import com.example.clearcard.sql.SqlControllerGrpc;
+import com.example.clearcard.sql.SqlRequest;
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Stand-in for the Python message-handler's SqlController. Pages are pre-built once so the
+ * server side costs only serialization + compression, and sending honours HTTP/2 flow control
+ * (onReady) the same way grpcio does.
+ */
+public class FakeSqlController extends SqlControllerGrpc.SqlControllerImplBase {
+
+    private final List<SqlChunk> pages;
+    private final String responseCompression;
+    private final long firstPageDelayMs;
+
+    public FakeSqlController(long rows, int pageSize, String responseCompression) {
+        this(rows, pageSize, responseCompression, 0);
+    }
+
+    /** {@code firstPageDelayMs} stands in for query time on the database behind the handler. */
+    public FakeSqlController(long rows, int pageSize, String responseCompression, long firstPageDelayMs) {
+        this.pages = buildPages(rows, pageSize);
+        this.responseCompression = responseCompression;
+        this.firstPageDelayMs = firstPageDelayMs;
+    }
+
+    public static List<SqlChunk> buildPages(long rows, int pageSize) {
+        Schema schema = Schema.newBuilder().addAllColumns(ArticleRows.COLUMNS).build();
+        ArticleRows gen = new ArticleRows(42);
+        List<SqlChunk> out = new ArrayList<>();
+        long i = 0;
+        while (i < rows) {
+            SqlChunk.Builder b = SqlChunk.newBuilder().setSchema(schema).setStatus("OK");
+            for (int n = 0; n < pageSize && i < rows; n++, i++) {
+                b.addRows(Row.newBuilder().addAllCells(Arrays.asList(gen.next(i))));
+            }
+            out.add(b.build());
+        }
+        out.add(SqlChunk.newBuilder().setSchema(schema).setStatus("OK").setLast(true).build());
+        return out;
+    }
+
+    @Override
+    public void run(SqlRequest request, StreamObserver<SqlChunk> obs) {
+        var call = (ServerCallStreamObserver<SqlChunk>) obs;
+        if (firstPageDelayMs > 0) {
+            try {
+                Thread.sleep(firstPageDelayMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                call.onError(Status.CANCELLED.asRuntimeException());
+                return;
+            }
+        }
+        if (responseCompression != null && !"identity".equals(responseCompression)) {
+            call.setCompression(responseCompression);
+        }
+        var state = new int[] { 0 };
+        var done = new boolean[] { false };
+        call.setOnReadyHandler(() -> {
+            while (!done[0] && call.isReady() && !call.isCancelled()) {
+                if (state[0] >= pages.size()) {
+                    done[0] = true;
+                    call.onCompleted();
+                    return;
+                }
+                call.onNext(pages.get(state[0]++));
+            }
+        });
+    }
+}
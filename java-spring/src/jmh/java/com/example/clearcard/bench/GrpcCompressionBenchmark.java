@@ -0,0 +1,103 @@
+package com.example.clearcard.bench;
+
+import com.example.clearcard.config.AppProps;
+import com.example.clearcard.config.GrpcClientConfig;
+import com.example.clearcard.sql.SqlChunk;
+import com.example.clearcard.sql.SqlControllerGrpc;
+import com.example.clearcard.sql.SqlRequest;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.netty.shaded.io.grpc.netty.NettyServerBuilder;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.lang.management.ManagementFactory;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Streams an article-shaped result (5000-row pages, as ArticleController.runSql requests) over a
+ * real loopback HTTP/2 connection and compares wire settings. {@code compression} is the response
+ * encoding the handler applies (SQL_RESPONSE_COMPRESSION in job_server.py); request compression is
+ * left off because a SqlRequest is a few hundred bytes.
+ *
+ * <p>Primary score is complete result drains per second. The {@code cpuMicros} aux counter is process CPU
+ * (client + server, both in this JVM) per wall second, so 1,000,000 means one core fully busy.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class GrpcCompressionBenchmark {
+
+    @Param({ "identity", "gzip" })
+    public String compression;
+
+    @Param({ "65535", "1048576", "8388608" })
+    public int flowControlWindow;
+
+    @Param({ "true", "false" })
+    public boolean autoFlowControl;
+
+    @Param({ "50000" })
+    public long rows;
+
+    private Server server;
+    private ManagedChannel channel;
+    private SqlControllerGrpc.SqlControllerBlockingStub stub;
+
+    @Setup(Level.Trial)
+    public void start() throws Exception {
+        server = NettyServerBuilder.forPort(0)
+                .addService(new FakeSqlController(rows, 5000, compression))
+                .build().start();
+
+        AppProps.Grpc g = new AppProps.Grpc();
+        g.setHandlerHost("127.0.0.1");
+        g.setHandlerPort(server.getPort());
+        g.setFlowControlWindow(flowControlWindow);
+        g.setAutoFlowControl(autoFlowControl);
+        channel = GrpcClientConfig.buildChannel(g);
+        stub = GrpcClientConfig.tune(SqlControllerGrpc.newBlockingStub(channel),
+                g.sqlRequestCompressionOrDefault(), g.getMaxInboundMessageSize());
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() throws Exception {
+        channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        server.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Cpu {
+        public long cpuMicros;
+        public long cellsRead;
+
+        @Setup(Level.Iteration)
+        public void reset() { cpuMicros = 0; cellsRead = 0; }
+    }
+
+    @Benchmark
+    public void drainArticleQuery(Cpu cpu, Blackhole bh) {
+        long c0 = processCpuNanos();
+        SqlRequest req = SqlRequest.newBuilder().setSql("SELECT 1").setPageSize(5000).setRequestId("bench").build();
+        Iterator<SqlChunk> it = stub.withDeadlineAfter(1, TimeUnit.MINUTES).run(req);
+        long cells = 0;
+        while (it.hasNext()) {
+            SqlChunk ch = it.next();
+            for (var r : ch.getRowsList()) {
+                cells += r.getCellsCount();
+                bh.consume(r.getCells(0));
+            }
+            if (ch.getLast()) break;
+        }
+        cpu.cellsRead += cells;
+        cpu.cpuMicros += (processCpuNanos() - c0) / 1_000;
+    }
+
+    private static long processCpuNanos() {
+        var os = ManagementFactory.getOperatingSystemMXBean();
+        if (os instanceof com.sun.management.OperatingSystemMXBean sun) return sun.getProcessCpuTime();
+        return 0;
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.clearcard.bench;
+
+import com.google.cloud.storage.BlobId;
+import com.google.cloud.storage.BlobInfo;
+import com.google.cloud.storage.Storage;
+import com.google.cloud.storage.contrib.nio.testing.LocalStorageHelper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes a job result the way worker.py does (headerless gzip CSV parts + manifest.json) into an
+ * in-memory Storage, so the result-serving code can be benchmarked without GCS.
+ */
+public final class ResultChunks {
+
+    public static final String BUCKET = "bench";
+
+    private ResultChunks() {}
+
+    /** A fresh, isolated in-memory Storage (LocalStorageHelper.getOptions() shares and resets one). */
+    public static Storage localStorage() {
+        return LocalStorageHelper.customOptions(false).getService();
+    }
+
+    /** Generates {@code rows} article rows in parts of {@code rowsPerChunk}; returns the gs:// manifest URI. */
+    public static String write(Storage storage, String jobId, long rows, int rowsPerChunk) {
+        String base = "jobs/" + jobId + "/";
+        ArticleRows gen = new ArticleRows(42);
+        StringBuilder chunks = new StringBuilder();
+        int idx = 0;
+        for (long start = 0; start < rows; start += rowsPerChunk, idx++) {
+            long end = Math.min(rows, start + rowsPerChunk);
+            byte[] gz = gzipCsv(gen, start, end);
+            String name = base + String.format("part-%05d.csv.gz", idx);
+            storage.create(BlobInfo.newBuilder(BlobId.of(BUCKET, name)).setContentType("application/gzip").build(), gz);
+            if (chunks.length() > 0) chunks.append(',');
+            chunks.append("{\"uri\":\"gs://").append(BUCKET).append('/').append(name)
+                    .append("\",\"rows\":").append(end - start)
+                    .append(",\"bytes\":").append(gz.length).append('}');
+        }
+        StringBuilder cols = new StringBuilder();
+        for (String c : ArticleRows.COLUMNS) {
+            if (cols.length() > 0) cols.append(',');
+            cols.append('"').append(c).append('"');
+        }
+        String manifest = "{\"job_id\":\"" + jobId + "\",\"columns\":[" + cols + "],\"row_count\":" + rows
+                + ",\"format\":\"csv\",\"compression\":\"gzip\",\"chunks\":[" + chunks + "]}";
+        String name = base + "manifest.json";
+        storage.create(BlobInfo.newBuilder(BlobId.of(BUCKET, name)).setContentType("application/json").build(),
+                manifest.getBytes(StandardCharsets.UTF_8));
+        return "gs://" + BUCKET + "/" + name;
+    }
+
+    /** Plain CSV lines (no gzip), for the per-line micro benchmarks. */
+    public static String[] lines(int n) {
+        ArticleRows gen = new ArticleRows(7);
+        String[] out = new String[n];
+        StringBuilder sb = new StringBuilder(256);
+        for (int i = 0; i < n; i++) {
+            sb.setLength(0);
+            appendRow(sb, gen.next(i));
+            out[i] = sb.toString();
+        }
+        return out;
+    }
+
+    private static byte[] gzipCsv(ArticleRows gen, long from, long to) {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream((int) Math.min(Integer.MAX_VALUE, (to - from) * 60));
+        try (Writer w = new OutputStreamWriter(new GZIPOutputStream(bos, 64 * 1024), StandardCharsets.UTF_8)) {
+            StringBuilder sb = new StringBuilder(256);
+            for (long i = from; i < to; i++) {
+                sb.setLength(0);
+                appendRow(sb, gen.next(i));
+                sb.append("\r\n"); // python csv.writer default terminator
+                w.append(sb);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bos.toByteArray();
+    }
+
+    /** Same minimal quoting as python's csv.writer (QUOTE_MINIMAL). */
+    private static void appendRow(StringBuilder sb, String[] cells) {
+        for (int c = 0; c < cells.length; c++) {
+            if (c > 0) sb.append(',');
+            String v = cells[c];
+            if (v.indexOf(',') >= 0 || v.indexOf('"') >= 0 || v.indexOf('\n') >= 0 || v.indexOf('\r') >= 0) {
+                sb.append('"').append(v.replace("\"", "\"\"")).append('"');
+            } else {
+                sb.append(v);
+            }
+        }
+    }
+}
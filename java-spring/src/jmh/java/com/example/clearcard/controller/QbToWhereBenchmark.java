@@ -0,0 +1,55 @@
+package com.example.clearcard.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ArticleController.qbToWhere on query-builder trees the UI actually produces: a flat AND of a few
+ * rules, and a nested group with IN lists and LIKE escapes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class QbToWhereBenchmark {
+
+    @Param({ "flat", "nested" })
+    public String shape;
+
+    private JsonNode qb;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        String json = switch (shape) {
+            case "flat" -> """
+                {"combinator":"and","rules":[
+                  {"field":"cited_pub_year","operator":">=","value":2012},
+                  {"field":"cited_category","operator":"=","value":"Article"},
+                  {"field":"cited_title","operator":"contains","value":"graphene"}
+                ]}""";
+            case "nested" -> """
+                {"combinator":"and","rules":[
+                  {"field":"cited_pub_year","operator":"between","value":[2010,2016]},
+                  {"combinator":"or","rules":[
+                    {"field":"cited_journal","operator":"in","value":["Nano Letters","Physical Review B","PLOS ONE","Scientific Reports"]},
+                    {"field":"cited_title","operator":"begins_with","value":"50% of [spin]_transport"},
+                    {"combinator":"and","rules":[
+                      {"field":"citation_count","operator":"gt","value":"100"},
+                      {"field":"fitness","operator":"not_null"},
+                      {"field":"cited_doi","operator":"ends_with","value":"o'brien"}
+                    ]}
+                  ]},
+                  {"field":"cited_category","operator":"not_in","value":["Letter","Conference Paper"]}
+                ]}""";
+            default -> throw new IllegalArgumentException(shape);
+        };
+        qb = new ObjectMapper().readTree(json);
+    }
+
+    @Benchmark
+    public String qbToWhere() {
+        return ArticleController.qbToWhere(qb);
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.clearcard.service;
+
+import com.example.clearcard.bench.ArticleRows;
+import com.example.clearcard.bench.ResultChunks;
+import com.example.clearcard.config.AppProps;
+import com.example.clearcard.metrics.ResultMetrics;
+import com.example.clearcard.resilience.Dependencies;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.cloud.storage.Storage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.tracing.Tracer;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The /jobs/{id}/download.json path: gzip CSV parts in (in-memory) GCS to one JSON array.
+ *
+ * <p>{@code parseLines}/{@code toObjects}/{@code serialize} split the per-row cost over a fixed batch
+ * of {@value #BATCH} article rows; {@code endToEnd} runs the whole service method. Run with the gc
+ * profiler (on by default in build.gradle) to get bytes allocated per op. Larger results:
+ * {@code ./gradlew jmh -PjmhIncludes=CsvJsonBenchmark.endToEnd} after raising {@code rows} here,
+ * e.g. to 5000000 (needs a few GB of heap, since the method materialises every row).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class CsvJsonBenchmark {
+
+    static final int BATCH = 10_000;
+
+    @Param({ "100000", "1000000" })
+    public long rows;
+
+    private String[] lines;
+    private List<List<String>> parsed;
+    private List<Map<String, Object>> objects;
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private GcsCsvJsonService service;
+    private String manifestUri;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        lines = ResultChunks.lines(BATCH);
+        parsed = new ArrayList<>(BATCH);
+        for (String l : lines) parsed.add(GcsCsvJsonService.parseCsvLine(l));
+        objects = new ArrayList<>(BATCH);
+        for (List<String> cells : parsed) objects.add(GcsCsvJsonService.toObject(ArticleRows.COLUMNS, cells));
+
+        Storage storage = ResultChunks.localStorage();
+        manifestUri = ResultChunks.write(storage, "json-" + rows, rows, 50_000);
+        AppProps props = new AppProps();
+        Dependencies deps = new Dependencies(props);
+        service = new GcsCsvJsonService(storage, new ManifestRepository(storage, deps, props), deps,
+                new ResultMetrics(new SimpleMeterRegistry()), Tracer.NOOP);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void parseLines(Blackhole bh) {
+        for (String l : lines) bh.consume(GcsCsvJsonService.parseCsvLine(l));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void toObjects(Blackhole bh) {
+        for (List<String> cells : parsed) bh.consume(GcsCsvJsonService.toObject(ArticleRows.COLUMNS, cells));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public byte[] serialize() throws Exception {
+        return mapper.writeValueAsBytes(objects);
+    }
+
+    /** Ops/s here is whole results per second; multiply by {@code rows} for rows/s. */
+    @Benchmark
+    public byte[] endToEnd() {
+        return service.jsonArrayBytesFromManifestGs(manifestUri);
+    }
+}
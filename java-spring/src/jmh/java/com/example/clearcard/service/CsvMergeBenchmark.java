@@ -0,0 +1,57 @@
+package com.example.clearcard.service;
+
+import com.example.clearcard.bench.ResultChunks;
+import com.example.clearcard.config.AppProps;
+import com.example.clearcard.metrics.ResultMetrics;
+import com.example.clearcard.resilience.Dependencies;
+import com.google.cloud.storage.Storage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.tracing.Tracer;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The /jobs/{id}/download.csv path: every gzip part listed in the manifest inflated and copied into one
+ * response stream. The response is a counting sink, so the score is pure read/inflate/copy cost.
+ * This path streams, so {@code rows} can go to 5000000 without a large heap.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class CsvMergeBenchmark {
+
+    @Param({ "100000", "1000000" })
+    public long rows;
+
+    @Param({ "50000" })
+    public int rowsPerChunk;
+
+    private GcsCsvMergeService service;
+    private String manifestUri;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Storage storage = ResultChunks.localStorage();
+        manifestUri = ResultChunks.write(storage, "merge-" + rows, rows, rowsPerChunk);
+        AppProps props = new AppProps();
+        Dependencies deps = new Dependencies(props);
+        service = new GcsCsvMergeService(storage, new ManifestRepository(storage, deps, props), deps,
+                new ResultMetrics(new SimpleMeterRegistry()), Tracer.NOOP);
+    }
+
+    /** Ops/s is whole results per second; returns bytes written so the work cannot be elided. */
+    @Benchmark
+    public long merge() throws Exception {
+        CountingSink sink = new CountingSink();
+        service.mergedCsvFromManifestGs(manifestUri).writeTo(sink);
+        return sink.bytes;
+    }
+
+    static final class CountingSink extends OutputStream {
+        long bytes;
+        @Override public void write(int b) { bytes++; }
+        @Override public void write(byte[] b, int off, int len) { bytes += len; }
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.clearcard.loadtest;
+
+import com.example.clearcard.JobAck;
+import com.example.clearcard.JobId;
+import com.example.clearcard.JobServiceGrpc;
+import com.example.clearcard.JobStatus;
+import com.example.clearcard.ResultManifestRef;
+import com.example.clearcard.SubmitJobRequest;
+import com.example.clearcard.bench.ResultChunks;
+import com.google.cloud.storage.Storage;
+import com.google.protobuf.Timestamp;
+import io.grpc.Status;
+import io.grpc.stub.StreamObserver;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Stand-in for the message-handler's JobService + worker.py. A submitted job sits in PENDING, then
+ * RUNNING for {@code runMs}, then writes {@code rows} article rows as gzip parts + manifest into the
+ * given (in-memory) Storage and turns SUCCEEDED.
+ */
+public class FakeJobService extends JobServiceGrpc.JobServiceImplBase {
+
+    private record Job(String id, Instant submitted, String state, String manifestUri, long rows, long bytes) {
+        Job with(String state, String manifestUri, long rows, long bytes) {
+            return new Job(id, submitted, state, manifestUri, rows, bytes);
+        }
+    }
+
+    private final Storage storage;
+    private final long rows;
+    private final int rowsPerChunk;
+    private final long runMs;
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+    private final ExecutorService workers = Executors.newFixedThreadPool(2, r -> {
+        Thread t = new Thread(r, "fake-worker");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public FakeJobService(Storage storage, long rows, int rowsPerChunk, long runMs) {
+        this.storage = storage;
+        this.rows = rows;
+        this.rowsPerChunk = rowsPerChunk;
+        this.runMs = runMs;
+    }
+
+    @Override
+    public void submit(SubmitJobRequest req, StreamObserver<JobAck> obs) {
+        String id = UUID.randomUUID().toString();
+        jobs.put(id, new Job(id, Instant.now(), "PENDING", null, 0, 0));
+        workers.submit(() -> run(id));
+        obs.onNext(JobAck.newBuilder().setJobId(id).setStatus("PENDING").build());
+        obs.onCompleted();
+    }
+
+    private void run(String id) {
+        jobs.computeIfPresent(id, (k, j) -> j.with("RUNNING", null, 0, 0));
+        try {
+            Thread.sleep(runMs);
+            String uri = ResultChunks.write(storage, id, rows, rowsPerChunk);
+            jobs.computeIfPresent(id, (k, j) -> j.with("SUCCEEDED", uri, rows, rows * 60));
+        } catch (Exception e) {
+            jobs.computeIfPresent(id, (k, j) -> j.with("FAILED", null, 0, 0));
+        }
+    }
+
+    @Override
+    public void getStatus(JobId req, StreamObserver<JobStatus> obs) {
+        Job j = jobs.get(req.getJobId());
+        if (j == null) {
+            obs.onError(Status.NOT_FOUND.withDescription("no such job").asRuntimeException());
+            return;
+        }
+        obs.onNext(status(j));
+        obs.onCompleted();
+    }
+
+    @Override
+    public void getResultManifest(JobId req, StreamObserver<ResultManifestRef> obs) {
+        Job j = jobs.get(req.getJobId());
+        ResultManifestRef.Builder b = ResultManifestRef.newBuilder();
+        if (j != null && "SUCCEEDED".equals(j.state())) {
+            b.setStatus("OK").setGcsManifestUri(j.manifestUri());
+        } else {
+            b.setStatus(j == null ? "ERROR" : j.state()).setErrorMessage(j == null ? "no such job" : "not ready");
+        }
+        obs.onNext(b.build());
+        obs.onCompleted();
+    }
+
+    @Override
+    public void cancel(JobId req, StreamObserver<JobStatus> obs) {
+        Job j = jobs.computeIfPresent(req.getJobId(), (k, old) -> old.with("CANCELLED", null, 0, 0));
+        if (j == null) {
+            obs.onError(Status.NOT_FOUND.withDescription("no such job").asRuntimeException());
+            return;
+        }
+        obs.onNext(status(j));
+        obs.onCompleted();
+    }
+
+    private static JobStatus status(Job j) {
+        JobStatus.Builder b = JobStatus.newBuilder()
+                .setState(j.state())
+                .setRowCount(j.rows())
+                .setBytes(j.bytes())
+                .setSubmittedAt(Timestamp.newBuilder().setSeconds(j.submitted().getEpochSecond()));
+        return b.build();
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.clearcard.loadtest;
+
+import com.example.clearcard.metrics.LatencyHistogram;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntFunction;
+
+/**
+ * Closed-loop HTTP load: {@code concurrency} virtual threads each send the next request as soon as
+ * the previous body has been fully read. One scenario at a time, so each histogram is one endpoint.
+ */
+public final class HttpDriver {
+
+    /** Builds the request for worker {@code w}; called once per request. */
+    public record Scenario(String name, IntFunction<HttpRequest> request) {}
+
+    public record Result(String scenario, int concurrency, double seconds, long ok, long throttled,
+                         long unavailable, long errors, long bytes, double rps, double mbPerSec,
+                         long p50us, long p90us, long p99us, long p999us, long maxUs) {}
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+
+    public Result run(Scenario s, int concurrency, Duration warmup, Duration measure) throws InterruptedException {
+        drive(s, concurrency, warmup, null);
+        Counters c = new Counters();
+        long t0 = System.nanoTime();
+        drive(s, concurrency, measure, c);
+        double secs = (System.nanoTime() - t0) / 1e9;
+        LatencyHistogram h = c.latency;
+        return new Result(s.name(), concurrency, secs, c.ok.get(), c.throttled.get(), c.unavailable.get(),
+                c.errors.get(), c.bytes.get(), c.ok.get() / secs, c.bytes.get() / secs / (1 << 20),
+                h.percentile(0.50), h.percentile(0.90), h.percentile(0.99), h.percentile(0.999), h.max());
+    }
+
+    private void drive(Scenario s, int concurrency, Duration d, Counters c) throws InterruptedException {
+        if (d.isZero()) return;
+        long deadline = System.nanoTime() + d.toNanos();
+        List<Thread> threads = new ArrayList<>(concurrency);
+        for (int w = 0; w < concurrency; w++) {
+            int worker = w;
+            threads.add(Thread.ofVirtual().name("load-" + s.name() + "-" + w).start(() -> {
+                // stagger the first request so workers don't move in lock-step
+                sleepQuietly(ThreadLocalRandom.current().nextInt(50));
+                while (System.nanoTime() < deadline) once(s, worker, c);
+            }));
+        }
+        for (Thread t : threads) t.join();
+    }
+
+    private void once(Scenario s, int worker, Counters c) {
+        long start = System.nanoTime();
+        int status;
+        long bytes = 0;
+        try {
+            HttpResponse<InputStream> resp = client.send(s.request().apply(worker), HttpResponse.BodyHandlers.ofInputStream());
+            status = resp.statusCode();
+            try (InputStream in = resp.body()) {
+                byte[] buf = new byte[64 * 1024];
+                for (int n; (n = in.read(buf)) > 0; ) bytes += n;
+            }
+        } catch (IOException e) {
+            status = -1;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        if (c == null) return;
+        long micros = (System.nanoTime() - start) / 1_000;
+        if (status >= 200 && status < 300) { // latency percentiles are for successful requests only
+            c.ok.incrementAndGet();
+            c.bytes.addAndGet(bytes);
+            c.latency.recordMicros(micros);
+        } else if (status == 429) {
+            c.throttled.incrementAndGet();
+            sleepQuietly(100); // a real client would honour Retry-After
+        } else if (status == 503) {
+            c.unavailable.incrementAndGet();
+            sleepQuietly(100);
+        } else {
+            c.errors.incrementAndGet();
+        }
+    }
+
+    private static void sleepQuietly(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static final class Counters {
+        final LatencyHistogram latency = new LatencyHistogram();
+        final AtomicLong ok = new AtomicLong();
+        final AtomicLong throttled = new AtomicLong();
+        final AtomicLong unavailable = new AtomicLong();
+        final AtomicLong errors = new AtomicLong();
+        final AtomicLong bytes = new AtomicLong();
+    }
+}
@@ -0,0 +1,238 @@
+package com.example.clearcard.loadtest;
+
+import com.example.clearcard.ClearCardApplication;
+import com.example.clearcard.bench.FakeSqlController;
+import com.example.clearcard.bench.ResultChunks;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.NullNode;
+import com.google.cloud.storage.Storage;
+import io.grpc.Server;
+import io.grpc.netty.shaded.io.grpc.netty.NettyServerBuilder;
+import org.springframework.beans.factory.support.BeanDefinitionBuilder;
+import org.springframework.beans.factory.support.BeanDefinitionRegistry;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * Boots the real Spring app against in-process stand-ins (fake SqlController/JobService over gRPC
+ * loopback, in-memory GCS, H2 in SQL Server mode) and drives its HTTP endpoints one scenario at a
+ * time. Prints a latency/throughput table and writes the same numbers to build/loadtest/.
+ *
+ * <pre>
+ *   ./gradlew loadTest -PloadArgs="concurrency=32 duration=30 scenarios=articles,download.csv"
+ * </pre>
+ * Arguments are key=value; see {@link #DEFAULTS}.
+ */
+public final class LoadTest {
+
+    static final Map<String, String> DEFAULTS = new LinkedHashMap<>();
+    static {
+        DEFAULTS.put("scenarios", "articles,download.csv,download.json,dashboard.default,dashboard.custom,status");
+        DEFAULTS.put("concurrency", "16");
+        DEFAULTS.put("warmup", "5");             // seconds per scenario
+        DEFAULTS.put("duration", "20");          // seconds per scenario
+        DEFAULTS.put("users", "8");              // distinct accounts the workers rotate through
+        DEFAULTS.put("articleRows", "20000");    // rows per /articles/search response
+        DEFAULTS.put("handlerDelayMs", "0");     // simulated DB time before the first SqlChunk
+        DEFAULTS.put("jobs", "4");               // finished jobs the download/status scenarios hit
+        DEFAULTS.put("jobRows", "100000");
+        DEFAULTS.put("rowsPerChunk", "50000");
+        DEFAULTS.put("jobRunMs", "200");
+        DEFAULTS.put("admission", "true");       // false measures raw capacity without 429s
+        DEFAULTS.put("out", "build/loadtest");
+    }
+
+    private static final ObjectMapper JSON = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT)
+            .findAndRegisterModules();
+
+    public static void main(String[] argv) throws Exception {
+        Map<String, String> a = new LinkedHashMap<>(DEFAULTS);
+        for (String kv : argv) {
+            int eq = kv.indexOf('=');
+            if (eq <= 0 || !DEFAULTS.containsKey(kv.substring(0, eq))) {
+                System.err.println("unknown argument: " + kv + " (known: " + DEFAULTS.keySet() + ")");
+                System.exit(2);
+            }
+            a.put(kv.substring(0, eq), kv.substring(eq + 1));
+        }
+        int concurrency = Integer.parseInt(a.get("concurrency"));
+
+        Storage storage = ResultChunks.localStorage();
+        Server grpc = NettyServerBuilder.forPort(0)
+                .addService(new FakeSqlController(Long.parseLong(a.get("articleRows")), 5000, "identity",
+                        Long.parseLong(a.get("handlerDelayMs"))))
+                .addService(new FakeJobService(storage, Long.parseLong(a.get("jobRows")),
+                        Integer.parseInt(a.get("rowsPerChunk")), Long.parseLong(a.get("jobRunMs"))))
+                .build().start();
+
+        ConfigurableApplicationContext app = new SpringApplicationBuilder(ClearCardApplication.class)
+                .properties(appProperties(grpc.getPort(), a))
+                .initializers(ctx -> ctx.addBeanFactoryPostProcessor(bf -> {
+                    // swap GcpConfig's real Storage for the in-memory one the fake worker writes to
+                    var reg = (BeanDefinitionRegistry) bf;
+                    if (reg.containsBeanDefinition("storage")) reg.removeBeanDefinition("storage");
+                    reg.registerBeanDefinition("storage",
+                            BeanDefinitionBuilder.genericBeanDefinition(Storage.class, () -> storage).getBeanDefinition());
+                }))
+                .run();
+        int port = ((WebServerApplicationContext) app).getWebServer().getPort();
+        String base = "http://127.0.0.1:" + port;
+
+        try {
+            Fixture fx = Fixture.prepare(base, Integer.parseInt(a.get("users")), Integer.parseInt(a.get("jobs")));
+            HttpDriver driver = new HttpDriver();
+            Duration warmup = Duration.ofSeconds(Long.parseLong(a.get("warmup")));
+            Duration measure = Duration.ofSeconds(Long.parseLong(a.get("duration")));
+
+            List<HttpDriver.Result> results = new ArrayList<>();
+            for (String name : a.get("scenarios").split(",")) {
+                HttpDriver.Scenario s = fx.scenario(name.trim());
+                System.out.printf("running %s (%d workers, %ss warmup + %ss)...%n",
+                        s.name(), concurrency, warmup.toSeconds(), measure.toSeconds());
+                results.add(driver.run(s, concurrency, warmup, measure));
+            }
+            report(results, a);
+        } finally {
+            app.close();
+            grpc.shutdownNow();
+        }
+    }
+
+    private static Map<String, Object> appProperties(int grpcPort, Map<String, String> a) {
+        Map<String, Object> p = new LinkedHashMap<>();
+        p.put("server.port", "0");
+        p.put("management.server.port", "0");
+        p.put("spring.grpc.server.port", "0");
+        p.put("app.grpc.handler-host", "127.0.0.1");
+        p.put("app.grpc.handler-port", Integer.toString(grpcPort));
+        p.put("app.gcs.bucket", ResultChunks.BUCKET);
+        p.put("app.admission.enabled", a.get("admission"));
+        p.put("app.login.per-ip-rate-per-second", "0");
+        p.put("spring.cloud.gcp.core.enabled", "false");
+        p.put("spring.cloud.gcp.storage.enabled", "false");
+        p.put("spring.datasource.url", "jdbc:h2:mem:loadtest;MODE=MSSQLServer;DATABASE_TO_UPPER=false;NON_KEYWORDS=VALUE,YEAR;"
+                + "DB_CLOSE_DELAY=-1;INIT=CREATE SCHEMA IF NOT EXISTS dbo\\;SET SCHEMA dbo");
+        p.put("spring.datasource.driver-class-name", "org.h2.Driver");
+        p.put("spring.datasource.username", "sa");
+        p.put("spring.datasource.password", "");
+        p.put("spring.jpa.properties.hibernate.dialect", "org.hibernate.dialect.H2Dialect");
+        p.put("spring.sql.init.mode", "always");
+        p.put("spring.sql.init.schema-locations", "classpath:loadtest/schema.sql");
+        p.put("spring.sql.init.data-locations", "classpath:loadtest/data.sql");
+        p.put("logging.level.com.example.clearcard", "WARN"); // per-request INFO logs would skew latency
+        return p;
+    }
+
+    private static void report(List<HttpDriver.Result> results, Map<String, String> args) throws Exception {
+        System.out.println();
+        System.out.printf("%-18s %8s %8s %6s %6s %6s %9s %9s %9s %9s %9s %9s%n",
+                "scenario", "ok", "req/s", "429", "503", "err", "MiB/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+        for (HttpDriver.Result r : results) {
+            System.out.printf("%-18s %8d %8.1f %6d %6d %6d %9.1f %9.2f %9.2f %9.2f %9.2f %9.2f%n",
+                    r.scenario(), r.ok(), r.rps(), r.throttled(), r.unavailable(), r.errors(), r.mbPerSec(),
+                    r.p50us() / 1e3, r.p90us() / 1e3, r.p99us() / 1e3, r.p999us() / 1e3, r.maxUs() / 1e3);
+        }
+        Path dir = Path.of(args.get("out"));
+        Files.createDirectories(dir);
+        Path file = dir.resolve("results-" + Instant.now().toString().replace(':', '-') + ".json");
+        Map<String, Object> doc = new LinkedHashMap<>();
+        doc.put("args", args);
+        doc.put("results", results);
+        JSON.writeValue(file.toFile(), doc);
+        System.out.println("\nwritten " + file.toAbsolutePath());
+    }
+
+    /** Accounts, finished jobs and pins the scenarios run against. */
+    private record Fixture(String base, List<String> tokens, List<String> jobIds) {
+
+        private static final HttpClient HTTP = HttpClient.newHttpClient();
+        private static final String SEARCH = """
+                {"yearFrom":2010,"yearTo":2016,"sort":"citation_count","order":"desc",
+                 "qb":{"combinator":"and","rules":[
+                   {"field":"cited_category","operator":"=","value":"Article"},
+                   {"field":"cited_title","operator":"contains","value":"graphene"}]}}""";
+
+        static Fixture prepare(String base, int users, int jobs) throws Exception {
+            List<String> tokens = new ArrayList<>();
+            String run = Long.toString(System.currentTimeMillis(), 36);
+            for (int i = 0; i < users; i++) {
+                String body = "{\"username\":\"load-" + run + "-" + i + "\",\"password\":\"load-test-pw\"}";
+                JsonNode r = post(base + "/auth/register", null, "application/json", body);
+                tokens.add(r.get("token").asText());
+            }
+            List<String> jobIds = new ArrayList<>();
+            for (int i = 0; i < jobs; i++) {
+                JsonNode r = post(base + "/jobs", tokens.get(0), "text/plain",
+                        "SELECT * FROM condition /* load " + i + " */");
+                jobIds.add(r.get("job_id").asText());
+            }
+            long deadline = System.nanoTime() + Duration.ofMinutes(5).toNanos();
+            for (String id : jobIds) {
+                while (true) {
+                    String state = get(base + "/jobs/" + id, tokens.get(0)).path("state").asText();
+                    if ("SUCCEEDED".equals(state)) break;
+                    if ("FAILED".equals(state) || System.nanoTime() > deadline) {
+                        throw new IllegalStateException("fixture job " + id + " ended " + state);
+                    }
+                    Thread.sleep(100);
+                }
+            }
+            for (String t : tokens) for (String id : jobIds) post(base + "/jobs/" + id + "/pin", t, "application/json", "");
+            System.out.printf("fixture ready: %d users, %d jobs%n", tokens.size(), jobIds.size());
+            return new Fixture(base, tokens, jobIds);
+        }
+
+        HttpDriver.Scenario scenario(String name) {
+            return switch (name) {
+                case "articles" -> new HttpDriver.Scenario(name, w -> req(w, "/articles/search")
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString(SEARCH)).build());
+                case "download.csv", "download.json" -> new HttpDriver.Scenario(name, w -> req(w,
+                        "/jobs/" + jobIds.get(w % jobIds.size()) + "/" + name).GET().build());
+                case "dashboard.default" -> new HttpDriver.Scenario(name, w -> req(w, "/dashboard/default").GET().build());
+                case "dashboard.custom" -> new HttpDriver.Scenario(name, w -> req(w, "/dashboard/custom").GET().build());
+                case "status" -> new HttpDriver.Scenario(name, w -> req(w,
+                        "/jobs/" + jobIds.get(w % jobIds.size())).GET().build());
+                default -> throw new IllegalArgumentException("unknown scenario " + name);
+            };
+        }
+
+        private HttpRequest.Builder req(int worker, String path) {
+            return HttpRequest.newBuilder(URI.create(base + path))
+                    .timeout(Duration.ofSeconds(60))
+                    .header("Authorization", "Bearer " + tokens.get(worker % tokens.size()));
+        }
+
+        private static JsonNode post(String url, String token, String type, String body) throws Exception {
+            var b = HttpRequest.newBuilder(URI.create(url)).header("Content-Type", type)
+                    .POST(HttpRequest.BodyPublishers.ofString(body));
+            if (token != null) b.header("Authorization", "Bearer " + token);
+            return send(b.build());
+        }
+
+        private static JsonNode get(String url, String token) throws Exception {
+            return send(HttpRequest.newBuilder(URI.create(url)).header("Authorization", "Bearer " + token).GET().build());
+        }
+
+        private static JsonNode send(HttpRequest r) throws Exception {
+            HttpResponse<String> resp = HTTP.send(r, HttpResponse.BodyHandlers.ofString());
+            if (resp.statusCode() / 100 != 2) {
+                throw new IllegalStateException(r.method() + " " + r.uri() + " -> " + resp.statusCode() + ": " + resp.body());
+            }
+            return resp.body().isBlank() ? NullNode.getInstance() : JSON.readTree(resp.body());
+        }
+    }
+}
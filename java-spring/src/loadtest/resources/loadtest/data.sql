@@ -0,0 +1,16 @@
+-- 7 journals x 11 years per measure, roughly the size of the production dashboard tables.
+DELETE FROM dashboard_counts;
+DELETE FROM dashboard_impact_factors;
+
+INSERT INTO dashboard_counts (measure, journal, [year], [value])
+SELECT m.measure, j.journal, y.X, MOD(y.X * 37 + LENGTH(j.journal) * 101 + LENGTH(m.measure) * 13, 5000)
+  FROM (VALUES ('PUBS'), ('CITES'), ('PUBS_2024'), ('CITES_2024'), ('ORIG_PUBS'), ('ORIG_CITES')) m(measure)
+ CROSS JOIN (VALUES ('Journal of Applied Physics'), ('Physical Review B'), ('Nature Communications'),
+                    ('Scientific Reports'), ('PLOS ONE'), ('Applied Physics Letters'), ('Nano Letters')) j(journal)
+ CROSS JOIN SYSTEM_RANGE(2008, 2018) y;
+
+INSERT INTO dashboard_impact_factors (journal, [year], if_val)
+SELECT j.journal, y.X, MOD(y.X * 7 + LENGTH(j.journal), 40) / 3.0
+  FROM (VALUES ('Journal of Applied Physics'), ('Physical Review B'), ('Nature Communications'),
+               ('Scientific Reports'), ('PLOS ONE'), ('Applied Physics Letters'), ('Nano Letters')) j(journal)
+ CROSS JOIN SYSTEM_RANGE(2008, 2018) y;
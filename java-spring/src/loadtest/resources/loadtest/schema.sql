@@ -0,0 +1,57 @@
+-- H2 (MODE=MSSQLServer) stand-in for the meta database; only what the load scenarios touch.
+CREATE TABLE IF NOT EXISTS app_users (
+    user_id        UUID PRIMARY KEY,
+    username       VARCHAR(200) NOT NULL UNIQUE,
+    password_hash  VARCHAR(200) NOT NULL,
+    created_at     TIMESTAMP(6) WITH TIME ZONE NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS jobs (
+    job_id         VARCHAR(64) PRIMARY KEY,
+    user_id        VARCHAR(200) NOT NULL,
+    state          VARCHAR(20) NOT NULL,
+    row_count      BIGINT DEFAULT 0,
+    bytes          BIGINT DEFAULT 0,
+    submitted_at   TIMESTAMP(6) NOT NULL,
+    started_at     TIMESTAMP(6),
+    completed_at   TIMESTAMP(6),
+    sql_text       CLOB,
+    format         VARCHAR(10),
+    page_size      INT,
+    max_rows       BIGINT,
+    gcs_uri        VARCHAR(1024),
+    error_message  VARCHAR(4000)
+);
+
+-- same as db/001_jobs_user_submitted_index.sql
+CREATE INDEX IF NOT EXISTS IX_jobs_user_submitted ON jobs (user_id, submitted_at DESC, job_id DESC);
+
+CREATE TABLE IF NOT EXISTS job_configs (
+    job_id         VARCHAR(64) PRIMARY KEY,
+    user_id        UUID NOT NULL,
+    title          VARCHAR(400),
+    sql_text       CLOB NOT NULL,
+    table_config   CLOB,
+    chart_config   CLOB,
+    created_at     TIMESTAMP(6) WITH TIME ZONE
+);
+
+CREATE TABLE IF NOT EXISTS pinned_jobs (
+    user_id        UUID NOT NULL,
+    job_id         VARCHAR(64) NOT NULL,
+    pinned_at      TIMESTAMP(6) WITH TIME ZONE,
+    PRIMARY KEY (user_id, job_id)
+);
+
+CREATE TABLE IF NOT EXISTS dashboard_counts (
+    measure        VARCHAR(40) NOT NULL,
+    journal        VARCHAR(200) NOT NULL,
+    [year]         INT NOT NULL,
+    [value]        BIGINT NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS dashboard_impact_factors (
+    journal        VARCHAR(200) NOT NULL,
+    [year]         INT NOT NULL,
+    if_val         DOUBLE PRECISION NOT NULL
+);
@@ -0,0 +1,122 @@
+package com.example.clearcard.admission;
+
+import com.example.clearcard.config.AppProps;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Gates the expensive endpoints before they reach a controller. Registered as a plain servlet
+ * filter, so it runs after Spring Security and can key limits on the authenticated username.
+ * Controllers that go async (WebAsyncTask) keep their permit until the async request completes,
+ * so the caps bound the work, not just the container thread that handed it off.
+ */
+@Slf4j
+@Component
+public class AdmissionFilter extends OncePerRequestFilter {
+
+    private final boolean enabled;
+    private final AdmissionPool interactive;
+    private final AdmissionPool batch;
+
+    public AdmissionFilter(AppProps props) {
+        this.enabled = props.admission().isEnabled();
+        this.interactive = new AdmissionPool("interactive", props.admission().getInteractive());
+        this.batch = new AdmissionPool("batch", props.admission().getBatch());
+    }
+
+    public AdmissionPool interactive() { return interactive; }
+    public AdmissionPool batch() { return batch; }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !enabled || poolFor(request) == null;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest req, HttpServletResponse res, FilterChain chain)
+            throws ServletException, IOException {
+        AdmissionPool pool = poolFor(req);
+        String user = userKey(req);
+        AdmissionPool.Permit permit;
+        try {
+            permit = pool.admit(user);
+        } catch (AdmissionRejectedException e) {
+            log.info("admission reject pool={} user={} path={} reason={}", pool.name(), user, req.getRequestURI(), e.getMessage());
+            res.setStatus(429);
+            res.setHeader("Retry-After", Long.toString(e.getRetryAfterSeconds()));
+            res.setContentType("application/json");
+            res.getOutputStream().write(("{\"status\":429,\"error\":\"" + e.getMessage() + "\"}").getBytes(StandardCharsets.UTF_8));
+            return;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            res.sendError(503);
+            return;
+        }
+        boolean async = false;
+        try {
+            chain.doFilter(req, res);
+            if (req.isAsyncStarted()) {
+                // the work continues on the async executor: hold the slot until the container completes the request
+                req.getAsyncContext().addListener(new ReleaseOnComplete(permit));
+                async = true;
+            }
+        } finally {
+            if (!async) permit.close();
+        }
+    }
+
+    /** Returns the permit once, on whichever of complete/error/timeout the container reports first. */
+    private static final class ReleaseOnComplete implements AsyncListener {
+        private final AtomicBoolean released = new AtomicBoolean();
+        private final AdmissionPool.Permit permit;
+
+        ReleaseOnComplete(AdmissionPool.Permit permit) {
+            this.permit = permit;
+        }
+
+        private void release() {
+            if (released.compareAndSet(false, true)) permit.close();
+        }
+
+        @Override public void onComplete(AsyncEvent event) { release(); }
+        @Override public void onError(AsyncEvent event) { release(); }
+        @Override public void onTimeout(AsyncEvent event) { release(); }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            // a new async cycle drops the listeners; stay registered until the request is done
+            event.getAsyncContext().addListener(this);
+        }
+    }
+
+    private AdmissionPool poolFor(HttpServletRequest req) {
+        String path = req.getRequestURI().substring(req.getContextPath().length());
+        if (path.startsWith("/api/")) path = path.substring(4);
+        if (path.equals("/sql") || path.equals("/articles") || path.startsWith("/articles/")) return interactive;
+        if (path.equals("/jobs") && "POST".equalsIgnoreCase(req.getMethod())) return batch;
+        return null;
+    }
+
+    private static String userKey(HttpServletRequest req) {
+        var auth = SecurityContextHolder.getContext().getAuthentication();
+        if (auth != null && auth.isAuthenticated() && !(auth instanceof AnonymousAuthenticationToken)) {
+            return "u:" + auth.getName();
+        }
+        // never the raw X-Forwarded-For: a client could rotate it for a fresh bucket per request.
+        // Behind a trusted proxy, server.forward-headers-strategy rewrites getRemoteAddr() instead.
+        return "ip:" + req.getRemoteAddr();
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.clearcard.admission;
+
+import com.example.clearcard.config.AppProps;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One admission pool: per-user token bucket, per-user concurrency cap, then a global concurrency
+ * cap with a bounded wait queue. Checks run cheapest-first so rejected requests cost almost nothing.
+ */
+public class AdmissionPool {
+
+    /** Held for the duration of a request; close() returns both the user and the global slot. */
+    public interface Permit extends AutoCloseable {
+        @Override void close();
+    }
+
+    private final String name;
+    private final AppProps.Admission.Pool cfg;
+    private final Semaphore global;
+    private final ConcurrentHashMap<String, Integer> inFlightByUser = new ConcurrentHashMap<>();
+    private final Cache<String, TokenBucket> buckets;
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final AtomicLong admitted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    public AdmissionPool(String name, AppProps.Admission.Pool cfg) {
+        this.name = name;
+        this.cfg = cfg;
+        this.global = new Semaphore(cfg.getMaxConcurrent(), true);
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(100_000)
+                .expireAfterAccess(Duration.ofMinutes(10))
+                .build();
+    }
+
+    public String name() { return name; }
+
+    public Permit admit(String user) throws InterruptedException {
+        if (cfg.getRatePerSecond() > 0) {
+            TokenBucket b = buckets.get(user, k -> new TokenBucket(cfg.getRatePerSecond(), cfg.getBurst()));
+            if (!b.tryConsume()) {
+                throw reject("rate limit exceeded", b.secondsUntilToken());
+            }
+        }
+        if (!acquireUser(user)) {
+            throw reject("too many concurrent requests for this user", 1);
+        }
+        boolean ok = false;
+        try {
+            if (!global.tryAcquire()) {
+                if (waiting.incrementAndGet() > cfg.getQueueSize()) {
+                    waiting.decrementAndGet();
+                    throw reject("server busy", 1);
+                }
+                try {
+                    if (!global.tryAcquire(cfg.getQueueTimeoutMs(), TimeUnit.MILLISECONDS)) {
+                        throw reject("server busy", 1);
+                    }
+                } finally {
+                    waiting.decrementAndGet();
+                }
+            }
+            ok = true;
+        } finally {
+            if (!ok) releaseUser(user);
+        }
+        admitted.incrementAndGet();
+        return () -> {
+            global.release();
+            releaseUser(user);
+        };
+    }
+
+    public int inFlight() { return cfg.getMaxConcurrent() - global.availablePermits(); }
+    public int queued() { return Math.max(0, waiting.get()); }
+    public long admittedTotal() { return admitted.get(); }
+    public long rejectedTotal() { return rejected.get(); }
+
+    private AdmissionRejectedException reject(String why, long retryAfter) {
+        rejected.incrementAndGet();
+        return new AdmissionRejectedException(name + ": " + why, retryAfter);
+    }
+
+    private boolean acquireUser(String user) {
+        boolean[] ok = { false };
+        inFlightByUser.compute(user, (k, n) -> {
+            int cur = n == null ? 0 : n;
+            if (cur >= cfg.getMaxConcurrentPerUser()) return n;
+            ok[0] = true;
+            return cur + 1;
+        });
+        return ok[0];
+    }
+
+    private void releaseUser(String user) {
+        inFlightByUser.computeIfPresent(user, (k, n) -> n <= 1 ? null : n - 1);
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.clearcard.admission;
+
+/**
+ * Classic token bucket: {@code capacity} tokens, refilled continuously at {@code perSecond}.
+ * Synchronized because buckets are per key and contention on one key is low.
+ */
+public final class TokenBucket {
+
+    private final double capacity;
+    private final double perNano;
+    private double tokens;
+    private long last;
+
+    public TokenBucket(double perSecond, double capacity) {
+        this.capacity = Math.max(1, capacity);
+        this.perNano = perSecond / 1_000_000_000d;
+        this.tokens = this.capacity;
+        this.last = System.nanoTime();
+    }
+
+    public synchronized boolean tryConsume() {
+        refill();
+        if (tokens >= 1) {
+            tokens -= 1;
+            return true;
+        }
+        return false;
+    }
+
+    /** Whole seconds until the next token is available (at least 1), for Retry-After. */
+    public synchronized long secondsUntilToken() {
+        refill();
+        if (tokens >= 1) return 0;
+        if (perNano <= 0) return 60;
+        double nanos = (1 - tokens) / perNano;
+        return Math.max(1, (long) Math.ceil(nanos / 1_000_000_000d));
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - last) * perNano);
+        last = now;
+    }
+}
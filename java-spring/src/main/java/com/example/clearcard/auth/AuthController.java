@@ -3,10 +3,10 @@ package com.example.clearcard.auth;
 import com.example.clearcard.security.JwtUtil;
 import com.example.clearcard.user.*;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.constraints.NotBlank;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.web.bind.annotation.*;
 
 record LoginReq(@NotBlank String username, @NotBlank String password) {}
@@ -17,23 +17,32 @@ record TokenResp(String token) {}
 @RequiredArgsConstructor
 public class AuthController {
     private final UserRepository users;
-    private final BCryptPasswordEncoder enc;
+    private final PasswordHasher hasher;
+    private final LoginThrottle throttle;
     private final JwtUtil jwt;
 
     @PostMapping("/register")
-    public ResponseEntity<TokenResp> register(@RequestBody LoginReq req) {
-        users.findByUsername(req.username()).ifPresent(u -> { throw new RuntimeException("username exists"); });
+    public ResponseEntity<TokenResp> register(@RequestBody LoginReq req, HttpServletRequest http) {
+        throttle.check(req.username(), http.getRemoteAddr());
+        users.findByUsername(req.username()).ifPresent(u -> {
+            throttle.failed(req.username(), http.getRemoteAddr());
+            throw new RuntimeException("username exists");
+        });
         var u = new UserEntity();
         u.setUsername(req.username());
-        u.setPasswordHash(enc.encode(req.password()));
+        u.setPasswordHash(hasher.encode(req.password()));
         users.save(u);
         return ResponseEntity.ok(new TokenResp(jwt.generate(u.getUsername())));
     }
 
     @PostMapping("/login")
-    public ResponseEntity<TokenResp> login(@RequestBody LoginReq req) {
-        var u = users.findByUsername(req.username()).orElseThrow(() -> new RuntimeException("bad credentials"));
-        if (!enc.matches(req.password(), u.getPasswordHash())) throw new RuntimeException("bad credentials");
+    public ResponseEntity<TokenResp> login(@RequestBody LoginReq req, HttpServletRequest http) {
+        throttle.check(req.username(), http.getRemoteAddr());
+        var u = users.findByUsername(req.username()).orElse(null);
+        if (u == null || !hasher.matches(req.password(), u.getPasswordHash())) {
+            throttle.failed(req.username(), http.getRemoteAddr());
+            throw new RuntimeException("bad credentials");
+        }
         return ResponseEntity.ok(new TokenResp(jwt.generate(u.getUsername())));
     }
 }
@@ -0,0 +1,59 @@
+package com.example.clearcard.auth;
+
+import com.example.clearcard.admission.AdmissionRejectedException;
+import com.example.clearcard.admission.TokenBucket;
+import com.example.clearcard.config.AppProps;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Locale;
+
+/**
+ * Attempt limits for /auth. The per-IP bucket is charged on every attempt, before any hashing, so
+ * throttled requests cost nothing. The per-username bucket is keyed by (username, IP) and charged
+ * only for failed attempts: a guesser elsewhere cannot lock the real user out, and the user's own
+ * successful logins never use it up.
+ */
+@Component
+public class LoginThrottle {
+
+    private final AppProps.Login cfg;
+    private final Cache<String, TokenBucket> byUser;
+    private final Cache<String, TokenBucket> byIp;
+
+    public LoginThrottle(AppProps props) {
+        this.cfg = props.login();
+        this.byUser = Caffeine.newBuilder().maximumSize(100_000).expireAfterAccess(Duration.ofMinutes(30)).build();
+        this.byIp = Caffeine.newBuilder().maximumSize(100_000).expireAfterAccess(Duration.ofMinutes(30)).build();
+    }
+
+    /**
+     * Throws {@link AdmissionRejectedException} (429) when the IP is over its limit, or when this IP
+     * has used up its failed attempts for the username. Call before hashing.
+     */
+    public void check(String username, String ip) {
+        if (cfg.getPerIpRatePerSecond() > 0 && ip != null) {
+            TokenBucket b = byIp.get(ip, k -> new TokenBucket(cfg.getPerIpRatePerSecond(), cfg.getPerIpBurst()));
+            if (!b.tryConsume()) throw new AdmissionRejectedException("too many login attempts from this address", b.secondsUntilToken());
+        }
+        if (cfg.getPerUserRatePerSecond() > 0 && username != null) {
+            TokenBucket b = byUser.getIfPresent(userKey(username, ip));
+            long wait = b == null ? 0 : b.secondsUntilToken();
+            if (wait > 0) throw new AdmissionRejectedException("too many failed login attempts for this user", wait);
+        }
+    }
+
+    /** Charges the (username, IP) bucket for an attempt that failed verification. */
+    public void failed(String username, String ip) {
+        if (cfg.getPerUserRatePerSecond() > 0 && username != null) {
+            byUser.get(userKey(username, ip), k -> new TokenBucket(cfg.getPerUserRatePerSecond(), cfg.getPerUserBurst()))
+                    .tryConsume();
+        }
+    }
+
+    private static String userKey(String username, String ip) {
+        return username.toLowerCase(Locale.ROOT) + '\n' + ip;
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.clearcard.auth;
+
+import com.example.clearcard.config.AppProps;
+import com.example.clearcard.resilience.DependencyUnavailableException;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Runs BCrypt on a small dedicated pool so a login storm is capped at a few cores instead of every
+ * request thread. A full queue or a slow hash fails with 503 rather than piling up.
+ */
+@Slf4j
+@Component
+public class PasswordHasher {
+
+    public record Stats(int threads, int active, int queued, int queueCapacity,
+                        long hashes, double avgHashMs, double maxHashMs, long rejected, long timedOut) {}
+
+    private final BCryptPasswordEncoder enc;
+    private final ThreadPoolExecutor pool;
+    private final int queueCapacity;
+    private final long timeoutMs;
+
+    private final AtomicLong hashes = new AtomicLong();
+    private final AtomicLong hashNanos = new AtomicLong();
+    private final AtomicLong maxHashNanos = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong timedOut = new AtomicLong();
+
+    public PasswordHasher(BCryptPasswordEncoder enc, AppProps props) {
+        var cfg = props.login();
+        int threads = cfg.effectiveHashThreads();
+        this.enc = enc;
+        this.queueCapacity = cfg.getHashQueueSize();
+        this.timeoutMs = cfg.getHashTimeoutMs();
+        BlockingQueue<Runnable> q = queueCapacity > 0 ? new ArrayBlockingQueue<>(queueCapacity) : new SynchronousQueue<>();
+        this.pool = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, q, r -> {
+            Thread t = new Thread(r, "bcrypt");
+            t.setDaemon(true);
+            return t;
+        }, new ThreadPoolExecutor.AbortPolicy());
+        log.info("password hasher: threads={} queue={} timeoutMs={}", threads, queueCapacity, timeoutMs);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        pool.shutdownNow();
+    }
+
+    public String encode(String raw) {
+        return run(() -> enc.encode(raw));
+    }
+
+    public boolean matches(String raw, String hash) {
+        return run(() -> enc.matches(raw, hash));
+    }
+
+    public Stats stats() {
+        long n = hashes.get();
+        return new Stats(pool.getMaximumPoolSize(), pool.getActiveCount(), pool.getQueue().size(), queueCapacity,
+                n, n == 0 ? 0 : hashNanos.get() / 1e6 / n, maxHashNanos.get() / 1e6, rejected.get(), timedOut.get());
+    }
+
+    private <T> T run(Supplier<T> work) {
+        Future<T> f;
+        try {
+            f = pool.submit(() -> {
+                long t0 = System.nanoTime();
+                try {
+                    return work.get();
+                } finally {
+                    long dt = System.nanoTime() - t0;
+                    hashes.incrementAndGet();
+                    hashNanos.addAndGet(dt);
+                    maxHashNanos.accumulateAndGet(dt, Math::max);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.incrementAndGet();
+            throw new DependencyUnavailableException("password-hasher", "queue full", 1);
+        }
+        try {
+            return f.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            f.cancel(true);
+            timedOut.incrementAndGet();
+            throw new DependencyUnavailableException("password-hasher", "timed out", 1);
+        } catch (InterruptedException e) {
+            f.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new DependencyUnavailableException("password-hasher", "interrupted", 1);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+}
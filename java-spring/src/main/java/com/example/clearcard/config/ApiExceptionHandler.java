@@ -1,13 +1,40 @@
 package com.example.clearcard.config;
 
+import com.example.clearcard.admission.AdmissionRejectedException;
+import com.example.clearcard.resilience.DependencyUnavailableException;
+import org.springframework.core.task.TaskRejectedException;
 import org.springframework.http.*;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.Map;
+
 @RestControllerAdvice
 public class ApiExceptionHandler {
     @ExceptionHandler({ MethodArgumentNotValidException.class, IllegalArgumentException.class })
     public ResponseEntity<String> badReq(Exception e) {
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
     }
-}
\ No newline at end of file
+
+    @ExceptionHandler(DependencyUnavailableException.class)
+    public ResponseEntity<Map<String, Object>> unavailable(DependencyUnavailableException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, Long.toString(e.getRetryAfterSeconds()))
+                .body(Map.of("status", 503, "dependency", e.getDependency(), "error", e.getMessage()));
+    }
+
+    /** The async request executor's queue is full (see AsyncConfig). */
+    @ExceptionHandler(TaskRejectedException.class)
+    public ResponseEntity<Map<String, Object>> busy(TaskRejectedException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(Map.of("status", 503, "error", "server busy"));
+    }
+
+    @ExceptionHandler(AdmissionRejectedException.class)
+    public ResponseEntity<Map<String, Object>> throttled(AdmissionRejectedException e) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, Long.toString(e.getRetryAfterSeconds()))
+                .body(Map.of("status", 429, "error", e.getMessage()));
+    }
+}
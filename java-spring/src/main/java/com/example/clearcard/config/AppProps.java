@@ -7,16 +7,47 @@ import jakarta.validation.constraints.NotBlank;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.validation.annotation.Validated;
 
+import java.util.ArrayList;
+import java.util.List;
+
 @Validated
 @ConfigurationProperties(prefix = "app")
 public class AppProps {
     private final Grpc grpc = new Grpc();
     private final Gcs gcs = new Gcs();
     private final Csv csv = new Csv();
+    private final Watch watch = new Watch();
+    private final Cache cache = new Cache();
+    private final Reuse reuse = new Reuse();
+    private final Admission admission = new Admission();
+    private final Resilience resilience = new Resilience();
+    private final Login login = new Login();
+    private final Admin admin = new Admin();
+    private final Jfr jfr = new Jfr();
+    private final SqlStats sqlStats = new SqlStats();
+    private final Chart chart = new Chart();
+    private final Profile profile = new Profile();
+    private final Partial partial = new Partial();
+    private final Compare compare = new Compare();
+    private final Async async = new Async();
 
     public Grpc grpc() { return grpc; }
     public Gcs gcs()   { return gcs; }
     public Csv csv()   { return csv; }
+    public Watch watch() { return watch; }
+    public Cache cache() { return cache; }
+    public Reuse reuse() { return reuse; }
+    public Admission admission() { return admission; }
+    public Resilience resilience() { return resilience; }
+    public Login login() { return login; }
+    public Admin admin() { return admin; }
+    public Jfr jfr() { return jfr; }
+    public SqlStats sqlStats() { return sqlStats; }
+    public Chart chart() { return chart; }
+    public Profile profile() { return profile; }
+    public Partial partial() { return partial; }
+    public Compare compare() { return compare; }
+    public Async async() { return async; }
 
     public static class Grpc {
         /** Default to localhost for non-Docker dev runs. Overridden by app.grpc.handler-host / MSG_HANDLER_HOST in properties/env. */
@@ -25,10 +56,49 @@ public class AppProps {
         @Min(1) @Max(65535)
         private int handlerPort = 50051;
 
+        /**
+         * Compression of what we send (requests only) on all stubs: "identity" (off) or "gzip". It does not
+         * change responses: the handler picks SqlChunk compression itself (SQL_RESPONSE_COMPRESSION).
+         */
+        @NotBlank
+        private String requestCompression = "identity";
+        /** Per-stub request overrides; blank means "use {@link #requestCompression}". */
+        private String sqlRequestCompression;
+        private String jobRequestCompression;
+
+        /** Largest single inbound message (one SqlChunk page); gRPC's own default is 4 MiB. */
+        @Min(1024)
+        private int maxInboundMessageSize = 16 * 1024 * 1024;
+        /** HTTP/2 per-stream receive window. With auto-tuning on this is the starting value for BDP probing. */
+        @Min(65535)
+        private int flowControlWindow = 1024 * 1024;
+        /** Let Netty grow the window from measured bandwidth-delay product; false pins it to flowControlWindow. */
+        private boolean autoFlowControl = true;
+
         public String getHandlerHost() { return handlerHost; }
         public void setHandlerHost(String v) { this.handlerHost = v; }
         public int getHandlerPort() { return handlerPort; }
         public void setHandlerPort(int v) { this.handlerPort = v; }
+        public String getRequestCompression() { return requestCompression; }
+        public void setRequestCompression(String v) { this.requestCompression = v; }
+        public String getSqlRequestCompression() { return sqlRequestCompression; }
+        public void setSqlRequestCompression(String v) { this.sqlRequestCompression = v; }
+        public String getJobRequestCompression() { return jobRequestCompression; }
+        public void setJobRequestCompression(String v) { this.jobRequestCompression = v; }
+        public int getMaxInboundMessageSize() { return maxInboundMessageSize; }
+        public void setMaxInboundMessageSize(int v) { this.maxInboundMessageSize = v; }
+        public int getFlowControlWindow() { return flowControlWindow; }
+        public void setFlowControlWindow(int v) { this.flowControlWindow = v; }
+        public boolean isAutoFlowControl() { return autoFlowControl; }
+        public void setAutoFlowControl(boolean v) { this.autoFlowControl = v; }
+
+        public String sqlRequestCompressionOrDefault() {
+            return isBlank(sqlRequestCompression) ? requestCompression : sqlRequestCompression;
+        }
+        public String jobRequestCompressionOrDefault() {
+            return isBlank(jobRequestCompression) ? requestCompression : jobRequestCompression;
+        }
+        private static boolean isBlank(String s) { return s == null || s.isBlank(); }
     }
 
     public static class Gcs {
@@ -43,4 +113,394 @@ public class AppProps {
         public String getFilenamePrefix() { return filenamePrefix; }
         public void setFilenamePrefix(String v) { this.filenamePrefix = v; }
     }
+
+    /** Server-push job status (GET /jobs/{id}/events). One upstream poller per job, shared by all subscribers. */
+    public static class Watch {
+        @Min(50)
+        private long pollIntervalMs = 500;
+        /** SSE connections are closed after this long; EventSource reconnects on its own. */
+        @Min(1000)
+        private long emitterTimeoutMs = 10 * 60 * 1000;
+        /** Upper bound on distinct jobs being watched at once. */
+        @Min(1)
+        private int maxJobs = 2000;
+        /** Threads running the per-job polls; a poll holds one for at most pollDeadlineMs. */
+        @Min(1)
+        private int pollThreads = 16;
+        /** Deadline of one watcher GetStatus call, so a stalled handler delays one poll, not every watch. */
+        @Min(100)
+        private long pollDeadlineMs = 2000;
+
+        public long getPollIntervalMs() { return pollIntervalMs; }
+        public void setPollIntervalMs(long v) { this.pollIntervalMs = v; }
+        public long getEmitterTimeoutMs() { return emitterTimeoutMs; }
+        public void setEmitterTimeoutMs(long v) { this.emitterTimeoutMs = v; }
+        public int getMaxJobs() { return maxJobs; }
+        public void setMaxJobs(int v) { this.maxJobs = v; }
+        public int getPollThreads() { return pollThreads; }
+        public void setPollThreads(int v) { this.pollThreads = v; }
+        public long getPollDeadlineMs() { return pollDeadlineMs; }
+        public void setPollDeadlineMs(long v) { this.pollDeadlineMs = v; }
+    }
+
+    /** In-memory caches in front of the message-handler and GCS. */
+    public static class Cache {
+        /** How long a non-terminal (PENDING/RUNNING) status may be reused; terminal states never expire. */
+        @Min(0)
+        private long jobStatusTtlMs = 1000;
+        /** LRU bound for cached statuses and manifest refs (each). */
+        @Min(1)
+        private int jobMaxEntries = 10_000;
+        /** Parsed manifest.json objects kept in memory, keyed by gs URI. */
+        @Min(1)
+        private int manifestMaxEntries = 2_000;
+
+        public long getJobStatusTtlMs() { return jobStatusTtlMs; }
+        public void setJobStatusTtlMs(long v) { this.jobStatusTtlMs = v; }
+        public int getJobMaxEntries() { return jobMaxEntries; }
+        public void setJobMaxEntries(int v) { this.jobMaxEntries = v; }
+        public int getManifestMaxEntries() { return manifestMaxEntries; }
+        public void setManifestMaxEntries(int v) { this.manifestMaxEntries = v; }
+        /** Verified bearer token -> principal; also capped by the token's own exp. 0 disables the cache. */
+        @Min(0)
+        private long principalTtlMs = 60_000;
+        @Min(1)
+        private int principalMaxEntries = 10_000;
+
+        public long getPrincipalTtlMs() { return principalTtlMs; }
+        public void setPrincipalTtlMs(long v) { this.principalTtlMs = v; }
+        public int getPrincipalMaxEntries() { return principalMaxEntries; }
+        public void setPrincipalMaxEntries(int v) { this.principalMaxEntries = v; }
+        /** Serialized /jobs/{id}/detail bodies for terminal jobs, keyed by (user, job). */
+        @Min(1)
+        private int detailMaxEntries = 5_000;
+
+        /** Upper bound on how long a cached detail body is reused (the pin flag is never cached). */
+        @Min(1)
+        private long detailTtlMs = 600_000;
+
+        public int getDetailMaxEntries() { return detailMaxEntries; }
+        public void setDetailMaxEntries(int v) { this.detailMaxEntries = v; }
+        public long getDetailTtlMs() { return detailTtlMs; }
+        public void setDetailTtlMs(long v) { this.detailTtlMs = v; }
+        /** Aggregated /jobs/{id}/chart payloads (a few KB each), keyed by job + parameters. */
+        @Min(1)
+        private int chartMaxEntries = 2_000;
+
+        public int getChartMaxEntries() { return chartMaxEntries; }
+        public void setChartMaxEntries(int v) { this.chartMaxEntries = v; }
+        /** Parsed /jobs/{id}/stats profiles, keyed by manifest URI. */
+        @Min(1)
+        private int statsMaxEntries = 1_000;
+
+        public int getStatsMaxEntries() { return statsMaxEntries; }
+        public void setStatsMaxEntries(int v) { this.statsMaxEntries = v; }
+        /** Article details by eid (including "not found"), shared by GET /articles/{eid} and POST /articles/batch. */
+        @Min(1)
+        private int articleMaxEntries = 50_000;
+        /** The metrics tables are reloaded offline; this bounds how stale a cached detail may get. */
+        @Min(0)
+        private long articleTtlMs = 10 * 60 * 1000;
+
+        public int getArticleMaxEntries() { return articleMaxEntries; }
+        public void setArticleMaxEntries(int v) { this.articleMaxEntries = v; }
+        public long getArticleTtlMs() { return articleTtlMs; }
+        public void setArticleTtlMs(long v) { this.articleTtlMs = v; }
+    }
+
+    /** Result reuse for POST /jobs: identical SQL + options from the same user maps to the existing job. */
+    public static class Reuse {
+        private boolean enabled = false;
+        /** A SUCCEEDED job is reused only if it completed within this window. */
+        @Min(1)
+        private long freshnessMinutes = 60;
+        @Min(1)
+        private int maxEntries = 10_000;
+
+        public boolean isEnabled() { return enabled; }
+        public void setEnabled(boolean v) { this.enabled = v; }
+        public long getFreshnessMinutes() { return freshnessMinutes; }
+        public void setFreshnessMinutes(long v) { this.freshnessMinutes = v; }
+        public int getMaxEntries() { return maxEntries; }
+        public void setMaxEntries(int v) { this.maxEntries = v; }
+    }
+
+    /**
+     * Admission control. "interactive" covers /articles/** and /sql, "batch" covers POST /jobs;
+     * separate pools so a burst of job submissions never queues behind (or in front of) searches.
+     */
+    public static class Admission {
+        private boolean enabled = true;
+        private final Pool interactive = new Pool(32, 4, 5, 20, 64, 2000);
+        private final Pool batch = new Pool(8, 2, 0.5, 5, 16, 500);
+
+        public boolean isEnabled() { return enabled; }
+        public void setEnabled(boolean v) { this.enabled = v; }
+        public Pool getInteractive() { return interactive; }
+        public Pool getBatch() { return batch; }
+
+        public static class Pool {
+            /** Requests running at once across all users. */
+            @Min(1) private int maxConcurrent;
+            /** Requests running at once for one user (or client IP when anonymous). */
+            @Min(1) private int maxConcurrentPerUser;
+            /** Sustained per-user request rate and burst size. */
+            private double ratePerSecond;
+            @Min(1) private int burst;
+            /** How many requests may wait for a global slot, and for how long. */
+            @Min(0) private int queueSize;
+            @Min(0) private long queueTimeoutMs;
+
+            public Pool() {}
+            Pool(int maxConcurrent, int maxConcurrentPerUser, double ratePerSecond, int burst, int queueSize, long queueTimeoutMs) {
+                this.maxConcurrent = maxConcurrent;
+                this.maxConcurrentPerUser = maxConcurrentPerUser;
+                this.ratePerSecond = ratePerSecond;
+                this.burst = burst;
+                this.queueSize = queueSize;
+                this.queueTimeoutMs = queueTimeoutMs;
+            }
+
+            public int getMaxConcurrent() { return maxConcurrent; }
+            public void setMaxConcurrent(int v) { this.maxConcurrent = v; }
+            public int getMaxConcurrentPerUser() { return maxConcurrentPerUser; }
+            public void setMaxConcurrentPerUser(int v) { this.maxConcurrentPerUser = v; }
+            public double getRatePerSecond() { return ratePerSecond; }
+            public void setRatePerSecond(double v) { this.ratePerSecond = v; }
+            public int getBurst() { return burst; }
+            public void setBurst(int v) { this.burst = v; }
+            public int getQueueSize() { return queueSize; }
+            public void setQueueSize(int v) { this.queueSize = v; }
+            public long getQueueTimeoutMs() { return queueTimeoutMs; }
+            public void setQueueTimeoutMs(long v) { this.queueTimeoutMs = v; }
+        }
+    }
+
+    /** Bulkhead + circuit breaker per downstream dependency. */
+    public static class Resilience {
+        private final Guard handlerStream = new Guard(16, 0);
+        private final Guard jobRpc = new Guard(32, 100);
+        private final Guard gcs = new Guard(32, 100);
+        private final Guard mssql = new Guard(10, 250);
+
+        public Guard getHandlerStream() { return handlerStream; }
+        public Guard getJobRpc() { return jobRpc; }
+        public Guard getGcs() { return gcs; }
+        public Guard getMssql() { return mssql; }
+
+        public static class Guard {
+            /** Request threads allowed inside the dependency at once, and how long to wait for a slot. */
+            @Min(1) private int maxConcurrent;
+            @Min(0) private long maxWaitMs;
+            /** Breaker: trips when failureRate of the last {@code window} calls (min {@code minCalls}) fail. */
+            @Min(1) private int window = 50;
+            @Min(1) private int minCalls = 10;
+            private double failureRate = 0.5;
+            /** How long an open breaker fails fast before letting {@code probes} trial calls through. */
+            @Min(100) private long openMs = 15_000;
+            @Min(1) private int probes = 3;
+
+            public Guard() {}
+            Guard(int maxConcurrent, long maxWaitMs) {
+                this.maxConcurrent = maxConcurrent;
+                this.maxWaitMs = maxWaitMs;
+            }
+
+            public int getMaxConcurrent() { return maxConcurrent; }
+            public void setMaxConcurrent(int v) { this.maxConcurrent = v; }
+            public long getMaxWaitMs() { return maxWaitMs; }
+            public void setMaxWaitMs(long v) { this.maxWaitMs = v; }
+            public int getWindow() { return window; }
+            public void setWindow(int v) { this.window = v; }
+            public int getMinCalls() { return minCalls; }
+            public void setMinCalls(int v) { this.minCalls = v; }
+            public double getFailureRate() { return failureRate; }
+            public void setFailureRate(double v) { this.failureRate = v; }
+            public long getOpenMs() { return openMs; }
+            public void setOpenMs(long v) { this.openMs = v; }
+            public int getProbes() { return probes; }
+            public void setProbes(int v) { this.probes = v; }
+        }
+    }
+
+    /** Accounts that get ROLE_ADMIN (the /admin/** endpoints). Registration only ever creates plain users. */
+    public static class Admin {
+        private List<String> usernames = new ArrayList<>();
+
+        public List<String> getUsernames() { return usernames; }
+        public void setUsernames(List<String> v) { this.usernames = v; }
+    }
+
+    /** BCrypt runs on its own small pool; attempts are throttled per username and per client IP before hashing. */
+    public static class Login {
+        /** Hashing threads; 0 means half the available cores (at least 1). */
+        @Min(0) private int hashThreads = 0;
+        /** Hashes allowed to wait for a thread; beyond this, login/register get 503 immediately. */
+        @Min(0) private int hashQueueSize = 32;
+        /** Upper bound on queue wait + hash time before giving up with 503. */
+        @Min(1) private long hashTimeoutMs = 3000;
+        /** Failed attempts allowed per (username, client IP); successful logins are not counted. */
+        private double perUserRatePerSecond = 0.2;
+        @Min(1) private int perUserBurst = 5;
+        private double perIpRatePerSecond = 1;
+        @Min(1) private int perIpBurst = 20;
+
+        public int effectiveHashThreads() {
+            return hashThreads > 0 ? hashThreads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        }
+
+        public int getHashThreads() { return hashThreads; }
+        public void setHashThreads(int v) { this.hashThreads = v; }
+        public int getHashQueueSize() { return hashQueueSize; }
+        public void setHashQueueSize(int v) { this.hashQueueSize = v; }
+        public long getHashTimeoutMs() { return hashTimeoutMs; }
+        public void setHashTimeoutMs(long v) { this.hashTimeoutMs = v; }
+        public double getPerUserRatePerSecond() { return perUserRatePerSecond; }
+        public void setPerUserRatePerSecond(double v) { this.perUserRatePerSecond = v; }
+        public int getPerUserBurst() { return perUserBurst; }
+        public void setPerUserBurst(int v) { this.perUserBurst = v; }
+        public double getPerIpRatePerSecond() { return perIpRatePerSecond; }
+        public void setPerIpRatePerSecond(double v) { this.perIpRatePerSecond = v; }
+        public int getPerIpBurst() { return perIpBurst; }
+        public void setPerIpBurst(int v) { this.perIpBurst = v; }
+    }
+
+    /** On-demand Flight Recorder windows served from /admin/jfr/recordings. */
+    public static class Jfr {
+        private boolean enabled = true;
+        /** Upper bound for one recording window. */
+        @Min(1) private int maxDurationSeconds = 600;
+        /** Finished recordings kept for download; older files are deleted. */
+        @Min(1) private int keep = 3;
+        /** Where .jfr files go; blank means java.io.tmpdir. */
+        private String directory = "";
+
+        public boolean isEnabled() { return enabled; }
+        public void setEnabled(boolean v) { this.enabled = v; }
+        public int getMaxDurationSeconds() { return maxDurationSeconds; }
+        public void setMaxDurationSeconds(int v) { this.maxDurationSeconds = v; }
+        public int getKeep() { return keep; }
+        public void setKeep(int v) { this.keep = v; }
+        public String getDirectory() { return directory; }
+        public void setDirectory(String v) { this.directory = v; }
+    }
+
+    /** In-process per-shape SQL statistics and slow statement capture, served from /admin/sql-stats. */
+    public static class SqlStats {
+        private boolean enabled = true;
+        /** Distinct statement shapes tracked; each costs ~11 KB (latency histogram). */
+        @Min(1) private int maxFingerprints = 500;
+        /** Statements at or above this are kept verbatim with their request parameters. */
+        @Min(0) private long slowThresholdMs = 2000;
+        /** Most recent slow statements kept. */
+        @Min(0) private int slowKeep = 100;
+        /** Longer SQL text / parameter JSON is cut at this length in the slow log. */
+        @Min(256) private int maxSqlChars = 16384;
+
+        public boolean isEnabled() { return enabled; }
+        public void setEnabled(boolean v) { this.enabled = v; }
+        public int getMaxFingerprints() { return maxFingerprints; }
+        public void setMaxFingerprints(int v) { this.maxFingerprints = v; }
+        public long getSlowThresholdMs() { return slowThresholdMs; }
+        public void setSlowThresholdMs(long v) { this.slowThresholdMs = v; }
+        public int getSlowKeep() { return slowKeep; }
+        public void setSlowKeep(int v) { this.slowKeep = v; }
+        public int getMaxSqlChars() { return maxSqlChars; }
+        public void setMaxSqlChars(int v) { this.maxSqlChars = v; }
+    }
+
+    /** Server-side aggregation for GET /jobs/{id}/chart. */
+    public static class Chart {
+        /** Points per series when the caller does not ask; line charts are LTTB-downsampled to this. */
+        @Min(2) private int defaultPoints = 200;
+        @Min(2) private int maxPoints = 5_000;
+        /** Largest series kept by total; the rest are folded into "Other". */
+        @Min(1) private int maxSeries = 12;
+        /** Distinct (x, series) cells held during a pass before giving up with 422. */
+        @Min(1) private int maxGroups = 200_000;
+
+        public int getDefaultPoints() { return defaultPoints; }
+        public void setDefaultPoints(int v) { this.defaultPoints = v; }
+        public int getMaxPoints() { return maxPoints; }
+        public void setMaxPoints(int v) { this.maxPoints = v; }
+        public int getMaxSeries() { return maxSeries; }
+        public void setMaxSeries(int v) { this.maxSeries = v; }
+        public int getMaxGroups() { return maxGroups; }
+        public void setMaxGroups(int v) { this.maxGroups = v; }
+    }
+
+    /** Column statistics for GET /jobs/{id}/stats. */
+    public static class Profile {
+        /** Write stats.json beside the manifest; off when this instance may only read the results bucket. */
+        private boolean persist = true;
+        /** Values reported per column, most frequent first. */
+        @Min(1) private int topK = 10;
+        /** Space-Saving counters per column; counts are exact while a column has fewer distinct values. */
+        @Min(1) private int topCapacity = 256;
+        /** Equal-width bins per numeric histogram (odd values are rounded up to even). */
+        @Min(2) private int histogramBins = 32;
+        /** Longer strings are cut before they are counted or reported as min/max/top. */
+        @Min(1) private int maxValueChars = 200;
+
+        public boolean isPersist() { return persist; }
+        public void setPersist(boolean v) { this.persist = v; }
+        public int getTopK() { return topK; }
+        public void setTopK(int v) { this.topK = v; }
+        public int getTopCapacity() { return topCapacity; }
+        public void setTopCapacity(int v) { this.topCapacity = v; }
+        public int getHistogramBins() { return histogramBins; }
+        public void setHistogramBins(int v) { this.histogramBins = v; }
+        public int getMaxValueChars() { return maxValueChars; }
+        public void setMaxValueChars(int v) { this.maxValueChars = v; }
+    }
+
+    /** Serving the parts of a RUNNING job from the worker's manifest.partial.json. */
+    public static class Partial {
+        private boolean enabled = true;
+        /** How often a following download.csv re-reads the partial manifest for new parts. */
+        @Min(100) private long pollIntervalMs = 2_000;
+        /** A following download ends after this long even if the job is still running. */
+        @Min(1000) private long followTimeoutMs = 15 * 60 * 1000;
+        /** Following downloads at once; each holds an async request thread between polls. Past this, follow=true ends with the parts already written. */
+        @Min(1) private int maxFollowers = 16;
+
+        public boolean isEnabled() { return enabled; }
+        public void setEnabled(boolean v) { this.enabled = v; }
+        public long getPollIntervalMs() { return pollIntervalMs; }
+        public void setPollIntervalMs(long v) { this.pollIntervalMs = v; }
+        public long getFollowTimeoutMs() { return followTimeoutMs; }
+        public void setFollowTimeoutMs(long v) { this.followTimeoutMs = v; }
+        public int getMaxFollowers() { return maxFollowers; }
+        public void setMaxFollowers(int v) { this.maxFollowers = v; }
+    }
+
+    /** Executor for async requests: WebAsyncTask controllers and StreamingResponseBody downloads. */
+    public static class Async {
+        /** Requests running off the container threads at once (following downloads included). */
+        @Min(1) private int threads = 64;
+        /** Async requests allowed to wait for a thread; beyond this they get 503 immediately. */
+        @Min(0) private int queueSize = 128;
+
+        public int getThreads() { return threads; }
+        public void setThreads(int v) { this.threads = v; }
+        public int getQueueSize() { return queueSize; }
+        public void setQueueSize(int v) { this.queueSize = v; }
+    }
+
+    /** GET /jobs/compare: hash join of two results on a key column. */
+    public static class Compare {
+        /** Estimated heap for the in-memory build side; past this both sides are partitioned to disk. */
+        @Min(1024 * 1024) private long maxBuildBytes = 64L * 1024 * 1024;
+        /** Spill partitions; each should fit in max-build-bytes after the split. */
+        @Min(2) private int spillPartitions = 64;
+        /** Where spill files go; blank means java.io.tmpdir. */
+        private String spillDirectory = "";
+
+        public long getMaxBuildBytes() { return maxBuildBytes; }
+        public void setMaxBuildBytes(long v) { this.maxBuildBytes = v; }
+        public int getSpillPartitions() { return spillPartitions; }
+        public void setSpillPartitions(int v) { this.spillPartitions = v; }
+        public String getSpillDirectory() { return spillDirectory; }
+        public void setSpillDirectory(String v) { this.spillDirectory = v; }
+    }
 }
@@ -0,0 +1,38 @@
+package com.example.clearcard.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Runs WebAsyncTask controllers and StreamingResponseBody downloads on their own bounded pool
+ * instead of Boot's shared applicationTaskExecutor (8 threads, unbounded queue). A full queue
+ * rejects the request with 503 (see {@link ApiExceptionHandler}) rather than letting work pile up.
+ */
+@Configuration
+public class AsyncConfig implements WebMvcConfigurer {
+
+    private final AppProps.Async props;
+
+    public AsyncConfig(AppProps props) {
+        this.props = props.async();
+    }
+
+    @Bean
+    ThreadPoolTaskExecutor mvcAsyncExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(props.getThreads());
+        executor.setMaxPoolSize(props.getThreads());
+        executor.setQueueCapacity(props.getQueueSize());
+        executor.setAllowCoreThreadTimeOut(true);
+        executor.setThreadNamePrefix("mvc-async-");
+        return executor;
+    }
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.setTaskExecutor(mvcAsyncExecutor());
+    }
+}
@@ -1,9 +1,14 @@
 package com.example.clearcard.config;
 
 import com.example.clearcard.JobServiceGrpc;
+import com.example.clearcard.metrics.GrpcClientMetrics;
 import com.example.clearcard.sql.SqlControllerGrpc; // <-- new package
+import com.example.clearcard.tracing.GrpcTracingInterceptor;
+import io.grpc.ClientInterceptor;
+import io.grpc.CompressorRegistry;
 import io.grpc.ManagedChannel;
-import io.grpc.ManagedChannelBuilder;
+import io.grpc.netty.shaded.io.grpc.netty.NettyChannelBuilder;
+import io.grpc.stub.AbstractStub;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Bean;
@@ -19,22 +24,55 @@ public class GrpcClientConfig {
     private final AppProps props;
 
     @Bean(destroyMethod = "shutdownNow")
-    public ManagedChannel grpcChannel() {
-        String host = props.grpc().getHandlerHost();
-        int port = props.grpc().getHandlerPort();
-        log.info("gRPC channel → {}:{}", host, port);
-        return ManagedChannelBuilder.forAddress(host, port)
-                .usePlaintext().enableRetry().keepAliveTime(10, TimeUnit.SECONDS)
-                .build();
+    public ManagedChannel grpcChannel(GrpcClientMetrics metrics, GrpcTracingInterceptor tracing) {
+        var g = props.grpc();
+        log.info("gRPC channel → {}:{} (maxInbound={} flowWindow={} auto={} sqlRequest={} jobRequest={})",
+                g.getHandlerHost(), g.getHandlerPort(), g.getMaxInboundMessageSize(),
+                g.getFlowControlWindow(), g.isAutoFlowControl(),
+                g.sqlRequestCompressionOrDefault(), g.jobRequestCompressionOrDefault());
+        return buildChannel(g, metrics, tracing);
     }
 
     @Bean
     public JobServiceGrpc.JobServiceBlockingStub jobStub(ManagedChannel ch) {
-        return JobServiceGrpc.newBlockingStub(ch);
+        var g = props.grpc();
+        return tune(JobServiceGrpc.newBlockingStub(ch), g.jobRequestCompressionOrDefault(), g.getMaxInboundMessageSize());
     }
 
     @Bean
     public SqlControllerGrpc.SqlControllerBlockingStub sqlStub(ManagedChannel ch) {
-        return SqlControllerGrpc.newBlockingStub(ch);
+        var g = props.grpc();
+        return tune(SqlControllerGrpc.newBlockingStub(ch), g.sqlRequestCompressionOrDefault(), g.getMaxInboundMessageSize());
+    }
+
+    /** Channel factory shared with the benchmarks so they measure exactly what production dials. */
+    public static ManagedChannel buildChannel(AppProps.Grpc g, ClientInterceptor... interceptors) {
+        var b = NettyChannelBuilder.forAddress(g.getHandlerHost(), g.getHandlerPort())
+                .usePlaintext().enableRetry().keepAliveTime(10, TimeUnit.SECONDS)
+                .maxInboundMessageSize(g.getMaxInboundMessageSize())
+                .intercept(interceptors);
+        // grpc-java: initialFlowControlWindow keeps BDP auto-tuning on, flowControlWindow turns it off
+        if (g.isAutoFlowControl()) {
+            b.initialFlowControlWindow(g.getFlowControlWindow());
+        } else {
+            b.flowControlWindow(g.getFlowControlWindow());
+        }
+        return b.build();
+    }
+
+    /**
+     * Apply request compression + inbound size cap to a stub. Compression only affects what we send;
+     * SqlChunk responses are compressed by the handler (SQL_RESPONSE_COMPRESSION in job_server.py)
+     * using the gzip we advertise in grpc-accept-encoding.
+     */
+    public static <S extends AbstractStub<S>> S tune(S stub, String compression, int maxInbound) {
+        S out = stub.withMaxInboundMessageSize(maxInbound);
+        if (compression == null || compression.isBlank() || "identity".equalsIgnoreCase(compression)) {
+            return out;
+        }
+        if (CompressorRegistry.getDefaultInstance().lookupCompressor(compression) == null) {
+            throw new IllegalArgumentException("Unknown gRPC compressor: " + compression);
+        }
+        return out.withCompression(compression);
     }
 }
@@ -0,0 +1,78 @@
+package com.example.clearcard.config;
+
+import com.example.clearcard.admission.AdmissionFilter;
+import com.example.clearcard.admission.AdmissionPool;
+import com.example.clearcard.auth.PasswordHasher;
+import com.example.clearcard.resilience.Dependencies;
+import com.example.clearcard.resilience.Dependency;
+import com.example.clearcard.service.JobStatusWatcher;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Gauges over the in-process limiters (admission pools, bulkheads/breakers, BCrypt pool, SSE
+ * watchers) plus cardinality guards. Request/JDBC/Hikari meters come from Boot auto-configuration.
+ */
+@Configuration
+public class MetricsConfig {
+
+    /** Tag values beyond these counts are dropped rather than creating new series. */
+    @Bean
+    MeterFilter grpcMethodCardinality() {
+        return MeterFilter.maximumAllowableTags("grpc.client", "method", 64, MeterFilter.deny());
+    }
+
+    @Bean
+    MeterFilter httpUriCardinality() {
+        return MeterFilter.maximumAllowableTags("http.server.requests", "uri", 200, MeterFilter.deny());
+    }
+
+    @Bean
+    MeterBinder resilienceMeters(Dependencies deps) {
+        return registry -> {
+            for (Dependency d : deps.all()) {
+                String n = d.name();
+                Gauge.builder("resilience.inflight", d, x -> x.snapshot().inFlight()).tag("dependency", n).register(registry);
+                Gauge.builder("resilience.failure.rate", d, x -> x.snapshot().failureRate()).tag("dependency", n).register(registry);
+                Gauge.builder("resilience.circuit.open", d, x -> "CLOSED".equals(x.snapshot().state()) ? 0 : 1)
+                        .tag("dependency", n).register(registry);
+                FunctionCounter.builder("resilience.rejected", d, x -> x.snapshot().rejectedBulkhead())
+                        .tag("dependency", n).tag("reason", "bulkhead").register(registry);
+                FunctionCounter.builder("resilience.rejected", d, x -> x.snapshot().rejectedOpen())
+                        .tag("dependency", n).tag("reason", "open").register(registry);
+            }
+        };
+    }
+
+    @Bean
+    MeterBinder admissionMeters(AdmissionFilter admission) {
+        return registry -> {
+            for (AdmissionPool p : new AdmissionPool[] { admission.interactive(), admission.batch() }) {
+                Gauge.builder("admission.inflight", p, AdmissionPool::inFlight).tag("pool", p.name()).register(registry);
+                Gauge.builder("admission.queued", p, AdmissionPool::queued).tag("pool", p.name()).register(registry);
+                FunctionCounter.builder("admission.admitted", p, AdmissionPool::admittedTotal).tag("pool", p.name()).register(registry);
+                FunctionCounter.builder("admission.rejected", p, AdmissionPool::rejectedTotal).tag("pool", p.name()).register(registry);
+            }
+        };
+    }
+
+    @Bean
+    MeterBinder passwordHasherMeters(PasswordHasher hasher) {
+        return registry -> {
+            Gauge.builder("auth.hash.active", hasher, h -> h.stats().active()).register(registry);
+            Gauge.builder("auth.hash.queued", hasher, h -> h.stats().queued()).register(registry);
+            Gauge.builder("auth.hash.avg.ms", hasher, h -> h.stats().avgHashMs()).register(registry);
+            FunctionCounter.builder("auth.hash.rejected", hasher, h -> h.stats().rejected() + h.stats().timedOut())
+                    .register(registry);
+        };
+    }
+
+    @Bean
+    MeterBinder statusWatchMeters(JobStatusWatcher watcher) {
+        return registry -> Gauge.builder("jobs.status.watches", watcher, JobStatusWatcher::activeWatches).register(registry);
+    }
+}
@@ -51,8 +51,12 @@ public class SecurityConfig {
                                 // Optional helper endpoints
                                 "/sql", "/api/sql",
                                 "/csv", "/api/csv",
-                                "/articles", "/api/articles", "/articles/**", "/api/articles/**"
+                                "/articles", "/api/articles", "/articles/**", "/api/articles/**",
+                                // Health + Prometheus scrape: only served on management.server.port, which is not public
+                                "/actuator/health", "/actuator/prometheus"
                         ).permitAll()
+                        // breakers, JFR recordings, other users' SQL text: app.admin.usernames only
+                        .requestMatchers("/admin/**").hasRole("ADMIN")
                         .anyRequest().authenticated()
                 )
                 // Important: non-blocking JWT filter BEFORE UsernamePasswordAuthenticationFilter
@@ -68,8 +72,9 @@ public class SecurityConfig {
         cfg.setAllowedMethods(List.of("GET","POST","PUT","DELETE","OPTIONS","PATCH"));
         cfg.setAllowedHeaders(List.of(
                 "Authorization","Content-Type","Accept","X-Requested-With",
-                "X-Job-Title","X-Job-Config","X-XSRF-TOKEN","X-CSRF-TOKEN"
+                "X-Job-Title","X-Job-Config","X-XSRF-TOKEN","X-CSRF-TOKEN","X-Request-Id"
         ));
+        cfg.setExposedHeaders(List.of("X-Next-Cursor", "X-Job-Reused", "Retry-After", "X-Request-Id", "X-Result-Partial"));
         cfg.setAllowCredentials(true);
         var src = new UrlBasedCorsConfigurationSource();
         src.registerCorsConfiguration("/**", cfg);
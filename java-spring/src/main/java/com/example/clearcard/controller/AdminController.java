@@ -0,0 +1,121 @@
+package com.example.clearcard.controller;
+
+import com.example.clearcard.admission.AdmissionFilter;
+import com.example.clearcard.admission.AdmissionPool;
+import com.example.clearcard.auth.PasswordHasher;
+import com.example.clearcard.jfr.JfrRecordings;
+import com.example.clearcard.resilience.Dependencies;
+import com.example.clearcard.resilience.Dependency;
+import com.example.clearcard.security.JwtAuthFilter;
+import com.example.clearcard.service.SqlStats;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@Tag(name = "Admin")
+@RestController
+@RequestMapping("/admin")
+@RequiredArgsConstructor
+public class AdminController {
+
+    private final Dependencies deps;
+    private final AdmissionFilter admission;
+    private final PasswordHasher hasher;
+    private final JfrRecordings jfr;
+    private final SqlStats sqlStats;
+    private final JwtAuthFilter jwtAuth;
+
+    /** Bulkhead/breaker state per dependency, admission pool occupancy and the BCrypt pool. */
+    @GetMapping("/resilience")
+    public Map<String, Object> resilience() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("dependencies", deps.all().stream().map(Dependency::snapshot).toList());
+        out.put("admission", List.of(pool(admission.interactive()), pool(admission.batch())));
+        out.put("password_hasher", hasher.stats());
+        out.put("cached_principals", jwtAuth.cachedPrincipals());
+        return out;
+    }
+
+    /** Statement shapes ranked by {@code sort} (total, count, p95, p99, mean, rows, bytes). */
+    @GetMapping("/sql-stats")
+    public List<SqlStats.Summary> sqlStats(@RequestParam(defaultValue = "total") String sort,
+                                           @RequestParam(defaultValue = "50") int limit) {
+        return sqlStats.top(sort, limit);
+    }
+
+    /** Most recent statements over the slow threshold, newest first, with full text and parameters. */
+    @GetMapping("/sql-stats/slow")
+    public List<SqlStats.Slow> slowSql() {
+        return sqlStats.slow();
+    }
+
+    @DeleteMapping("/sql-stats")
+    public ResponseEntity<Void> resetSqlStats() {
+        sqlStats.reset();
+        return ResponseEntity.noContent().build();
+    }
+
+    /**
+     * Revoke one user's cached bearer-token principals now, instead of after app.cache.principal-ttl-ms.
+     * Use it after changing the user's password, role or app.admin.usernames entry, or deleting the user.
+     */
+    @DeleteMapping("/principals/{username}")
+    public ResponseEntity<Void> revokePrincipals(@PathVariable String username) {
+        jwtAuth.invalidateUser(username);
+        return ResponseEntity.noContent().build();
+    }
+
+    @DeleteMapping("/principals")
+    public ResponseEntity<Void> revokeAllPrincipals() {
+        jwtAuth.invalidateAll();
+        return ResponseEntity.noContent().build();
+    }
+
+    /** Start a Flight Recorder window; download it from {@code GET /admin/jfr/recordings/{id}} once it has stopped. */
+    @PostMapping("/jfr/recordings")
+    public JfrRecordings.Info startRecording(@RequestParam(defaultValue = "60") int seconds,
+                                             @RequestParam(defaultValue = "default") String settings) {
+        return jfr.start(seconds, settings);
+    }
+
+    @GetMapping("/jfr/recordings")
+    public List<JfrRecordings.Info> recordings() {
+        return jfr.list();
+    }
+
+    @PostMapping("/jfr/recordings/{id}/stop")
+    public JfrRecordings.Info stopRecording(@PathVariable long id) {
+        return jfr.stop(id);
+    }
+
+    @GetMapping("/jfr/recordings/{id}")
+    public ResponseEntity<Resource> downloadRecording(@PathVariable long id) {
+        Path file = jfr.file(id);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        ContentDisposition.attachment().filename("clearcard-" + id + ".jfr").build().toString())
+                .body(new FileSystemResource(file));
+    }
+
+    private static Map<String, Object> pool(AdmissionPool p) {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("name", p.name());
+        m.put("in_flight", p.inFlight());
+        m.put("queued", p.queued());
+        m.put("admitted_total", p.admittedTotal());
+        m.put("rejected_total", p.rejectedTotal());
+        return m;
+    }
+}
@@ -1,22 +1,32 @@
 package com.example.clearcard.controller;
 
+import com.example.clearcard.config.AppProps;
+import com.example.clearcard.jfr.SqlStreamEvent;
+import com.example.clearcard.resilience.Dependencies;
+import com.example.clearcard.resilience.Dependency;
+import com.example.clearcard.resilience.RequestCancellation;
+import com.example.clearcard.service.SqlStats;
 import com.example.clearcard.sql.SqlChunk;
 import com.example.clearcard.sql.SqlControllerGrpc;
 import com.example.clearcard.sql.SqlRequest;
+import com.example.clearcard.tracing.RequestIds;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import io.grpc.Metadata;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.grpc.Context;
 import io.grpc.StatusRuntimeException;
-import io.grpc.stub.MetadataUtils;
 import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.Min;
 import lombok.Data;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.WebAsyncTask;
+import org.springframework.web.server.ResponseStatusException;
 
 import java.util.*;
 import java.util.concurrent.TimeUnit;
@@ -24,12 +34,28 @@ import java.util.concurrent.TimeUnit;
 @Slf4j
 @RestController
 @RequestMapping({ "", "/api" })
-@RequiredArgsConstructor
 public class ArticleController {
 
     private final SqlControllerGrpc.SqlControllerBlockingStub sqlStub;
+    private final Dependencies deps;
+    private final SqlStats sqlStats;
+    private final RequestCancellation cancellation;
+    /** eid -> detail, or empty when the lookup found nothing (so repeated misses stay off the database too). */
+    private final Cache<String, Optional<ArticleDetail>> details;
     private static final ObjectMapper MAPPER = new ObjectMapper();
 
+    public ArticleController(SqlControllerGrpc.SqlControllerBlockingStub sqlStub, Dependencies deps,
+                             SqlStats sqlStats, RequestCancellation cancellation, AppProps props) {
+        this.sqlStub = sqlStub;
+        this.deps = deps;
+        this.sqlStats = sqlStats;
+        this.cancellation = cancellation;
+        this.details = Caffeine.newBuilder()
+                .maximumSize(props.cache().getArticleMaxEntries())
+                .expireAfterWrite(props.cache().getArticleTtlMs(), TimeUnit.MILLISECONDS)
+                .build();
+    }
+
     /* ───────────── DTOs ───────────── */
 
     @Data
@@ -71,16 +97,36 @@ public class ArticleController {
 
     /* ───────────── Helpers ───────────── */
 
-    private TableJson runSql(String sql, int chunkSize, long maxRows, String requestId) {
+    static final long SQL_DEADLINE_MINUTES = 10;
+
+    /**
+     * Table endpoints run as async requests so a client that goes away (or the request timing out)
+     * cancels the handler stream instead of leaving it running until the gRPC deadline.
+     */
+    private WebAsyncTask<ResponseEntity<TableJson>> table(String source, Object params, String sql, int chunkSize, long maxRows) {
+        return cancellation.call(TimeUnit.MINUTES.toMillis(SQL_DEADLINE_MINUTES),
+                () -> ResponseEntity.ok(runSql(source, params, sql, chunkSize, maxRows)));
+    }
+
+    /**
+     * {@code source} and {@code params} only feed SqlStats (shape grouping and the slow-statement log).
+     * The RPC runs in its own cancellable context, so stopping early (maxRows, a SQL error, an
+     * exception) cancels it on the handler right away.
+     */
+    private TableJson runSql(String source, Object params, String sql, int chunkSize, long maxRows) {
         TableJson out = new TableJson();
+        String requestId = RequestIds.currentOrNew();
+        // Fails fast with 503 (not a TableJson error) when the handler is saturated or tripped
+        Dependency.Call call = deps.handlerStream().begin();
+        SqlStreamEvent event = new SqlStreamEvent();
+        event.begin();
+        long t0 = System.nanoTime();
+        long bytes = 0;
+        Context.CancellableContext rpc = Context.current().withCancellation();
+        Context previous = rpc.attach();
         try {
-            Metadata headers = new Metadata();
-            Metadata.Key<String> X_REQUEST_ID = Metadata.Key.of("x-request-id", Metadata.ASCII_STRING_MARSHALLER);
-            headers.put(X_REQUEST_ID, requestId);
-
-            var stub = sqlStub
-                    .withInterceptors(MetadataUtils.newAttachHeadersInterceptor(headers))
-                    .withDeadlineAfter(10, TimeUnit.MINUTES);
+            // x-request-id and traceparent are attached by the channel's GrpcTracingInterceptor
+            var stub = sqlStub.withDeadlineAfter(SQL_DEADLINE_MINUTES, TimeUnit.MINUTES);
 
             SqlRequest req = SqlRequest.newBuilder()
                     .setSql(sql)
@@ -94,6 +140,8 @@ public class ArticleController {
             var it = stub.run(req);
             while (it.hasNext()) {
                 SqlChunk ch = it.next();
+                if (event.chunks++ == 0) event.firstChunk = System.nanoTime() - t0;
+                bytes += ch.getSerializedSize();
 
                 if (!haveCols && ch.hasSchema() && ch.getSchema().getColumnsCount() > 0) {
                     out.columns = new ArrayList<>(ch.getSchema().getColumnsList());
@@ -102,6 +150,7 @@ public class ArticleController {
                 if (!"OK".equals(ch.getStatus())) {
                     out.status = ch.getStatus();
                     out.error = ch.getErrorMessage();
+                    call.success(); // a SQL error is still a healthy handler
                     return out;
                 }
                 for (var r : ch.getRowsList()) {
@@ -112,16 +161,29 @@ public class ArticleController {
                 if (rows >= maxRows || ch.getLast()) break;
             }
             out.total = out.rows.size(); // client-side pagination: set total = full size
+            call.success();
             return out;
 
         } catch (StatusRuntimeException e) {
+            call.failure(e);
             out.status = "ERROR";
             out.error = "gRPC: " + e.getStatus().getCode() + " - " + e.getStatus().getDescription();
             return out;
         } catch (Exception e) {
+            call.failure(e);
             out.status = "ERROR";
             out.error = e.toString();
             return out;
+        } finally {
+            rpc.detach(previous);
+            rpc.cancel(null);
+            call.close();
+            event.end();
+            event.rows = out.rows.size();
+            event.bytes = bytes;
+            event.status = out.status;
+            event.commitTraced();
+            sqlStats.record(source, sql, params, System.nanoTime() - t0, out.rows.size(), bytes, out.status);
         }
     }
 
@@ -162,7 +224,7 @@ public class ArticleController {
             Map.entry("fitness",         new FieldDef("fitness", "number"))
     );
 
-    private String valToSql(String type, JsonNode v) {
+    private static String valToSql(String type, JsonNode v) {
         if (v == null || v.isNull()) return "NULL";
         switch (type) {
             case "number":
@@ -174,23 +236,24 @@ public class ArticleController {
                 return "N'" + v.asText().replace("'", "''") + "'";
         }
     }
-    private String likeValue(String s) {
+    private static String likeValue(String s) {
         String t = s == null ? "" : s;
         t = t.replace("'", "''").replace("%","[%]").replace("_","[_]").replace("[","[[]");
         return "N'%" + t + "%'";
     }
-    private String startsValue(String s) {
+    private static String startsValue(String s) {
         String t = s == null ? "" : s;
         t = t.replace("'", "''").replace("%","[%]").replace("_","[_]").replace("[","[[]");
         return "N'" + t + "%'";
     }
-    private String endsValue(String s) {
+    private static String endsValue(String s) {
         String t = s == null ? "" : s;
         t = t.replace("'", "''").replace("%","[%]").replace("_","[_]").replace("[","[[]");
         return "N'%" + t + "'";
     }
 
-    private String qbToWhere(JsonNode node) {
+    /** Package-private and static so the jmh source set can benchmark it. */
+    static String qbToWhere(JsonNode node) {
         if (node == null || node.isNull()) return "1=1";
         if (node.has("rules") && node.has("combinator")) {
             String comb = "and".equalsIgnoreCase(node.get("combinator").asText()) ? "AND" : "OR";
@@ -237,7 +300,7 @@ public class ArticleController {
 
     /* ───────────── GET /articles (no server paging) ───────────── */
     @GetMapping(value = "/articles", produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<TableJson> list(
+    public WebAsyncTask<ResponseEntity<TableJson>> list(
             @RequestParam(defaultValue = "") String q,
             @RequestParam(required = false) String category,
             @RequestParam(defaultValue = "2008") @Min(1500) @Max(2100) int yearFrom,
@@ -269,13 +332,19 @@ FROM condition
 """ + where + "ORDER BY " + sortSql + ";";
 
         // stream all; cap via maxRows (increase if needed)
-        var t = runSql(sql, 5000, 10_000_000L, UUID.randomUUID().toString());
-        return ResponseEntity.ok(t);
+        Map<String, Object> params = new LinkedHashMap<>();
+        params.put("q", q);
+        params.put("category", category);
+        params.put("yearFrom", yearFrom);
+        params.put("yearTo", yearTo);
+        params.put("sort", sort);
+        params.put("order", order);
+        return table("articles.list", params, sql, 5000, 10_000_000L);
     }
 
     /* ───────────── POST /articles/search (QB; no server paging) ───────────── */
     @PostMapping(value = "/articles/search", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<TableJson> search(@RequestBody ArticleSearchRequest req) {
+    public WebAsyncTask<ResponseEntity<TableJson>> search(@RequestBody ArticleSearchRequest req) {
         int yearFrom = req.yearFrom == null ? 2008 : req.yearFrom;
         int yearTo   = req.yearTo   == null ? 2018 : req.yearTo;
         String sortSql = sortClause(req.sort == null ? "cited_pub_year" : req.sort,
@@ -310,34 +379,89 @@ SELECT
 FROM condition
 """ + where + "ORDER BY " + sortSql + ";";
 
-        var t = runSql(sql, 5000, 10_000_000L, UUID.randomUUID().toString());
-        return ResponseEntity.ok(t);
+        return table("articles.search", req, sql, 5000, 10_000_000L);
     }
 
-    /* ───────────── DETAIL & CITERS (unchanged) ───────────── */
+    /* ───────────── DETAIL (point lookup) & CITERS ───────────── */
+
+    /** Most eids one lookup statement carries; bigger batches are split into several statements. */
+    static final int LOOKUP_CHUNK = 200;
+    /** Upper bound for one POST /articles/batch. */
+    static final int MAX_BATCH = 500;
+
+    @Data
+    public static class ArticleBatchRequest {
+        public List<String> eids;
+    }
 
     @GetMapping(value = "/articles/{eid}", produces = MediaType.APPLICATION_JSON_VALUE)
     public ResponseEntity<ArticleDetail> detail(@PathVariable("eid") String eid) {
-        String safeEid = eid.replace("'", "''");
-        String sql = baseCtes(null, null).replace(
-                "AND pp.cited_pub_year BETWEEN %s AND %s",
-                "AND 1=1"
-        ) + """
-SELECT TOP (1)
-    cited_eid, cited_doi, cited_title, cited_journal,
-    cited_pub_date, cited_pub_year, cited_pub_month, cited_pub_day,
-    cited_category, citation_count, fitness
-FROM condition
-WHERE cited_eid = N'%s';
-""".formatted(safeEid);
+        try {
+            return ResponseEntity.ok().body(cachedDetails("articles.detail", List.of(eid)).get(eid));
+        } catch (ResponseStatusException e) {
+            // the detail page has always treated a failed lookup like a missing article
+            log.warn("article detail {}: {}", eid, e.getReason());
+            return ResponseEntity.ok().body(null);
+        }
+    }
 
-        var t = runSql(sql, 512, 1, UUID.randomUUID().toString());
-        if (!"OK".equals(t.status) || t.rows.isEmpty()) return ResponseEntity.ok().body(null);
+    /**
+     * Details for many eids: cached ones from memory, the rest in one set-based lookup. Every requested
+     * eid is a key of the response; the value is null when the article has no 2-year citations (the
+     * same articles GET /articles/{eid} returns nothing for).
+     */
+    @PostMapping(value = "/articles/batch", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Map<String, ArticleDetail>> batch(@RequestBody ArticleBatchRequest req) {
+        LinkedHashSet<String> eids = new LinkedHashSet<>();
+        if (req != null && req.eids != null) {
+            for (String e : req.eids) if (e != null && !e.isBlank()) eids.add(e.trim());
+        }
+        if (eids.size() > MAX_BATCH) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "At most " + MAX_BATCH + " eids per batch");
+        }
+        Map<String, ArticleDetail> found = cachedDetails("articles.batch", eids);
+        Map<String, ArticleDetail> out = new LinkedHashMap<>();
+        for (String e : eids) out.put(e, found.get(e));
+        return ResponseEntity.ok(out);
+    }
+
+    /**
+     * Found articles keyed by eid, looking up only the eids not cached yet (in one statement per
+     * {@link #LOOKUP_CHUNK}). A failed statement caches nothing.
+     */
+    private Map<String, ArticleDetail> cachedDetails(String source, Collection<String> eids) {
+        Map<String, Optional<ArticleDetail>> all = details.getAll(eids, missing -> {
+            Map<String, ArticleDetail> found = lookupDetails(source, missing);
+            Map<String, Optional<ArticleDetail>> loaded = new HashMap<>();
+            for (String e : missing) loaded.put(e, Optional.ofNullable(found.get(e)));
+            return loaded;
+        });
+        Map<String, ArticleDetail> out = new HashMap<>();
+        all.forEach((e, d) -> d.ifPresent(v -> out.put(e, v)));
+        return out;
+    }
 
-        Map<String,Integer> idx = new HashMap<>();
-        for (int i=0;i<t.columns.size();i++) idx.put(t.columns.get(i), i);
-        var row = t.rows.get(0);
+    /** Found articles keyed by eid; a failed lookup statement is an error for the whole call. */
+    private Map<String, ArticleDetail> lookupDetails(String source, Collection<? extends String> eids) {
+        Map<String, ArticleDetail> out = new HashMap<>();
+        List<String> all = new ArrayList<>(eids);
+        for (int from = 0; from < all.size(); from += LOOKUP_CHUNK) {
+            List<String> part = all.subList(from, Math.min(all.size(), from + LOOKUP_CHUNK));
+            var t = runSql(source, Map.of("eids", part), detailLookupSql(part), 512, part.size() * 4L);
+            if (!"OK".equals(t.status)) {
+                throw new ResponseStatusException(HttpStatus.BAD_GATEWAY, "Article lookup failed: " + t.error);
+            }
+            Map<String,Integer> idx = new HashMap<>();
+            for (int i=0;i<t.columns.size();i++) idx.put(t.columns.get(i), i);
+            for (var row : t.rows) {
+                ArticleDetail d = toDetail(idx, row);
+                out.putIfAbsent(d.cited_eid, d);
+            }
+        }
+        return out;
+    }
 
+    private ArticleDetail toDetail(Map<String,Integer> idx, List<String> row) {
         ArticleDetail d = new ArticleDetail();
         d.cited_eid         = row.get(idx.get("cited_eid"));
         d.cited_doi         = row.get(idx.get("cited_doi"));
@@ -350,11 +474,71 @@ WHERE cited_eid = N'%s';
         d.cited_category    = row.get(idx.get("cited_category"));
         d.fitness           = toDbl(row.get(idx.get("fitness")));
         d.citation_count_2y = toDbl(row.get(idx.get("citation_count")));
-        return ResponseEntity.ok(d);
+        return d;
+    }
+
+    /**
+     * Same columns and numbers as the {@code condition} CTE (2-year citation count, category, max
+     * fitness; no publication-year window), but starting from the requested papers: the eid list is
+     * applied to paper, category and fitness first, so the statement seeks on a handful of rows
+     * instead of grouping every citation pair in the corpus. Articles without a citation inside two
+     * years are absent, as they are from {@code condition}.
+     */
+    private static String detailLookupSql(Collection<String> eids) {
+        StringJoiner in = new StringJoiner(", ");
+        for (String e : eids) in.add("N'" + e.replace("'", "''") + "'");
+        String list = in.length() == 0 ? "NULL" : in.toString();
+        return """
+WITH cited AS (
+    SELECT
+        p.paper_id,
+        p.[prism:coverDate] AS cover_date,
+        p.eid AS cited_eid,
+        p.[prism:doi] AS cited_doi,
+        p.[dc:title] AS cited_title,
+        p.[prism:publicationName] AS cited_journal,
+        CAST(p.[prism:coverDate] AS date) AS cited_pub_date,
+        YEAR(p.[prism:coverDate])  AS cited_pub_year,
+        MONTH(p.[prism:coverDate]) AS cited_pub_month,
+        DAY(p.[prism:coverDate])   AS cited_pub_day
+    FROM scopus.dbo.[paper] p
+    WHERE p.eid IN (%1$s)
+      AND p.[prism:coverDate] IS NOT NULL
+),
+cites AS (
+    SELECT ci.paper_id, CAST(COUNT(*) AS float) AS citation_count
+    FROM cited ci
+    JOIN scopus.dbo.[relationship] r ON r.paper_id_1 = ci.paper_id AND r.[relationship] = 'citing'
+    JOIN scopus.dbo.[citation]     c ON c.paper_id = r.paper_id_2
+    WHERE c.[prism:coverDate] IS NOT NULL
+      AND CAST(DATEDIFF(DAY, ci.cover_date, c.[prism:coverDate]) AS float) <= 365.25*2
+    GROUP BY ci.paper_id
+),
+cat AS (
+    SELECT target_eid, MAX(category) AS cited_category
+    FROM category.dbo.[article]
+    WHERE target_eid IN (%1$s)
+    GROUP BY target_eid
+),
+fit AS (
+    SELECT target_eid, MAX(CAST(fitness AS float)) AS cited_fitness
+    FROM fitness.dbo.[article]
+    WHERE target_eid IN (%1$s)
+    GROUP BY target_eid
+)
+SELECT
+    ci.cited_eid, ci.cited_doi, ci.cited_title, ci.cited_journal,
+    ci.cited_pub_date, ci.cited_pub_year, ci.cited_pub_month, ci.cited_pub_day,
+    ca.cited_category, n.citation_count, f.cited_fitness AS fitness
+FROM cited ci
+JOIN cites n     ON n.paper_id    = ci.paper_id
+LEFT JOIN cat ca ON ca.target_eid = ci.cited_eid
+LEFT JOIN fit f  ON f.target_eid  = ci.cited_eid;
+""".formatted(list);
     }
 
     @GetMapping(value = "/articles/{eid}/cites", produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<TableJson> citing(@PathVariable("eid") String eid) {
+    public WebAsyncTask<ResponseEntity<TableJson>> citing(@PathVariable("eid") String eid) {
         String safeEid = eid.replace("'", "''");
         String sql = """
 WITH base AS (
@@ -406,8 +590,7 @@ FROM condition
 ORDER BY citation_time_days ASC;
 """.formatted(safeEid);
 
-        var t = runSql(sql, 4096, 100000, UUID.randomUUID().toString());
-        return ResponseEntity.ok(t);
+        return table("articles.cites", Map.of("eid", eid), sql, 4096, 100000);
     }
 
     /* ───────────── SQL CTEs ───────────── */
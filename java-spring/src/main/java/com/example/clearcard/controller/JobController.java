@@ -1,18 +1,30 @@
 package com.example.clearcard.controller;
 
+import com.example.clearcard.dto.JobPreviewResponse;
 import com.example.clearcard.dto.JobResultResponse;
 import com.example.clearcard.dto.JobStatusResponse;
 import com.example.clearcard.dto.JobSubmitResponse;
 import com.example.clearcard.jobs.JobConfigEntity;
 import com.example.clearcard.jobs.JobConfigRepository;
+import com.example.clearcard.model.ResultManifest;
+import com.example.clearcard.profile.ResultProfile;
+import com.example.clearcard.profile.ResultProfileService;
+import com.example.clearcard.resilience.RequestCancellation;
+import com.example.clearcard.service.ChartService;
 import com.example.clearcard.service.GcsCsvJsonService;
 import com.example.clearcard.service.GcsCsvMergeService;
 import com.example.clearcard.service.JobClient;
+import com.example.clearcard.service.JobReuseService;
+import com.example.clearcard.service.PartialResultService;
+import com.example.clearcard.service.ResultJoinService;
+import com.example.clearcard.service.JobStatusWatcher;
+import com.example.clearcard.tracing.RequestIds;
 import com.example.clearcard.user.UserRepository;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.Pattern;
@@ -22,12 +34,15 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.*;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.WebAsyncTask;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.nio.charset.StandardCharsets;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
 
 @Slf4j
 @RestController
@@ -40,12 +55,22 @@ public class JobController {
     private final GcsCsvJsonService csvJsonService;
     private final JobConfigRepository configs;
     private final UserRepository users;
+    private final JobStatusWatcher statusWatcher;
+    private final JobReuseService reuse;
+    private final ChartService charts;
+    private final ResultProfileService profiles;
+    private final PartialResultService partials;
+    private final ResultJoinService joins;
+    private final RequestCancellation cancellation;
 
     private final ObjectMapper mapper = new ObjectMapper();
 
     @Value("${download.filenamePrefix:job-}")
     private String filenamePrefix;
 
+    /** Set on downloads served from a running job's partial manifest. */
+    static final String PARTIAL_HEADER = "X-Result-Partial";
+
     private static String normId(String id) {
         return id == null ? null : id.toLowerCase(Locale.ROOT);
     }
@@ -73,11 +98,11 @@ public class JobController {
             @RequestParam(defaultValue="csv") @Pattern(regexp="csv") String format,
             @RequestParam(defaultValue="5000") @Min(100) @Max(100_000) int pageSize,
             @RequestParam(defaultValue="5000000") @Min(1) long maxRows,
-            @RequestHeader(value="X-Request-Id", required=false) String xReqId,
             @RequestHeader(value="Content-Type") String contentType,
             @RequestHeader(value="X-Job-Title", required=false) String xTitle,
             @RequestHeader(value="X-Job-Config", required=false) String xConfig,
-            Authentication auth
+            Authentication auth,
+            HttpServletResponse response
     ) {
         final String username = (auth != null && auth.getName() != null) ? auth.getName() : "anonymous";
         log.info("POST /jobs by user={} format={} pageSize={} maxRows={}", username, format, pageSize, maxRows);
@@ -120,13 +145,33 @@ public class JobController {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid request body");
         }
 
-        var ack = jobClient.submit(sql, format, pageSize, maxRows, username, xReqId, title, tableConfigJson, chartConfigJson);
+        final String requestId = RequestIds.current(); // RequestIdFilter already validated X-Request-Id
+        final String jobSql = sql, jobTitle = title, jobTableCfg = tableConfigJson, jobChartCfg = chartConfigJson;
+        if (reuse.enabled()) {
+            String fp = JobReuseService.fingerprint(username, sql, format, pageSize, maxRows,
+                    title, tableConfigJson, chartConfigJson);
+            var outcome = reuse.submitOrReuse(fp, () -> jobClient.submit(
+                    jobSql, format, pageSize, maxRows, username, requestId, jobTitle, jobTableCfg, jobChartCfg));
+            if (outcome.reused()) {
+                response.setHeader("X-Job-Reused", "true");
+                return new JobSubmitResponse(outcome.jobId(), outcome.status());
+            }
+            saveConfig(outcome.jobId(), username, sql, title, tableConfigJson, chartConfigJson);
+            return new JobSubmitResponse(outcome.jobId(), outcome.status());
+        }
+
+        var ack = jobClient.submit(sql, format, pageSize, maxRows, username, requestId, title, tableConfigJson, chartConfigJson);
+        saveConfig(ack.getJobId(), username, sql, title, tableConfigJson, chartConfigJson);
+        return new JobSubmitResponse(ack.getJobId(), ack.getStatus());
+    }
 
+    private void saveConfig(String jobId, String username, String sql, String title,
+                            String tableConfigJson, String chartConfigJson) {
         try {
             var u = users.findByUsername(username).orElse(null);
             if (u != null) {
                 var e = new JobConfigEntity();
-                e.setJobId(ack.getJobId());
+                e.setJobId(jobId);
                 e.setUserId(u.getId());
                 e.setTitle(title);
                 e.setSqlText(sql);
@@ -135,10 +180,8 @@ public class JobController {
                 configs.save(e);
             }
         } catch (Exception ex) {
-            log.warn("Failed to persist job config for job {}", ack.getJobId(), ex);
+            log.warn("Failed to persist job config for job {}", jobId, ex);
         }
-
-        return new JobSubmitResponse(ack.getJobId(), ack.getStatus());
     }
 
     /* -------------------- Status / Result pointer -------------------- */
@@ -149,6 +192,16 @@ public class JobController {
         return new JobStatusResponse(s.getState(), s.getRowCount(), s.getBytes(), s.getErrorMessage());
     }
 
+    /**
+     * Server-push alternative to polling GET /jobs/{id}: emits a "status" event (JobStatusResponse)
+     * on every state/progress change and closes the stream once the job is terminal.
+     */
+    @Operation(summary = "Subscribe to job status changes (Server-Sent Events)")
+    @GetMapping(value="/jobs/{id}/events", produces=MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter events(@PathVariable("id") String id) {
+        return statusWatcher.subscribe(normId(id));
+    }
+
     @GetMapping(value="/jobs/{id}/result", produces=MediaType.APPLICATION_JSON_VALUE)
     public JobResultResponse result(@PathVariable("id") String id) {
         var ref = jobClient.manifest(normId(id));
@@ -158,31 +211,151 @@ public class JobController {
         return new JobResultResponse(ref.getGcsManifestUri(), "OK", "");
     }
 
+    /* -------------------- Server-side aggregates -------------------- */
+
+    /**
+     * The job's chart, aggregated on the server from one pass over the result: grouped by the stored
+     * chart_config (x, groupBy), top series plus "Other", and at most {@code points} x values. Runs
+     * as an async request so the pass stops if the client leaves or the request times out.
+     */
+    @Operation(summary = "Chart-ready aggregates of a finished job")
+    @GetMapping(value = "/jobs/{id}/chart", produces = MediaType.APPLICATION_JSON_VALUE)
+    public WebAsyncTask<ChartService.Chart> chart(@PathVariable("id") String id,
+                                                  @RequestParam(defaultValue = "line") String kind,
+                                                  @RequestParam(defaultValue = "sum") String agg,
+                                                  @RequestParam(required = false) @Min(2) Integer points) {
+        final String nid = normId(id);
+        return cancellation.call(() -> {
+            var ref = jobClient.manifest(nid);
+            if (!"OK".equals(ref.getStatus())) {
+                throw new ResponseStatusException(HttpStatus.CONFLICT, ref.getErrorMessage() == null ? ref.getStatus() : ref.getErrorMessage());
+            }
+            String chartConfig = configs.findById(nid).map(JobConfigEntity::getChartConfig).orElse(null);
+            return charts.chart(nid, ref.getGcsManifestUri(), chartConfig, kind, agg, points);
+        });
+    }
+
+    /**
+     * Per-column statistics of a finished job (min/max, nulls, approximate distinct, histograms,
+     * top values), computed on first request and kept as stats.json beside the manifest. Async like
+     * the chart: a first-time scan stops if the client leaves.
+     */
+    @Operation(summary = "Column statistics of a finished job")
+    @GetMapping(value = "/jobs/{id}/stats", produces = MediaType.APPLICATION_JSON_VALUE)
+    public WebAsyncTask<ResultProfile> stats(@PathVariable("id") String id) {
+        final String nid = normId(id);
+        return cancellation.call(() -> {
+            var ref = jobClient.manifest(nid);
+            if (!"OK".equals(ref.getStatus())) {
+                throw new ResponseStatusException(HttpStatus.CONFLICT, ref.getErrorMessage() == null ? ref.getStatus() : ref.getErrorMessage());
+            }
+            return profiles.profile(nid, ref.getGcsManifestUri());
+        });
+    }
+
+    /**
+     * First rows of a job without downloading it: reads only as much of chunks[0] as needed.
+     * While the job runs, rows come from the parts written so far ({@code partial=true}).
+     */
+    @Operation(summary = "First rows of a job")
+    @GetMapping(value = "/jobs/{id}/preview", produces = MediaType.APPLICATION_JSON_VALUE)
+    public JobPreviewResponse preview(@PathVariable("id") String id,
+                                      @RequestParam(defaultValue = "50") @Min(1) @Max(1000) int rows) {
+        final String nid = normId(id);
+        var ref = jobClient.manifest(nid);
+        if (!"OK".equals(ref.getStatus())) {
+            ResultManifest partial = partials.running(nid);
+            if (partial != null) return csvJsonService.preview(partial, rows);
+            throw new ResponseStatusException(HttpStatus.CONFLICT, ref.getErrorMessage() == null ? ref.getStatus() : ref.getErrorMessage());
+        }
+        return csvJsonService.preview(ref.getGcsManifestUri(), rows);
+    }
+
+    /**
+     * Joins two finished results on {@code key} server-side and streams the joined rows, so two
+     * results can be compared without downloading both. {@code how} is inner/left/right/full.
+     */
+    @Operation(summary = "Join two finished jobs on a key column (CSV or NDJSON)")
+    @GetMapping(value = "/jobs/compare", produces = { "text/csv", "application/x-ndjson" })
+    public ResponseEntity<StreamingResponseBody> compare(@RequestParam String left,
+                                                         @RequestParam String right,
+                                                         @RequestParam String key,
+                                                         @RequestParam(defaultValue = "inner") String how,
+                                                         @RequestParam(defaultValue = "csv") String format) {
+        String l = normId(left), r = normId(right);
+        StreamingResponseBody body = cancellation.stream(joins.join(okManifest(l), okManifest(r), key, how, format));
+        boolean csv = !"ndjson".equalsIgnoreCase(format);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(csv ? "text/csv; charset=UTF-8" : "application/x-ndjson"))
+                .header("Content-Disposition", "attachment; filename=\"" + filenamePrefix + l + "-vs-" + r + (csv ? ".csv" : ".ndjson") + "\"")
+                .header("Cache-Control", "no-store")
+                .body(body);
+    }
+
+    private String okManifest(String jobId) {
+        var ref = jobClient.manifest(jobId);
+        if (!"OK".equals(ref.getStatus())) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, jobId + ": " + (ref.getErrorMessage() == null ? ref.getStatus() : ref.getErrorMessage()));
+        }
+        return ref.getGcsManifestUri();
+    }
+
     /* -------------------- Downloads -------------------- */
 
+    /**
+     * Merged CSV of a job. While it is still running, the parts written so far are served with
+     * {@code X-Result-Partial: true}; with {@code follow=true} the response stays open and appends
+     * parts as they land until the job finishes.
+     */
     @GetMapping(value = "/jobs/{id}/download.csv", produces = "text/csv; charset=UTF-8")
-    public ResponseEntity<StreamingResponseBody> downloadCsv(@PathVariable("id") String id) {
-        var ref = jobClient.manifest(normId(id));
+    public ResponseEntity<StreamingResponseBody> downloadCsv(@PathVariable("id") String id,
+                                                             @RequestParam(defaultValue = "false") boolean follow) {
+        final String nid = normId(id);
+        var ref = jobClient.manifest(nid);
         if (!"OK".equals(ref.getStatus())) {
+            ResultManifest partial = partials.running(nid);
+            if (partial != null) {
+                return ResponseEntity.ok()
+                        .header("Content-Disposition", "attachment; filename=\"" + filenamePrefix + id + ".partial.csv\"")
+                        .header("Cache-Control", "no-store")
+                        .header(PARTIAL_HEADER, "true")
+                        .body(cancellation.stream(csvMergeService.mergedCsv(partial, follow ? partials.tail(nid) : null)));
+            }
             return ResponseEntity.status(HttpStatus.CONFLICT)
                     .contentType(MediaType.APPLICATION_JSON)
                     .body(out -> out.write(("status=" + ref.getStatus() + ", error=" + ref.getErrorMessage()).getBytes(StandardCharsets.UTF_8)));
         }
-        StreamingResponseBody body = csvMergeService.mergedCsvFromManifestGs(ref.getGcsManifestUri());
+        StreamingResponseBody body = cancellation.stream(csvMergeService.mergedCsvFromManifestGs(ref.getGcsManifestUri()));
         return ResponseEntity.ok()
                 .header("Content-Disposition", "attachment; filename=\"" + filenamePrefix + id + ".csv\"")
                 .header("Cache-Control", "no-store")
                 .body(body);
     }
 
+    /**
+     * Whole result as one JSON array. Built in memory before anything is written, so it runs as an
+     * async request: if the client leaves or the request times out, the GCS reads stop.
+     */
     @GetMapping(value = "/jobs/{id}/download.json", produces = "application/json; charset=UTF-8")
-    public ResponseEntity<byte[]> downloadJson(@PathVariable("id") String id) {
+    public WebAsyncTask<ResponseEntity<byte[]>> downloadJson(@PathVariable("id") String id) {
         final String nid = normId(id);
+        return cancellation.call(() -> jsonDownload(nid));
+    }
+
+    private ResponseEntity<byte[]> jsonDownload(String nid) {
         try {
             var ref = jobClient.manifest(nid);
             log.info("downloadJson for job {}: {}", nid, ref.getStatus());
 
             if (!"OK".equals(ref.getStatus())) {
+                ResultManifest partial = partials.running(nid);
+                if (partial != null) {
+                    return ResponseEntity.ok()
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .header("Cache-Control", "no-store")
+                            .header(PARTIAL_HEADER, "true")
+                            .body(csvJsonService.jsonArrayBytes(partial));
+                }
                 String msg = (ref.getErrorMessage() == null ? ref.getStatus() : ref.getErrorMessage());
                 byte[] err = ("{\"status\":409,\"error\":" + mapper.writeValueAsString(msg) + "}").getBytes(StandardCharsets.UTF_8);
                 return ResponseEntity.status(HttpStatus.CONFLICT)
@@ -207,6 +380,10 @@ public class JobController {
                     .header("Cache-Control", "no-store")
                     .body(err);
 
+        } catch (CancellationException ce) {
+            log.info("download.json for {} cancelled: {}", nid, ce.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build(); // nobody is left to read it
+
         } catch (Exception ex) {
             log.error("download.json failed for {}", nid, ex);
             byte[] err = "{\"status\":409,\"error\":\"Result not ready or unavailable\"}".getBytes(StandardCharsets.UTF_8);
@@ -1,14 +1,19 @@
 package com.example.clearcard.controller;
 
+import com.example.clearcard.config.AppProps;
 import com.example.clearcard.jobs.*;
 import com.example.clearcard.service.JobClient;
 import com.example.clearcard.user.UserRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.userdetails.User;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.Duration;
 import java.util.*;
 
 @Tag(name = "Jobs (List/Detail/Pin)")
@@ -17,13 +22,19 @@ public class JobQueryController {
     private final JobsDao dao;
     private final JobClient jobClient;
     private final UserRepository users;
-    private final JobConfigRepository configs;
     private final PinRepository pins;
     private final com.fasterxml.jackson.databind.ObjectMapper mapper = new com.fasterxml.jackson.databind.ObjectMapper();
+    private final Cache<String, String> details;
+
+    private static final Set<String> TERMINAL = Set.of("SUCCEEDED", "FAILED", "CANCELLED");
 
     public JobQueryController(JobsDao dao, JobClient jobClient, UserRepository users,
-                              JobConfigRepository configs, PinRepository pins) {
-        this.dao = dao; this.jobClient = jobClient; this.users = users; this.configs = configs; this.pins = pins;
+                              PinRepository pins, AppProps props) {
+        this.dao = dao; this.jobClient = jobClient; this.users = users; this.pins = pins;
+        this.details = Caffeine.newBuilder()
+                .maximumSize(props.cache().getDetailMaxEntries())
+                .expireAfterWrite(Duration.ofMillis(props.cache().getDetailTtlMs()))
+                .build();
     }
 
     /** Legacy list endpoint (kept for compatibility) – now includes title/table_config/chart_config. */
@@ -37,46 +48,84 @@ public class JobQueryController {
         return ResponseEntity.ok(dao.listByUser(me.getUsername(), safeLimit, safeOffset));
     }
 
-    /** New client endpoint – same payload as legacy but path /jobs/mine */
+    /**
+     * New client endpoint – same payload as legacy but path /jobs/mine.
+     * Passing {@code after} (empty for the first page) switches to keyset paging: rows come back
+     * without table_config/chart_config unless {@code includeConfig=true}, and a full page carries
+     * the next cursor in X-Next-Cursor.
+     */
     @GetMapping("/jobs/mine")
     public ResponseEntity<List<JobsDao.JobListRow>> listMyJobs(@AuthenticationPrincipal User me,
                                                                @RequestParam(defaultValue = "20") int limit,
-                                                               @RequestParam(defaultValue = "0") int offset) {
+                                                               @RequestParam(defaultValue = "0") int offset,
+                                                               @RequestParam(required = false) String after,
+                                                               @RequestParam(defaultValue = "false") boolean includeConfig) {
         if (me == null) return ResponseEntity.status(401).build();
         var safeLimit = Math.min(Math.max(limit, 1), 100);
+        if (after != null) {
+            var rows = dao.listByUserAfter(me.getUsername(), safeLimit, JobCursor.decode(after), includeConfig);
+            var resp = ResponseEntity.ok();
+            if (rows.size() == safeLimit) {
+                var last = rows.get(rows.size() - 1);
+                resp.header("X-Next-Cursor", new JobCursor(last.getSubmitted_at(), last.getJob_id()).encode());
+            }
+            return resp.body(rows);
+        }
         var safeOffset = Math.max(offset, 0);
         return ResponseEntity.ok(dao.listByUser(me.getUsername(), safeLimit, safeOffset));
     }
 
-    @GetMapping("/jobs/{id}/detail")
-    public ResponseEntity<Map<String,Object>> detail(@AuthenticationPrincipal User me, @PathVariable String id) {
+    /**
+     * One query for job + config + pin. Once the job is terminal nothing in the body changes except
+     * the pin flag, so the serialized JSON is cached per (user, job) without it, and {@code pinned}
+     * is read fresh on every request: a pin/unpin racing a cache fill can never leave a stale flag.
+     */
+    @GetMapping(value = "/jobs/{id}/detail", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<String> detail(@AuthenticationPrincipal User me, @PathVariable String id) {
         if (me == null) return ResponseEntity.status(401).build();
-        var u = users.findByUsername(me.getUsername()).orElseThrow();
-        var d = dao.getOne(id, me.getUsername()).orElse(null);
-        if (d == null) return ResponseEntity.notFound().build();
+        String key = detailKey(me.getUsername(), id);
+        String cached = details.getIfPresent(key);
+        if (cached != null) return ResponseEntity.ok(withPinned(cached, dao.isPinned(id, me.getUsername())));
 
-        var cfgEnt = configs.findByJobIdAndUserId(id, u.getId()).orElse(null);
+        var d = dao.getDetailView(id, me.getUsername()).orElse(null);
+        if (d == null) return ResponseEntity.notFound().build();
 
-        Object qb = null, cfg = null;
-        String title = null;
-        if (cfgEnt != null) {
-            title = cfgEnt.getTitle();
-            try { qb  = cfgEnt.getTableConfig()  == null ? null : mapper.readValue(cfgEnt.getTableConfig(),  Object.class); }
-            catch (Exception e) { qb = cfgEnt.getTableConfig(); }
-            try { cfg = cfgEnt.getChartConfig()  == null ? null : mapper.readValue(cfgEnt.getChartConfig(),  Object.class); }
-            catch (Exception e) { cfg = cfgEnt.getChartConfig(); }
-        }
+        var config = new LinkedHashMap<String,Object>();
+        config.put("qb", parseOrRaw(d.table_config()));
+        config.put("cfg", parseOrRaw(d.chart_config()));
 
-        var out = new java.util.LinkedHashMap<String,Object>();
+        var out = new LinkedHashMap<String,Object>();
         out.put("id", d.job_id());
-        out.put("title", title);
+        out.put("title", d.title());
         out.put("sql", d.sql_text());
         out.put("status", d.state());
         out.put("created_at", d.submitted_at().toString());
         out.put("owner_id", me.getUsername());
-        out.put("config", java.util.Map.of("qb", qb, "cfg", cfg));
-        out.put("pinned", pins.existsByUserIdAndJobId(u.getId(), id));
-        return ResponseEntity.ok(out);
+        out.put("config", config);
+
+        String json;
+        try {
+            json = mapper.writeValueAsString(out);
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to serialize job detail", e);
+        }
+        if (TERMINAL.contains(d.state())) details.put(key, json);
+        return ResponseEntity.ok(withPinned(json, d.pinned()));
+    }
+
+    /** Appends the per-request pin flag as the last field of a serialized detail object. */
+    private static String withPinned(String json, boolean pinned) {
+        return json.substring(0, json.length() - 1) + ",\"pinned\":" + pinned + '}';
+    }
+
+    private Object parseOrRaw(String json) {
+        if (json == null) return null;
+        try { return mapper.readTree(json); }
+        catch (Exception e) { return json; }
+    }
+
+    private static String detailKey(String username, String jobId) {
+        return username + '\n' + jobId;
     }
 
     @PostMapping("/jobs/{id}/pin")
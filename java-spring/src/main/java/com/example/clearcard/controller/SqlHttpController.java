@@ -4,19 +4,24 @@ import com.example.clearcard.SqlChunk;
 import com.example.clearcard.SqlControllerGrpc;
 import com.example.clearcard.SqlRequest;
 import com.example.clearcard.config.AppProps;
+import com.example.clearcard.metrics.GrpcClientMetrics;
+import com.example.clearcard.resilience.Dependencies;
+import com.example.clearcard.resilience.Dependency;
+import com.example.clearcard.resilience.RequestCancellation;
+import com.example.clearcard.service.SqlStats;
+import com.example.clearcard.tracing.GrpcTracingInterceptor;
+import com.example.clearcard.tracing.RequestIds;
 import io.grpc.Channel;
-import io.grpc.ClientInterceptor;
 import io.grpc.ManagedChannel;
 import io.grpc.ManagedChannelBuilder;
-import io.grpc.Metadata;
 import io.grpc.StatusRuntimeException;
-import io.grpc.stub.MetadataUtils;
 import jakarta.servlet.http.HttpServletRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.WebAsyncTask;
 
 import java.util.*;
 import java.util.concurrent.TimeUnit;
@@ -28,13 +33,27 @@ public class SqlHttpController {
 
     private final String handlerHost;
     private final int handlerPort;
-
-    public SqlHttpController(AppProps props) {
+    private final Dependency handler;
+    private final GrpcClientMetrics grpcMetrics;
+    private final GrpcTracingInterceptor grpcTracing;
+    private final SqlStats sqlStats;
+    private final RequestCancellation cancellation;
+
+    public SqlHttpController(AppProps props, Dependencies deps, GrpcClientMetrics grpcMetrics,
+                             GrpcTracingInterceptor grpcTracing, SqlStats sqlStats,
+                             RequestCancellation cancellation) {
         this.handlerHost = props.grpc().getHandlerHost();
         this.handlerPort = props.grpc().getHandlerPort();
+        this.handler = deps.handlerStream();
+        this.grpcMetrics = grpcMetrics;
+        this.grpcTracing = grpcTracing;
+        this.sqlStats = sqlStats;
+        this.cancellation = cancellation;
         log.info("SqlHttpController will dial gRPC at {}:{}", handlerHost, handlerPort);
     }
 
+    private static final long DEADLINE_MINUTES = 5;
+
     /** JSON response shape */
     public static class TableJson {
         public List<String> columns = new ArrayList<>();
@@ -50,39 +69,41 @@ public class SqlHttpController {
      * Query params:
      *   - pageSize (default 500): rows per gRPC chunk
      *   - maxRows  (default 5000): cap rows returned
+     * Runs as an async request: a client disconnect or the request timing out cancels the stream
+     * on the handler, as does stopping at maxRows (the per-request channel is shut down).
      */
     @PostMapping(value = "/sql", consumes = MediaType.TEXT_PLAIN_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<TableJson> runSql(@RequestBody String sql,
-                                            @RequestParam(value = "pageSize", required = false, defaultValue = "500") int pageSize,
-                                            @RequestParam(value = "maxRows", required = false, defaultValue = "5000") int maxRows,
-                                            @RequestHeader(value = "X-Request-Id", required = false) String xReqId,
-                                            HttpServletRequest httpReq) {
-
-        final String requestId = (xReqId != null && !xReqId.isBlank()) ? xReqId : UUID.randomUUID().toString();
+    public WebAsyncTask<ResponseEntity<TableJson>> runSql(@RequestBody String sql,
+                                                          @RequestParam(value = "pageSize", required = false, defaultValue = "500") int pageSize,
+                                                          @RequestParam(value = "maxRows", required = false, defaultValue = "5000") int maxRows,
+                                                          HttpServletRequest httpReq) {
         final String client = Optional.ofNullable(httpReq.getHeader("X-Forwarded-For"))
                 .orElseGet(httpReq::getRemoteAddr);
+        return cancellation.call(TimeUnit.MINUTES.toMillis(DEADLINE_MINUTES), () -> execute(sql, pageSize, maxRows, client));
+    }
+
+    private ResponseEntity<TableJson> execute(String sql, int pageSize, int maxRows, String client) {
+        final String requestId = RequestIds.currentOrNew(); // accepted or minted by RequestIdFilter
 
         final long t0 = System.nanoTime();
         log.info("HTTP /sql start request_id={} client={} pageSize={} maxRows={}", requestId, client, pageSize, maxRows);
 
+        Dependency.Call call = handler.begin(); // 503 before dialing if the handler is saturated/tripped
         ManagedChannel base = ManagedChannelBuilder
                 .forAddress(handlerHost, handlerPort)
                 .usePlaintext()
                 .build();
 
         TableJson out = new TableJson();
+        long bytes = 0;
 
         try {
-            // Attach x-request-id via interceptor
-            Metadata headers = new Metadata();
-            Metadata.Key<String> X_REQUEST_ID = Metadata.Key.of("x-request-id", Metadata.ASCII_STRING_MARSHALLER);
-            headers.put(X_REQUEST_ID, requestId);
-            ClientInterceptor hdrInt = MetadataUtils.newAttachHeadersInterceptor(headers);
-            Channel intercepted = io.grpc.ClientInterceptors.intercept(base, hdrInt);
+            // x-request-id (from MDC) and traceparent via the tracing interceptor
+            Channel intercepted = io.grpc.ClientInterceptors.intercept(base, grpcTracing, grpcMetrics);
 
             SqlControllerGrpc.SqlControllerBlockingStub stub =
                     SqlControllerGrpc.newBlockingStub(intercepted)
-                            .withDeadlineAfter(5, TimeUnit.MINUTES);
+                            .withDeadlineAfter(DEADLINE_MINUTES, TimeUnit.MINUTES);
 
             SqlRequest req = SqlRequest.newBuilder()
                     .setSql(sql == null ? "" : sql)
@@ -96,6 +117,7 @@ public class SqlHttpController {
             Iterator<SqlChunk> it = stub.run(req);
             while (it.hasNext()) {
                 SqlChunk chunk = it.next();
+                bytes += chunk.getSerializedSize();
 
                 if (!haveColumns && chunk.getSchema().getColumnsCount() > 0) {
                     out.columns = new ArrayList<>(chunk.getSchema().getColumnsList());
@@ -108,6 +130,7 @@ public class SqlHttpController {
                     long totalMs = (System.nanoTime() - t0) / 1_000_000;
                     log.warn("HTTP /sql upstream_error request_id={} total_latency_ms={} status={} err={}",
                             requestId, totalMs, out.status, out.error);
+                    call.success();
                     return ResponseEntity.status(502).body(out);
                 }
 
@@ -117,6 +140,7 @@ public class SqlHttpController {
                         long totalMs = (System.nanoTime() - t0) / 1_000_000;
                         log.warn("HTTP /sql truncated request_id={} total_latency_ms={} rows={}",
                                 requestId, totalMs, rows);
+                        call.success();
                         return ResponseEntity.ok(out);
                     }
                     out.rows.add(new ArrayList<>(row.getCellsList()));
@@ -129,9 +153,11 @@ public class SqlHttpController {
             long totalMs = (System.nanoTime() - t0) / 1_000_000;
             log.info("HTTP /sql success request_id={} total_latency_ms={} rows={}",
                     requestId, totalMs, out.rows.size());
+            call.success();
             return ResponseEntity.ok(out);
 
         } catch (StatusRuntimeException e) {
+            call.failure(e);
             long totalMs = (System.nanoTime() - t0) / 1_000_000;
             out.status = "ERROR";
             out.error = "gRPC: " + e.getStatus().getCode() + " - " + e.getStatus().getDescription();
@@ -140,6 +166,7 @@ public class SqlHttpController {
             return ResponseEntity.status(502).body(out);
 
         } catch (Exception e) {
+            call.failure(e);
             long totalMs = (System.nanoTime() - t0) / 1_000_000;
             out.status = "ERROR";
             out.error = e.toString();
@@ -148,6 +175,9 @@ public class SqlHttpController {
 
         } finally {
             base.shutdownNow();
+            call.close();
+            sqlStats.record("sql.http", sql, Map.of("pageSize", pageSize, "maxRows", maxRows),
+                    System.nanoTime() - t0, out.rows.size(), bytes, out.status);
         }
     }
 }
@@ -1,5 +1,7 @@
 package com.example.clearcard.dashboard;
 
+import com.example.clearcard.resilience.Dependencies;
+import com.example.clearcard.resilience.Dependency;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Repository;
 import java.util.*;
@@ -7,13 +9,14 @@ import java.util.*;
 @Repository
 public class DashboardDao {
     private final JdbcTemplate jdbc;
-    public DashboardDao(JdbcTemplate jdbc) { this.jdbc = jdbc; }
+    private final Dependency db;
+    public DashboardDao(JdbcTemplate jdbc, Dependencies deps) { this.jdbc = jdbc; this.db = deps.mssql(); }
 
     public List<Map<String,Object>> countsByMeasure(String measure) {
-        return jdbc.queryForList("SELECT journal,[year],value FROM dbo.dashboard_counts WHERE measure=? ORDER BY journal,[year]", measure);
+        return db.execute(() -> jdbc.queryForList("SELECT journal,[year],value FROM dbo.dashboard_counts WHERE measure=? ORDER BY journal,[year]", measure));
     }
 
     public List<Map<String,Object>> impactFactors() {
-        return jdbc.queryForList("SELECT journal,[year],if_val FROM dbo.dashboard_impact_factors ORDER BY journal,[year]");
+        return db.execute(() -> jdbc.queryForList("SELECT journal,[year],if_val FROM dbo.dashboard_impact_factors ORDER BY journal,[year]"));
     }
 }
@@ -0,0 +1,16 @@
+package com.example.clearcard.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.List;
+import java.util.Map;
+
+@Schema(name = "JobPreviewResponse")
+public record JobPreviewResponse(
+        String job_id,
+        @Schema(example = "[\"cited_pub_year\",\"n_articles\"]") List<String> columns,
+        @Schema(description = "Same row objects as download.json") List<Map<String, Object>> rows,
+        @Schema(example = "100000", description = "Rows in the whole result; null if the manifest does not say") Long row_count,
+        @Schema(example = "true") boolean truncated,
+        @Schema(example = "false", description = "The job is still running; row_count counts only the parts written so far") boolean partial
+) {}
@@ -0,0 +1,33 @@
+package com.example.clearcard.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/** CSV parsing and type coercion of one chunk's lines into row maps (download.json). */
+@Name("clearcard.CsvDecode")
+@Label("CSV Decode")
+@Category({"ClearCard", "Serialization"})
+@Description("Parse and coerce the lines of one result chunk")
+@StackTrace(false)
+public class CsvDecodeEvent extends TracedEvent {
+
+    @Label("Job Id")
+    public String jobId;
+
+    @Label("Chunk Index")
+    public int chunkIndex;
+
+    @Label("Lines")
+    public long lines;
+
+    @Label("Rows")
+    public long rows;
+
+    public CsvDecodeEvent(String jobId, int chunkIndex) {
+        this.jobId = jobId;
+        this.chunkIndex = chunkIndex;
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.clearcard.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Reading one result part from GCS. For download.json this is fetch + gunzip + line split only;
+ * for download.csv the copy to the client is interleaved, so a slow reader shows up here too.
+ */
+@Name("clearcard.GcsChunkRead")
+@Label("GCS Chunk Read")
+@Category({"ClearCard", "GCS"})
+@Description("One manifest chunk read from GCS")
+@StackTrace(false)
+public class GcsChunkReadEvent extends TracedEvent {
+
+    @Label("Job Id")
+    public String jobId;
+
+    @Label("Chunk Index")
+    public int chunkIndex;
+
+    @Label("Object")
+    public String object;
+
+    @Label("Download Format")
+    public String format;
+
+    @Label("Rows")
+    public long rows;
+
+    @Label("Compressed Size")
+    @DataAmount
+    public long bytes;
+
+    public GcsChunkReadEvent(String jobId, int chunkIndex, String object, String format) {
+        this.jobId = jobId;
+        this.chunkIndex = chunkIndex;
+        this.object = object;
+        this.format = format;
+    }
+}
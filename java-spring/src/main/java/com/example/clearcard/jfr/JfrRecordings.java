@@ -0,0 +1,151 @@
+package com.example.clearcard.jfr;
+
+import com.example.clearcard.config.AppProps;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * On-demand Flight Recorder windows for capturing a slow period under live load. One recording runs
+ * at a time with a hard duration cap; JFR stops it and writes the file itself when the window ends.
+ * The last {@code app.jfr.keep} files are kept for download, older ones are deleted.
+ */
+@Slf4j
+@Component
+public class JfrRecordings {
+
+    /** JDK-shipped settings; "default" is the ~1% overhead profile meant for production. */
+    private static final Set<String> SETTINGS = Set.of("default", "profile");
+
+    private static final List<Class<? extends TracedEvent>> EVENTS = List.of(
+            SqlStreamEvent.class, GcsChunkReadEvent.class, CsvDecodeEvent.class, JsonWriteEvent.class);
+
+    public record Info(long id, String name, String state, String settings, Instant started_at,
+                       long duration_seconds, long size_bytes) {}
+
+    private final AppProps.Jfr props;
+    private final Deque<Entry> recordings = new ArrayDeque<>();
+
+    private record Entry(Recording recording, String settings, Path file) {}
+
+    public JfrRecordings(AppProps appProps) {
+        this.props = appProps.jfr();
+    }
+
+    public synchronized Info start(int seconds, String settings) {
+        if (!props.isEnabled()) throw new ResponseStatusException(HttpStatus.NOT_FOUND, "JFR recordings are disabled");
+        if (seconds < 1 || seconds > props.getMaxDurationSeconds()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "seconds must be between 1 and " + props.getMaxDurationSeconds());
+        }
+        if (!SETTINGS.contains(settings)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "settings must be one of " + SETTINGS);
+        }
+        if (recordings.stream().anyMatch(e -> e.recording().getState() == RecordingState.RUNNING)) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "A recording is already running");
+        }
+
+        Recording r;
+        Path file;
+        try {
+            r = new Recording(Configuration.getConfiguration(settings));
+            file = Files.createTempFile(directory(), "clearcard-", ".jfr");
+        } catch (IOException | ParseException e) {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Cannot create recording: " + e.getMessage(), e);
+        }
+        EVENTS.forEach(r::enable);
+        r.setName("clearcard-" + r.getId());
+        r.setToDisk(true);
+        r.setDuration(Duration.ofSeconds(seconds));
+        try {
+            r.setDestination(file);
+        } catch (IOException e) {
+            r.close();
+            throw new UncheckedIOException(e);
+        }
+        r.start();
+
+        recordings.addLast(new Entry(r, settings, file));
+        while (recordings.size() > props.getKeep()) discard(recordings.removeFirst());
+        log.info("JFR recording {} started: {}s settings={} file={}", r.getId(), seconds, settings, file);
+        return info(recordings.getLast());
+    }
+
+    /** Ends a running recording early; the file is written as if the window had elapsed. */
+    public synchronized Info stop(long id) {
+        Entry e = find(id);
+        if (e.recording().getState() == RecordingState.RUNNING) e.recording().stop();
+        return info(e);
+    }
+
+    public synchronized List<Info> list() {
+        return recordings.stream().map(JfrRecordings::info).toList();
+    }
+
+    /** The finished .jfr file; 409 while the window is still open. */
+    public synchronized Path file(long id) {
+        Entry e = find(id);
+        RecordingState s = e.recording().getState();
+        if (s != RecordingState.STOPPED && s != RecordingState.CLOSED) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Recording " + id + " is still " + s);
+        }
+        if (!Files.exists(e.file())) throw new ResponseStatusException(HttpStatus.GONE, "Recording file was removed");
+        return e.file();
+    }
+
+    @PreDestroy
+    synchronized void shutdown() {
+        while (!recordings.isEmpty()) discard(recordings.removeFirst());
+    }
+
+    private Entry find(long id) {
+        return recordings.stream().filter(e -> e.recording().getId() == id).findFirst()
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "No recording " + id));
+    }
+
+    private Path directory() throws IOException {
+        String dir = props.getDirectory();
+        if (dir == null || dir.isBlank()) return Paths.get(System.getProperty("java.io.tmpdir"));
+        return Files.createDirectories(Paths.get(dir));
+    }
+
+    private static void discard(Entry e) {
+        e.recording().close();
+        try {
+            Files.deleteIfExists(e.file());
+        } catch (IOException ex) {
+            log.warn("could not delete JFR file {}: {}", e.file(), ex.toString());
+        }
+    }
+
+    private static Info info(Entry e) {
+        Recording r = e.recording();
+        Duration d = r.getDuration();
+        long size;
+        try {
+            size = Files.exists(e.file()) ? Files.size(e.file()) : 0;
+        } catch (IOException ex) {
+            size = -1;
+        }
+        return new Info(r.getId(), r.getName(), r.getState().name(), e.settings(), r.getStartTime(),
+                d == null ? 0 : d.toSeconds(), size);
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.clearcard.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/** Serializing a decoded result to the JSON array returned by download.json. */
+@Name("clearcard.JsonWrite")
+@Label("JSON Write")
+@Category({"ClearCard", "Serialization"})
+@Description("Jackson serialization of a whole job result")
+@StackTrace(false)
+public class JsonWriteEvent extends TracedEvent {
+
+    @Label("Job Id")
+    public String jobId;
+
+    @Label("Rows")
+    public long rows;
+
+    @Label("Output Size")
+    @DataAmount
+    public long bytes;
+
+    public JsonWriteEvent(String jobId) {
+        this.jobId = jobId;
+    }
+}
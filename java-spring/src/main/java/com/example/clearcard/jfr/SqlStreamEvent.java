@@ -0,0 +1,35 @@
+package com.example.clearcard.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/** One SqlController.Run stream, from dial to last chunk; {@code firstChunk} isolates query wait from transfer. */
+@Name("clearcard.SqlStream")
+@Label("SQL Stream")
+@Category({"ClearCard", "gRPC"})
+@Description("Server-streaming SQL call made by ArticleController")
+@StackTrace(false)
+public class SqlStreamEvent extends TracedEvent {
+
+    @Label("Chunks")
+    public int chunks;
+
+    @Label("Rows")
+    public long rows;
+
+    @Label("Payload")
+    @DataAmount
+    public long bytes;
+
+    @Label("Time To First Chunk")
+    @Timespan
+    public long firstChunk;
+
+    @Label("Status")
+    public String status;
+}
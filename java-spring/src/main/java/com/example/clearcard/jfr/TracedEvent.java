@@ -0,0 +1,24 @@
+package com.example.clearcard.jfr;
+
+import com.example.clearcard.tracing.RequestIds;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+
+/**
+ * Base for ClearCard events: every one carries the request id so a recording lines up with the logs.
+ * Without an active recording {@code shouldCommit()} is false and nothing beyond the allocation
+ * (usually scalar-replaced) happens.
+ */
+public abstract class TracedEvent extends Event {
+
+    @Label("Request Id")
+    public String requestId;
+
+    /** Stamps the request id from MDC and commits, only if a recording wants this event. */
+    public final void commitTraced() {
+        if (shouldCommit()) {
+            requestId = RequestIds.current();
+            commit();
+        }
+    }
+}
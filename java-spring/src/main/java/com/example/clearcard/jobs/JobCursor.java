@@ -0,0 +1,31 @@
+package com.example.clearcard.jobs;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Keyset position in a user's job list, ordered by (submitted_at DESC, job_id DESC).
+ * Opaque to clients: base64url of "{@code <iso-instant>|<job_id>}".
+ */
+public record JobCursor(Instant submittedAt, String jobId) {
+
+    public String encode() {
+        String raw = submittedAt.toString() + "|" + jobId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** Null/blank means "first page"; anything malformed is an IllegalArgumentException (400). */
+    public static JobCursor decode(String token) {
+        if (token == null || token.isBlank()) return null;
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int bar = raw.indexOf('|');
+            if (bar <= 0 || bar == raw.length() - 1) throw new IllegalArgumentException("Invalid cursor");
+            return new JobCursor(Instant.parse(raw.substring(0, bar)), raw.substring(bar + 1));
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package com.example.clearcard.jobs;
+import java.time.Instant;
+
+/** Job row + owner's config + pin state, as read by {@link JobsDao#getDetailView}. */
+public record JobDetailView(
+        String job_id, String state, String sql_text, Instant submitted_at,
+        String title, String table_config, String chart_config, boolean pinned
+) {}
@@ -1,10 +1,13 @@
 package com.example.clearcard.jobs;
 
+import com.example.clearcard.resilience.Dependencies;
+import com.example.clearcard.resilience.Dependency;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Repository;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Timestamp;
 import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
@@ -12,7 +15,8 @@ import java.util.Optional;
 @Repository
 public class JobsDao {
     private final JdbcTemplate jdbc;
-    public JobsDao(JdbcTemplate jdbc) { this.jdbc = jdbc; }
+    private final Dependency db;
+    public JobsDao(JdbcTemplate jdbc, Dependencies deps) { this.jdbc = jdbc; this.db = deps.mssql(); }
 
     public List<JobListRow> listByUser(String username, int limit, int offset) {
         String sql = """
@@ -27,28 +31,89 @@ public class JobsDao {
                    cfg.chart_config     AS cfg_chart_config
               FROM dbo.jobs j
             LEFT JOIN dbo.job_configs cfg
-              ON LOWER(cfg.job_id) = LOWER(j.job_id)
+              ON cfg.job_id = j.job_id
              WHERE j.user_id = ?
              ORDER BY j.submitted_at DESC
              OFFSET ? ROWS FETCH NEXT ? ROWS ONLY
         """;
-        return jdbc.query(sql, (rs, i) -> mapJobListRow(rs), username, offset, limit);
+        return db.execute(() -> jdbc.query(sql, (rs, i) -> mapJobListRow(rs), username, offset, limit));
     }
 
-    public Optional<JobDetail> getOne(String jobId, String username) {
+    /**
+     * Keyset page of a user's jobs, newest first, strictly after {@code after} (null = first page).
+     * Cost is independent of depth given an index on dbo.jobs (user_id, submitted_at DESC, job_id DESC),
+     * which db/001_jobs_user_submitted_index.sql creates; the config join is a plain equality on job_id (ids are stored lower-case, and the column collation
+     * is case-insensitive anyway) so it can seek the job_configs primary key.
+     * table_config/chart_config are only selected when {@code includeConfig}.
+     */
+    public List<JobListRow> listByUserAfter(String username, int limit, JobCursor after, boolean includeConfig) {
+        String cols = includeConfig
+                ? "cfg.title AS cfg_title, cfg.table_config AS cfg_table_config, cfg.chart_config AS cfg_chart_config"
+                : "cfg.title AS cfg_title, NULL AS cfg_table_config, NULL AS cfg_chart_config";
+        String keyset = after == null ? "" : """
+               AND (j.submitted_at < ? OR (j.submitted_at = ? AND j.job_id < ?))
+            """;
+        String sql = """
+            SELECT TOP (?)
+                   j.job_id, j.state, j.row_count, j.bytes, j.submitted_at, j.completed_at,
+                   %s
+              FROM dbo.jobs j
+            LEFT JOIN dbo.job_configs cfg
+              ON cfg.job_id = j.job_id
+             WHERE j.user_id = ?
+            %s
+             ORDER BY j.submitted_at DESC, j.job_id DESC
+        """.formatted(cols, keyset);
+        Object[] args = after == null
+                ? new Object[] { limit, username }
+                : new Object[] { limit, username,
+                        Timestamp.from(after.submittedAt()), Timestamp.from(after.submittedAt()), after.jobId() };
+        return db.execute(() -> jdbc.query(sql, (rs, i) -> mapJobListRow(rs), args));
+    }
+
+    /**
+     * Everything the job detail page needs in one round trip: the job row, the owner's saved config
+     * and whether the owner pinned it. The owner's app_users id is looked up inside the query.
+     */
+    public Optional<JobDetailView> getDetailView(String jobId, String username) {
         String sql = """
            SELECT TOP (1)
-                  j.job_id, j.state, j.row_count, j.bytes,
-                  j.submitted_at, j.started_at, j.completed_at,
-                  j.sql_text, j.format, j.page_size, j.max_rows,
-                  j.gcs_uri, j.error_message
+                  j.job_id, j.state, j.sql_text, j.submitted_at,
+                  cfg.title, cfg.table_config, cfg.chart_config,
+                  CASE WHEN p.job_id IS NULL THEN 0 ELSE 1 END AS pinned
              FROM dbo.jobs j
+            OUTER APPLY (SELECT TOP (1) au.user_id FROM dbo.app_users au WHERE au.username = j.user_id) u
+            LEFT JOIN dbo.job_configs cfg
+              ON cfg.job_id = j.job_id AND cfg.user_id = u.user_id
+            LEFT JOIN dbo.pinned_jobs p
+              ON p.job_id = j.job_id AND p.user_id = u.user_id
             WHERE j.job_id = ? AND j.user_id = ?
         """;
-        List<JobDetail> list = jdbc.query(sql, (rs,i)-> mapJobFull(rs), jobId, username);
+        List<JobDetailView> list = db.execute(() -> jdbc.query(sql, (rs, i) -> new JobDetailView(
+                rs.getString("job_id"),
+                rs.getString("state"),
+                rs.getString("sql_text"),
+                rs.getTimestamp("submitted_at").toInstant(),
+                rs.getString("title"),
+                rs.getString("table_config"),
+                rs.getString("chart_config"),
+                rs.getInt("pinned") == 1
+        ), jobId, username));
         return list.stream().findFirst();
     }
 
+    /** The pin flag alone, for detail bodies served from cache. */
+    public boolean isPinned(String jobId, String username) {
+        String sql = """
+           SELECT COUNT(*)
+             FROM dbo.pinned_jobs p
+             JOIN dbo.app_users au ON au.user_id = p.user_id
+            WHERE p.job_id = ? AND au.username = ?
+        """;
+        Integer n = db.execute(() -> jdbc.queryForObject(sql, Integer.class, jobId, username));
+        return n != null && n > 0;
+    }
+
     /* ---------- Mappers ---------- */
 
     private static JobListRow mapJobListRow(ResultSet rs) throws SQLException {
@@ -73,24 +138,6 @@ public class JobsDao {
         );
     }
 
-    private static JobDetail mapJobFull(ResultSet rs) throws SQLException {
-        return new JobDetail(
-                rs.getString("job_id"),
-                rs.getString("state"),
-                rs.getLong("row_count"),
-                rs.getLong("bytes"),
-                rs.getTimestamp("submitted_at").toInstant(),
-                rs.getTimestamp("started_at") == null ? null : rs.getTimestamp("started_at").toInstant(),
-                rs.getTimestamp("completed_at") == null ? null : rs.getTimestamp("completed_at").toInstant(),
-                rs.getString("sql_text"),
-                rs.getString("format"),
-                rs.getInt("page_size"),
-                rs.getLong("max_rows"),
-                rs.getString("gcs_uri"),
-                rs.getString("error_message")
-        );
-    }
-
     /* ---------- Row DTO including config ---------- */
     public static final class JobListRow {
         private final String job_id;
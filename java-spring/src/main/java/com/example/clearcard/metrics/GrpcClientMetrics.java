@@ -0,0 +1,67 @@
+package com.example.clearcard.metrics;
+
+import io.grpc.*;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Client interceptor for every outbound gRPC call: latency by method + final status, time to the
+ * first response message (what matters for the streaming Run), and messages in/out per method.
+ * Tag values come from generated method descriptors and Status.Code, so cardinality is fixed.
+ */
+@Component
+public class GrpcClientMetrics implements ClientInterceptor {
+
+    private final MeterRegistry registry;
+
+    public GrpcClientMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public <Q, R> ClientCall<Q, R> interceptCall(MethodDescriptor<Q, R> method, CallOptions options, Channel next) {
+        String name = method.getFullMethodName();
+        Counter sent = Counter.builder("grpc.client.messages.sent").tag("method", name).register(registry);
+        Counter received = Counter.builder("grpc.client.messages.received").tag("method", name).register(registry);
+        long start = System.nanoTime();
+
+        return new ForwardingClientCall.SimpleForwardingClientCall<>(next.newCall(method, options)) {
+            @Override
+            public void start(Listener<R> listener, Metadata headers) {
+                super.start(new ForwardingClientCallListener.SimpleForwardingClientCallListener<>(listener) {
+                    private boolean first = true;
+
+                    @Override
+                    public void onMessage(R message) {
+                        if (first) {
+                            first = false;
+                            Timer.builder("grpc.client.first.message").tag("method", name)
+                                    .publishPercentileHistogram().register(registry)
+                                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                        }
+                        received.increment();
+                        super.onMessage(message);
+                    }
+
+                    @Override
+                    public void onClose(Status status, Metadata trailers) {
+                        Timer.builder("grpc.client.calls").tag("method", name).tag("status", status.getCode().name())
+                                .publishPercentileHistogram().register(registry)
+                                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                        super.onClose(status, trailers);
+                    }
+                }, headers);
+            }
+
+            @Override
+            public void sendMessage(Q message) {
+                sent.increment();
+                super.sendMessage(message);
+            }
+        };
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.clearcard.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free log-linear histogram of microsecond latencies: exact below 64us, then 32 sub-buckets
+ * per power of two (about 3% relative error), which is plenty for p50..p99.9 comparisons.
+ * Used by SqlStats per statement shape and by the load-test driver.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB = 32;
+    private static final int MAX_SHIFT = 40; // ~12 days in micros; anything larger is clamped
+    private final AtomicLongArray counts = new AtomicLongArray((MAX_SHIFT + 2) * SUB);
+
+    public void recordMicros(long v) {
+        counts.incrementAndGet(index(Math.max(0, v)));
+    }
+
+    public long count() {
+        long n = 0;
+        for (int i = 0; i < counts.length(); i++) n += counts.get(i);
+        return n;
+    }
+
+    /** Upper bound of the bucket holding quantile {@code q} (0..1), in microseconds. */
+    public long percentile(double q) {
+        long total = count();
+        if (total == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(q * total));
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= rank) return upperBound(i);
+        }
+        return upperBound(counts.length() - 1);
+    }
+
+    public long max() {
+        for (int i = counts.length() - 1; i >= 0; i--) if (counts.get(i) > 0) return upperBound(i);
+        return 0;
+    }
+
+    static int index(long v) {
+        if (v < 2 * SUB) return (int) v;
+        int shift = Math.min(MAX_SHIFT, 63 - Long.numberOfLeadingZeros(v) - 5);
+        long top = Math.min(2 * SUB - 1, v >> shift);
+        return (shift + 1) * SUB + (int) (top - SUB);
+    }
+
+    static long upperBound(int i) {
+        if (i < 2 * SUB) return i;
+        int shift = i / SUB - 1;
+        long top = SUB + i % SUB;
+        return ((top + 1) << shift) - 1;
+    }
+}
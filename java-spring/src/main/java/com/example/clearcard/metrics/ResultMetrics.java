@@ -0,0 +1,105 @@
+package com.example.clearcard.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Meters for the result download pipeline. {@code format} is "csv", "json", "scan" (the single
+ * pass behind server-side aggregations) or "preview" (first rows only).
+ * <ul>
+ *   <li>gcs.chunk.ttfb / gcs.chunk.bytes: per result part, from opening the reader to the first
+ *       byte, and compressed bytes actually read.</li>
+ *   <li>download.rows / download.bytes: what each download sent to the client.</li>
+ * </ul>
+ */
+@Component
+public class ResultMetrics {
+
+    private final MeterRegistry registry;
+
+    public ResultMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    /** Wrap a freshly opened GCS part stream; meters are recorded when it is closed. */
+    public InputStream gcsChunk(InputStream raw, String format) {
+        return new MeteredChunk(raw, format);
+    }
+
+    /** Wrap a response stream to count the bytes a download wrote. */
+    public CountingOutputStream counting(OutputStream out) {
+        return new CountingOutputStream(out);
+    }
+
+    public void download(String format, long rows, long bytes) {
+        DistributionSummary.builder("download.rows").tag("format", format).register(registry).record(rows);
+        DistributionSummary.builder("download.bytes").tag("format", format).baseUnit("bytes")
+                .register(registry).record(bytes);
+    }
+
+    public static final class CountingOutputStream extends FilterOutputStream {
+        private long count;
+
+        CountingOutputStream(OutputStream out) { super(out); }
+
+        @Override public void write(int b) throws IOException { out.write(b); count++; }
+        @Override public void write(byte[] b, int off, int len) throws IOException { out.write(b, off, len); count += len; }
+
+        public long count() { return count; }
+    }
+
+    private final class MeteredChunk extends FilterInputStream {
+        private final String format;
+        private final long opened = System.nanoTime();
+        private long firstByteAt;
+        private long bytes;
+        private boolean closed;
+
+        MeteredChunk(InputStream in, String format) {
+            super(in);
+            this.format = format;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) seen(1);
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buf, int off, int len) throws IOException {
+            int n = super.read(buf, off, len);
+            if (n > 0) seen(n);
+            return n;
+        }
+
+        private void seen(int n) {
+            if (firstByteAt == 0) firstByteAt = System.nanoTime();
+            bytes += n;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!closed) {
+                closed = true;
+                if (firstByteAt != 0) {
+                    Timer.builder("gcs.chunk.ttfb").tag("format", format).publishPercentileHistogram()
+                            .register(registry).record(firstByteAt - opened, TimeUnit.NANOSECONDS);
+                }
+                DistributionSummary.builder("gcs.chunk.bytes").tag("format", format).baseUnit("bytes")
+                        .register(registry).record(bytes);
+            }
+            super.close();
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.clearcard.model;
+
+/** gs://bucket/object split into its parts. */
+public record GsUri(String bucket, String object) {
+
+    public static GsUri parse(String gs) {
+        if (gs == null || !gs.startsWith("gs://")) {
+            throw new IllegalArgumentException("Bad GCS URI: " + gs);
+        }
+        // Quick parse without java.net.URI quirks
+        int slash = gs.indexOf('/', 5);
+        if (slash <= 5) throw new IllegalArgumentException("Bad GCS URI: " + gs);
+        return new GsUri(gs.substring(5, slash), gs.substring(slash + 1));
+    }
+
+    @Override
+    public String toString() {
+        return "gs://" + bucket + "/" + object;
+    }
+}
@@ -1,13 +1,50 @@
 package com.example.clearcard.model;
 
+import com.fasterxml.jackson.databind.JsonNode;
+
 import java.util.List;
 
+/**
+ * Parsed manifest.json as written by the worker. Chunk row offsets are precomputed so paged
+ * readers can jump straight to the chunk that holds a given row. {@code jobId} is null for
+ * manifests written before the worker started recording it. {@code partial} marks the
+ * manifest.partial.json the worker rewrites after every part while the job is still running:
+ * its chunks (possibly none yet) are a prefix of the final list and it must never be cached.
+ */
 public record ResultManifest(
+        String uri,
+        String jobId,
         List<String> columns,
-        long row_count,
+        long rowCount,
         String format,
         String compression,
-        List<Chunk> chunks
+        List<Chunk> chunks,
+        Meta meta,
+        boolean partial
 ) {
-    public record Chunk(String uri, long rows, long bytes) {}
+    /** One part file. {@code rows} is -1 when the manifest did not say; {@code firstRow} is then best effort. */
+    public record Chunk(int index, String uri, long rows, long bytes, long firstRow) {}
+
+    /** The worker's "meta" block: the title and UI configs the job was submitted with (may be null). */
+    public record Meta(String title, JsonNode tableConfig, JsonNode chartConfig) {
+        public static final Meta EMPTY = new Meta(null, null, null);
+    }
+
+    public boolean isGzip(Chunk c) {
+        return "gzip".equalsIgnoreCase(compression) || c.uri().toLowerCase(java.util.Locale.ROOT).endsWith(".gz");
+    }
+
+    /** Index of the chunk containing 0-based {@code row}, or -1 if past the end / offsets unknown. */
+    public int chunkForRow(long row) {
+        int lo = 0, hi = chunks.size() - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            Chunk c = chunks.get(mid);
+            if (c.rows() < 0 || c.firstRow() < 0) return -1;
+            if (row < c.firstRow()) hi = mid - 1;
+            else if (row >= c.firstRow() + c.rows()) lo = mid + 1;
+            else return mid;
+        }
+        return -1;
+    }
 }
@@ -0,0 +1,153 @@
+package com.example.clearcard.profile;
+
+import com.example.clearcard.config.AppProps;
+import com.example.clearcard.service.GcsCsvJsonService;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Row sink that folds every cell into its column's sketches. Memory is fixed per column
+ * (registers, counters, bins) regardless of row count. Blank cells count as nulls, which is how
+ * the worker writes SQL NULL into the CSV parts.
+ */
+final class ColumnProfiler implements GcsCsvJsonService.RowSink {
+
+    private static final int HISTOGRAM_SEED = 1024;
+
+    private final AppProps.Profile props;
+    private final List<Column> columns = new ArrayList<>();
+
+    ColumnProfiler(AppProps.Profile props) {
+        this.props = props;
+    }
+
+    @Override
+    public void header(List<String> names) {
+        columns.clear();
+        for (String n : names) columns.add(new Column(n, props));
+    }
+
+    @Override
+    public void row(List<String> cells) {
+        for (int i = 0; i < columns.size(); i++) {
+            columns.get(i).add(i < cells.size() ? cells.get(i) : null);
+        }
+    }
+
+    ResultProfile finish(String jobId, long rows, int version) {
+        List<ResultProfile.Column> out = new ArrayList<>(columns.size());
+        for (Column c : columns) out.add(c.finish(props.getTopK()));
+        return new ResultProfile(version, jobId, rows, Instant.now().toString(), out);
+    }
+
+    private static final class Column {
+        final String name;
+        final int maxValueChars;
+        final HyperLogLog distinct = new HyperLogLog();
+        final TopValues top;
+        NumericHistogram histogram;
+        long count;
+        long nulls;
+
+        boolean numeric = true;
+        boolean integral = true;
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        double sum;
+
+        String minText;
+        String maxText;
+        int minLength = Integer.MAX_VALUE;
+        int maxLength;
+
+        Column(String name, AppProps.Profile props) {
+            this.name = name;
+            this.maxValueChars = props.getMaxValueChars();
+            this.top = new TopValues(props.getTopCapacity());
+            this.histogram = new NumericHistogram((props.getHistogramBins() + 1) & ~1, HISTOGRAM_SEED);
+        }
+
+        void add(String v) {
+            if (v == null || v.isEmpty()) {
+                nulls++;
+                return;
+            }
+            count++;
+            distinct.add(v);
+            String shown = truncate(v);
+            top.add(shown);
+            minLength = Math.min(minLength, v.length());
+            maxLength = Math.max(maxLength, v.length());
+            if (minText == null || shown.compareTo(minText) < 0) minText = shown;
+            if (maxText == null || shown.compareTo(maxText) > 0) maxText = shown;
+            if (numeric) addNumber(v);
+        }
+
+        private void addNumber(String v) {
+            double d;
+            if (!looksNumeric(v)) {
+                notNumeric();
+                return;
+            }
+            try {
+                if (integral) {
+                    try {
+                        d = Long.parseLong(v);
+                    } catch (NumberFormatException e) {
+                        integral = false;
+                        d = Double.parseDouble(v);
+                    }
+                } else {
+                    d = Double.parseDouble(v);
+                }
+            } catch (NumberFormatException e) {
+                notNumeric();
+                return;
+            }
+            if (!Double.isFinite(d)) {
+                notNumeric();
+                return;
+            }
+            min = Math.min(min, d);
+            max = Math.max(max, d);
+            sum += d;
+            histogram.add(d);
+        }
+
+        private void notNumeric() {
+            numeric = false;
+            histogram = null;
+        }
+
+        /** Rejects what Double.parseDouble would take but a CSV number never is (NaN, Infinity, 0x1p3, 1d). */
+        private static boolean looksNumeric(String v) {
+            char first = v.charAt(0);
+            char last = v.charAt(v.length() - 1);
+            boolean startOk = (first >= '0' && first <= '9') || first == '-' || first == '+' || first == '.';
+            return startOk && last >= '0' && last <= '9' && v.indexOf('x') < 0 && v.indexOf('X') < 0;
+        }
+
+        private String truncate(String v) {
+            return v.length() <= maxValueChars ? v : v.substring(0, maxValueChars) + "…";
+        }
+
+        ResultProfile.Column finish(int topK) {
+            List<ResultProfile.Top> tops = count == 0 ? List.of() : top.top(topK);
+            long distinctApprox = count == 0 ? 0 : Math.min(count, Math.max(1, distinct.estimate()));
+            if (count == 0) {
+                return new ResultProfile.Column(name, "empty", 0, nulls, 0,
+                        null, null, null, null, null, null, tops);
+            }
+            if (numeric) {
+                Object lo = integral ? (Object) (long) min : (Object) min;
+                Object hi = integral ? (Object) (long) max : (Object) max;
+                return new ResultProfile.Column(name, integral ? "integer" : "number", count, nulls, distinctApprox,
+                        lo, hi, sum / count, null, null, histogram.bins(), tops);
+            }
+            return new ResultProfile.Column(name, "string", count, nulls, distinctApprox,
+                    minText, maxText, null, minLength, maxLength, null, tops);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.clearcard.profile;
+
+/**
+ * Fixed-size distinct counter: 2^12 one-byte registers (4 KB per column, ~1.6% standard error),
+ * with the linear-counting correction for small cardinalities so short columns come out exact-ish.
+ */
+final class HyperLogLog {
+
+    private static final int P = 12;
+    private static final int M = 1 << P;
+    private static final double ALPHA = 0.7213 / (1 + 1.079 / M);
+
+    private final byte[] registers = new byte[M];
+
+    void add(String value) {
+        long h = hash(value);
+        int idx = (int) (h >>> (64 - P));
+        // the sentinel bit caps rho at 64 - P + 1 when the remaining bits are all zero
+        int rho = Long.numberOfLeadingZeros((h << P) | (1L << (P - 1))) + 1;
+        if (rho > registers[idx]) registers[idx] = (byte) rho;
+    }
+
+    /** Union: afterwards this counts the distinct values added to either sketch. */
+    void merge(HyperLogLog other) {
+        for (int i = 0; i < M; i++) {
+            if (other.registers[i] > registers[i]) registers[i] = other.registers[i];
+        }
+    }
+
+    long estimate() {
+        double sum = 0;
+        int zeros = 0;
+        for (byte r : registers) {
+            sum += 1.0 / (1L << r);
+            if (r == 0) zeros++;
+        }
+        double e = ALPHA * M * M / sum;
+        if (e <= 2.5 * M && zeros > 0) e = M * Math.log((double) M / zeros);
+        return Math.round(e);
+    }
+
+    /** FNV-1a over the UTF-16 code units, then the murmur3 finalizer to spread the low-entropy bits. */
+    static long hash(String s) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < s.length(); i++) {
+            h ^= s.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
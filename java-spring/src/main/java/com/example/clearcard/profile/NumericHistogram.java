@@ -0,0 +1,77 @@
+package com.example.clearcard.profile;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Equal-width histogram built in one pass without knowing the range up front: the first
+ * {@code seed} values fix an initial range, and a value outside it doubles the bin width by merging
+ * neighbouring bins (towards whichever side needs room). Bin count stays constant throughout.
+ */
+final class NumericHistogram {
+
+    private final int bins;
+    private final double[] seed;
+    private int seeded;
+    private long[] counts;
+    private double lo;
+    private double width;
+
+    NumericHistogram(int bins, int seedSize) {
+        if (bins < 2 || (bins & 1) != 0) throw new IllegalArgumentException("bins must be even and >= 2");
+        this.bins = bins;
+        this.seed = new double[seedSize];
+    }
+
+    void add(double v) {
+        if (counts == null) {
+            seed[seeded++] = v;
+            if (seeded == seed.length) init();
+            return;
+        }
+        while (v < lo) growDown();
+        while (v > lo + width * bins) growUp();
+        counts[Math.min(bins - 1, (int) ((v - lo) / width))]++;
+    }
+
+    /** Non-empty span of bins, trimmed at both ends. */
+    List<ResultProfile.Bin> bins() {
+        if (counts == null) {
+            if (seeded == 0) return List.of();
+            init();
+        }
+        int first = 0, last = bins - 1;
+        while (first < bins && counts[first] == 0) first++;
+        while (last > first && counts[last] == 0) last--;
+        List<ResultProfile.Bin> out = new ArrayList<>();
+        for (int i = first; i <= last; i++) {
+            out.add(new ResultProfile.Bin(lo + i * width, lo + (i + 1) * width, counts[i]));
+        }
+        return out;
+    }
+
+    private void init() {
+        double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < seeded; i++) {
+            min = Math.min(min, seed[i]);
+            max = Math.max(max, seed[i]);
+        }
+        counts = new long[bins];
+        lo = min;
+        width = max > min ? (max - min) / bins : 1;
+        for (int i = 0; i < seeded; i++) add(seed[i]);
+    }
+
+    private void growUp() {
+        for (int i = 0; i < bins / 2; i++) counts[i] = counts[2 * i] + counts[2 * i + 1];
+        for (int i = bins / 2; i < bins; i++) counts[i] = 0;
+        width *= 2;
+    }
+
+    private void growDown() {
+        for (int i = bins / 2 - 1; i >= 0; i--) counts[bins / 2 + i] = counts[2 * i] + counts[2 * i + 1];
+        for (int i = 0; i < bins / 2; i++) counts[i] = 0;
+        lo -= width * bins;
+        width *= 2;
+    }
+}
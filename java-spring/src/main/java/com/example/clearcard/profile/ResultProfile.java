@@ -0,0 +1,31 @@
+package com.example.clearcard.profile;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.List;
+
+/**
+ * Per-column statistics of one result, as served by GET /jobs/{id}/stats and stored as stats.json
+ * next to the manifest. {@code version} changes whenever the fields or their meaning change, so an
+ * older stats.json is recomputed instead of served.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record ResultProfile(int version, String job_id, long rows, String computed_at, List<Column> columns) {
+
+    /**
+     * {@code type} is integer, number, string or empty (every cell blank). Numeric columns carry
+     * min/max/mean and a histogram; string columns carry lexicographic min/max and lengths.
+     * {@code distinct_approx} is a HyperLogLog estimate; {@code top} counts are Space-Saving
+     * estimates that may overcount by at most {@code error}.
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public record Column(String name, String type, long count, long nulls, long distinct_approx,
+                         Object min, Object max, Double mean, Integer min_length, Integer max_length,
+                         List<Bin> histogram, List<Top> top) {}
+
+    public record Bin(double from, double to, long count) {}
+
+    public record Top(String value, long count, long error) {}
+}
@@ -0,0 +1,111 @@
+package com.example.clearcard.profile;
+
+import com.example.clearcard.config.AppProps;
+import com.example.clearcard.model.GsUri;
+import com.example.clearcard.resilience.Dependencies;
+import com.example.clearcard.resilience.Dependency;
+import com.example.clearcard.resilience.SingleFlight;
+import com.example.clearcard.service.GcsCsvJsonService;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.cloud.storage.BlobId;
+import com.google.cloud.storage.BlobInfo;
+import com.google.cloud.storage.Storage;
+import com.google.cloud.storage.StorageException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+/**
+ * Column statistics for a finished result. Computed once in a single streaming pass over the
+ * manifest's parts, then written to stats.json in the manifest's folder so later requests (and other
+ * instances) read a few KB instead of re-scanning. Parsed profiles are also cached in memory by
+ * manifest URI; a finished result never changes, so neither copy needs invalidating. The in-memory
+ * cache only holds futures: the stats.json read, the scan and the write run on the requesting thread
+ * ({@link SingleFlight}), never inside the cache's map lock.
+ */
+@Slf4j
+@Service
+public class ResultProfileService {
+
+    /** Bump when ResultProfile changes shape or meaning; stats.json with another version is recomputed. */
+    static final int VERSION = 1;
+    static final String OBJECT_NAME = "stats.json";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+
+    private final GcsCsvJsonService results;
+    private final Storage storage;
+    private final Dependency gcs;
+    private final AppProps.Profile props;
+    private final AsyncCache<String, ResultProfile> cache;
+
+    public ResultProfileService(GcsCsvJsonService results, Storage storage, Dependencies deps, AppProps appProps) {
+        this.results = results;
+        this.storage = storage;
+        this.gcs = deps.gcs();
+        this.props = appProps.profile();
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(appProps.cache().getStatsMaxEntries())
+                .buildAsync();
+    }
+
+    public ResultProfile profile(String jobId, String manifestUri) {
+        return SingleFlight.get(cache, manifestUri, u -> loadOrCompute(jobId, u));
+    }
+
+    /** stats.json sits next to manifest.json: gs://b/results/abc/manifest.json -> gs://b/results/abc/stats.json. */
+    static GsUri location(String manifestUri) {
+        GsUri m = GsUri.parse(manifestUri);
+        int slash = m.object().lastIndexOf('/');
+        return new GsUri(m.bucket(), m.object().substring(0, slash + 1) + OBJECT_NAME);
+    }
+
+    private ResultProfile loadOrCompute(String jobId, String manifestUri) {
+        GsUri loc = location(manifestUri);
+        ResultProfile stored = read(loc);
+        if (stored != null) return stored;
+
+        ColumnProfiler profiler = new ColumnProfiler(props);
+        long t0 = System.nanoTime();
+        long rows = results.scan(manifestUri, profiler);
+        ResultProfile p = profiler.finish(jobId, rows, VERSION);
+        log.info("profile job={} rows={} columns={} took_ms={}",
+                jobId, rows, p.columns().size(), (System.nanoTime() - t0) / 1_000_000);
+        if (props.isPersist()) write(loc, p);
+        return p;
+    }
+
+    private ResultProfile read(GsUri loc) {
+        byte[] raw;
+        try {
+            raw = gcs.execute(() -> storage.readAllBytes(BlobId.of(loc.bucket(), loc.object())));
+        } catch (StorageException e) {
+            if (e.getCode() == 404) return null;
+            throw e;
+        }
+        try {
+            ResultProfile p = MAPPER.readValue(raw, ResultProfile.class);
+            if (p.version() == VERSION) return p;
+            log.info("Recomputing {}: version {} != {}", loc, p.version(), VERSION);
+        } catch (Exception e) {
+            log.warn("Ignoring unreadable {}: {}", loc, e.toString());
+        }
+        return null;
+    }
+
+    /** Best effort: a failed write only means the next instance to be asked computes it again. */
+    private void write(GsUri loc, ResultProfile p) {
+        try {
+            byte[] json = MAPPER.writeValueAsBytes(p);
+            BlobInfo info = BlobInfo.newBuilder(BlobId.of(loc.bucket(), loc.object()))
+                    .setContentType("application/json")
+                    .build();
+            gcs.execute(() -> storage.create(info, json));
+        } catch (Exception e) {
+            log.warn("Could not persist {}: {}", loc, e.toString());
+        }
+    }
+}
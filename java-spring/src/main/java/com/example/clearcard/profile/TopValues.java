@@ -0,0 +1,72 @@
+package com.example.clearcard.profile;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Space-Saving heavy hitters: at most {@code capacity} counters; an unseen value takes over the
+ * smallest one and inherits its count as {@code error}. Any value occurring more than
+ * rows / capacity times is guaranteed to be tracked, and count - error is a lower bound on its frequency.
+ */
+final class TopValues {
+
+    private static final class Counter {
+        final long seq;
+        final String value;
+        long count;
+        long error;
+
+        Counter(long seq, String value, long count, long error) {
+            this.seq = seq;
+            this.value = value;
+            this.count = count;
+            this.error = error;
+        }
+    }
+
+    private static final Comparator<Counter> BY_COUNT =
+            Comparator.<Counter>comparingLong(c -> c.count).thenComparingLong(c -> c.seq);
+
+    private final int capacity;
+    private final Map<String, Counter> byValue = new HashMap<>();
+    private final TreeSet<Counter> ordered = new TreeSet<>(BY_COUNT);
+    private long seq;
+
+    TopValues(int capacity) {
+        this.capacity = capacity;
+    }
+
+    void add(String value) {
+        Counter c = byValue.get(value);
+        if (c != null) {
+            ordered.remove(c);
+            c.count++;
+            ordered.add(c);
+            return;
+        }
+        if (byValue.size() < capacity) {
+            c = new Counter(seq++, value, 1, 0);
+        } else {
+            Counter min = ordered.pollFirst();
+            byValue.remove(min.value);
+            c = new Counter(seq++, value, min.count + 1, min.count);
+        }
+        byValue.put(value, c);
+        ordered.add(c);
+    }
+
+    /** Up to {@code k} most frequent values, leaving out counters that are mostly inherited error. */
+    List<ResultProfile.Top> top(int k) {
+        List<ResultProfile.Top> out = new ArrayList<>(Math.min(k, ordered.size()));
+        for (Counter c : ordered.descendingSet()) {
+            if (out.size() >= k) break;
+            if (c.count - c.error <= c.error) continue;
+            out.add(new ResultProfile.Top(c.value, c.count, c.error));
+        }
+        return out;
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.clearcard.resilience;
+
+/**
+ * Count-based circuit breaker. CLOSED tracks the last {@code window} outcomes and opens when the
+ * failure rate crosses the threshold; OPEN rejects everything for {@code openMs}; HALF_OPEN lets
+ * {@code probes} calls through and closes only if all of them succeed.
+ *
+ * <p>Every state change bumps a generation; outcomes from calls admitted under an older generation
+ * are dropped so a slow call that started before the trip cannot close (or re-open) the breaker.
+ */
+public final class CircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final int window;
+    private final int minCalls;
+    private final double failureRate;
+    private final long openNanos;
+    private final int probes;
+
+    private final boolean[] ring;
+    private int ringPos, ringCount, ringFailures;
+
+    private State state = State.CLOSED;
+    private long generation;
+    private long openedAt;
+    private int probesInFlight, probeSuccesses;
+
+    public CircuitBreaker(int window, int minCalls, double failureRate, long openMs, int probes) {
+        this.window = Math.max(1, window);
+        this.minCalls = Math.max(1, minCalls);
+        this.failureRate = failureRate;
+        this.openNanos = openMs * 1_000_000L;
+        this.probes = Math.max(1, probes);
+        this.ring = new boolean[this.window];
+    }
+
+    /** Generation to pass back to {@link #onResult}, or -1 if the call must fail fast. */
+    public synchronized long tryAcquire() {
+        if (state == State.OPEN) {
+            if (System.nanoTime() - openedAt < openNanos) return -1;
+            transition(State.HALF_OPEN);
+        }
+        if (state == State.HALF_OPEN) {
+            if (probesInFlight >= probes) return -1;
+            probesInFlight++;
+        }
+        return generation;
+    }
+
+    /** {@code failed == null} means the outcome says nothing about the dependency's health. */
+    public synchronized void onResult(long gen, Boolean failed) {
+        if (gen != generation) return;
+        if (state == State.HALF_OPEN) {
+            probesInFlight--;
+            if (failed == null) return;
+            if (failed) transition(State.OPEN);
+            else if (++probeSuccesses >= probes) transition(State.CLOSED);
+            return;
+        }
+        if (state != State.CLOSED || failed == null) return;
+        if (ringCount == window && ring[ringPos]) ringFailures--;
+        ring[ringPos] = failed;
+        if (failed) ringFailures++;
+        ringPos = (ringPos + 1) % window;
+        if (ringCount < window) ringCount++;
+        if (ringCount >= minCalls && ringFailures >= failureRate * ringCount) transition(State.OPEN);
+    }
+
+    public synchronized State state() {
+        return state;
+    }
+
+    /** Failure rate over the current CLOSED window (0 when empty). */
+    public synchronized double currentFailureRate() {
+        return ringCount == 0 ? 0 : (double) ringFailures / ringCount;
+    }
+
+    /** Seconds until an OPEN breaker will admit a probe (0 if not open). */
+    public synchronized long secondsUntilProbe() {
+        if (state != State.OPEN) return 0;
+        long left = openNanos - (System.nanoTime() - openedAt);
+        return Math.max(1, (left + 999_999_999L) / 1_000_000_000L);
+    }
+
+    private void transition(State to) {
+        state = to;
+        generation++;
+        ringPos = ringCount = ringFailures = 0;
+        probesInFlight = probeSuccesses = 0;
+        if (to == State.OPEN) openedAt = System.nanoTime();
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.clearcard.resilience;
+
+import com.example.clearcard.config.AppProps;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/** The guarded dependencies of this service. Inject this and pick the one you are about to call. */
+@Component
+public class Dependencies {
+
+    private final Dependency handlerStream;
+    private final Dependency jobRpc;
+    private final Dependency gcs;
+    private final Dependency mssql;
+
+    public Dependencies(AppProps props) {
+        var r = props.resilience();
+        this.handlerStream = build("handler-stream", r.getHandlerStream());
+        this.jobRpc = build("job-rpc", r.getJobRpc());
+        this.gcs = build("gcs", r.getGcs());
+        this.mssql = build("mssql", r.getMssql());
+    }
+
+    /** Streaming SqlController.Run calls (article search, ad-hoc /sql). */
+    public Dependency handlerStream() { return handlerStream; }
+    /** Unary JobService calls (submit/status/manifest/cancel). */
+    public Dependency jobRpc() { return jobRpc; }
+    /** GCS manifest and chunk reads. */
+    public Dependency gcs() { return gcs; }
+    /** JDBC queries against the meta database. */
+    public Dependency mssql() { return mssql; }
+
+    public List<Dependency> all() {
+        return List.of(handlerStream, jobRpc, gcs, mssql);
+    }
+
+    private static Dependency build(String name, AppProps.Resilience.Guard g) {
+        return new Dependency(name, g.getMaxConcurrent(), g.getMaxWaitMs(),
+                new CircuitBreaker(g.getWindow(), g.getMinCalls(), g.getFailureRate(), g.getOpenMs(), g.getProbes()));
+    }
+}
@@ -0,0 +1,150 @@
+package com.example.clearcard.resilience;
+
+import com.google.cloud.storage.StorageException;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Bulkhead + circuit breaker for one downstream dependency. The bulkhead bounds how many request
+ * threads can be parked on this dependency at once, so a stall here cannot take the whole pool.
+ */
+public final class Dependency {
+
+    /** One admitted call. Record the outcome (or not) and always close. */
+    public interface Call extends AutoCloseable {
+        void success();
+        void failure(Throwable t);
+        @Override void close();
+    }
+
+    public record Snapshot(String name, String state, int inFlight, int maxConcurrent, double failureRate,
+                           long calls, long failures, long rejectedBulkhead, long rejectedOpen) {}
+
+    private final String name;
+    private final int maxConcurrent;
+    private final long maxWaitMs;
+    private final Semaphore bulkhead;
+    private final CircuitBreaker breaker;
+
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong rejectedBulkhead = new AtomicLong();
+    private final AtomicLong rejectedOpen = new AtomicLong();
+
+    public Dependency(String name, int maxConcurrent, long maxWaitMs, CircuitBreaker breaker) {
+        this.name = name;
+        this.maxConcurrent = maxConcurrent;
+        this.maxWaitMs = maxWaitMs;
+        this.bulkhead = new Semaphore(maxConcurrent, true);
+        this.breaker = breaker;
+    }
+
+    public String name() { return name; }
+
+    /** Admit a call or throw {@link DependencyUnavailableException} immediately (open) / after maxWaitMs (full). */
+    public Call begin() {
+        long gen = breaker.tryAcquire();
+        if (gen < 0) {
+            rejectedOpen.incrementAndGet();
+            throw new DependencyUnavailableException(name, "circuit open", breaker.secondsUntilProbe());
+        }
+        boolean got;
+        try {
+            got = bulkhead.tryAcquire(maxWaitMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            got = false;
+        }
+        if (!got) {
+            breaker.onResult(gen, null);
+            rejectedBulkhead.incrementAndGet();
+            throw new DependencyUnavailableException(name, "bulkhead full", 1);
+        }
+        calls.incrementAndGet();
+        return new Call() {
+            private boolean recorded, closed;
+
+            @Override public void success() {
+                if (recorded) return;
+                recorded = true;
+                breaker.onResult(gen, false);
+            }
+
+            @Override public void failure(Throwable t) {
+                if (recorded) return;
+                recorded = true;
+                boolean unhealthy = isDependencyFailure(t);
+                if (unhealthy) failures.incrementAndGet();
+                breaker.onResult(gen, unhealthy);
+            }
+
+            @Override public void close() {
+                if (closed) return;
+                closed = true;
+                if (!recorded) breaker.onResult(gen, null);
+                bulkhead.release();
+            }
+        };
+    }
+
+    public <T> T execute(Supplier<T> body) {
+        try (Call c = begin()) {
+            try {
+                T out = body.get();
+                c.success();
+                return out;
+            } catch (RuntimeException e) {
+                c.failure(e);
+                throw e;
+            }
+        }
+    }
+
+    public void run(Runnable body) {
+        execute(() -> { body.run(); return null; });
+    }
+
+    public Snapshot snapshot() {
+        return new Snapshot(name, breaker.state().name(), maxConcurrent - bulkhead.availablePermits(), maxConcurrent,
+                breaker.currentFailureRate(), calls.get(), failures.get(), rejectedBulkhead.get(), rejectedOpen.get());
+    }
+
+    /**
+     * Whether an exception says the dependency is unhealthy. Answers the caller caused (bad input,
+     * not found, client cancel) prove the dependency is up and count as successes.
+     */
+    static boolean isDependencyFailure(Throwable t) {
+        if (t instanceof StatusRuntimeException sre) {
+            Status.Code c = sre.getStatus().getCode();
+            return switch (c) {
+                case INVALID_ARGUMENT, NOT_FOUND, ALREADY_EXISTS, PERMISSION_DENIED,
+                     UNAUTHENTICATED, FAILED_PRECONDITION, OUT_OF_RANGE, CANCELLED -> false;
+                default -> true;
+            };
+        }
+        if (t instanceof StorageException se) {
+            return se.getCode() == 0 || se.getCode() >= 500 || se.getCode() == 429;
+        }
+        if (t instanceof DataAccessException) {
+            // bad SQL / constraint violations are ours; lost connections and timeouts are the database's
+            return t instanceof DataAccessResourceFailureException || t instanceof TransientDataAccessException;
+        }
+        if (t instanceof ResponseStatusException rse) {
+            return rse.getStatusCode().value() >= 502;
+        }
+        if (t instanceof CancellationException) {
+            return false; // our side gave up (client gone, request timed out), see RequestCancellation
+        }
+        return !(t instanceof IllegalArgumentException);
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.clearcard.resilience;
+
+/** Fast-fail from a bulkhead or open circuit; mapped to 503 + Retry-After. */
+public class DependencyUnavailableException extends RuntimeException {
+    private final String dependency;
+    private final long retryAfterSeconds;
+
+    public DependencyUnavailableException(String dependency, String reason, long retryAfterSeconds) {
+        super(dependency + " unavailable: " + reason);
+        this.dependency = dependency;
+        this.retryAfterSeconds = Math.max(1, retryAfterSeconds);
+    }
+
+    public String getDependency() { return dependency; }
+    public long getRetryAfterSeconds() { return retryAfterSeconds; }
+}
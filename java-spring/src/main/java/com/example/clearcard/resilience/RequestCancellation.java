@@ -0,0 +1,111 @@
+package com.example.clearcard.resilience;
+
+import com.example.clearcard.tracing.RequestIds;
+import io.grpc.Context;
+import io.micrometer.tracing.Span;
+import io.micrometer.tracing.Tracer;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.context.request.async.WebAsyncTask;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Ties upstream work (handler gRPC streams, GCS reads) to the HTTP request that asked for it. The
+ * work runs inside an io.grpc {@link Context.CancellableContext}: stubs called in it are cancelled
+ * with it, and the GCS read loops poll {@link #checkCancelled()}. The context is cancelled when the
+ * container reports the async request as failed (client gone) or timed out, and in any case when
+ * the request completes, so no RPC outlives the response it was for.
+ */
+@Component
+public class RequestCancellation {
+
+    /** How many lines the GCS read loops go between two {@link #checkCancelled()} calls (a power of two). */
+    public static final int CHECK_EVERY_LINES = 1024;
+
+    private final Tracer tracer;
+
+    public RequestCancellation(Tracer tracer) {
+        this.tracer = tracer;
+    }
+
+    /** Like {@link #call(Long, Callable)} with the spring.mvc.async.request-timeout default. */
+    public <T> WebAsyncTask<T> call(Callable<T> body) {
+        return call(null, body);
+    }
+
+    /** Runs {@code body} on the MVC async executor, with the request id and span carried over. */
+    public <T> WebAsyncTask<T> call(Long timeoutMs, Callable<T> body) {
+        Context.CancellableContext ctx = register();
+        String requestId = RequestIds.currentOrNew();
+        Span parent = tracer.currentSpan();
+        return new WebAsyncTask<>(timeoutMs, () -> {
+            try (var mdc = RequestIds.bind(requestId);
+                 Tracer.SpanInScope ws = tracer.withSpan(parent)) {
+                return ctx.call(body);
+            }
+        });
+    }
+
+    /** Streaming bodies already run on the async executor; this only scopes them to the request. */
+    public StreamingResponseBody stream(StreamingResponseBody body) {
+        Context.CancellableContext ctx = register();
+        return out -> {
+            Context previous = ctx.attach();
+            try {
+                body.writeTo(out);
+            } finally {
+                ctx.detach(previous);
+            }
+        };
+    }
+
+    /** Whether the request the current thread works for is gone (or already answered). */
+    public static boolean isCancelled() {
+        return Context.current().isCancelled();
+    }
+
+    /** For loops that are not gRPC calls: stop once the request that wants the result is gone. */
+    public static void checkCancelled() {
+        Context c = Context.current();
+        if (c.isCancelled()) {
+            CancellationException e = new CancellationException("request cancelled");
+            if (c.cancellationCause() != null) e.initCause(c.cancellationCause());
+            throw e;
+        }
+    }
+
+    private static Context.CancellableContext register() {
+        Context.CancellableContext ctx = Context.current().withCancellation();
+        if (RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attrs) {
+            WebAsyncUtils.getAsyncManager(attrs.getRequest()).registerCallableInterceptor(ctx, new CancelOnExit(ctx));
+        }
+        return ctx;
+    }
+
+    private record CancelOnExit(Context.CancellableContext ctx) implements CallableProcessingInterceptor {
+        @Override
+        public <T> Object handleTimeout(NativeWebRequest request, Callable<T> task) {
+            ctx.cancel(new TimeoutException("HTTP request timed out"));
+            return RESULT_NONE;
+        }
+
+        @Override
+        public <T> Object handleError(NativeWebRequest request, Callable<T> task, Throwable t) {
+            ctx.cancel(t);
+            return RESULT_NONE;
+        }
+
+        @Override
+        public <T> void afterCompletion(NativeWebRequest request, Callable<T> task) {
+            ctx.cancel(null);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.clearcard.resilience;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+/**
+ * Read-through for an {@link AsyncCache} whose loads are slow (RPCs, GCS scans). The cache's map only
+ * ever holds a future: the first caller for a key installs an empty one and then loads on its own
+ * thread, outside any map lock, while concurrent callers for the key wait on that future. A failed
+ * load is dropped from the cache by Caffeine, so the next caller tries again.
+ *
+ * <p>The load runs in the leader's request context, so it stops when that request is cancelled
+ * ({@link RequestCancellation}). Waiters whose own request is still live then load it themselves.
+ */
+public final class SingleFlight {
+
+    private static final long WAIT_SLICE_MS = 250;
+
+    private SingleFlight() {}
+
+    public static <K, V> V get(AsyncCache<K, V> cache, K key, Function<? super K, ? extends V> load) {
+        while (true) {
+            CompletableFuture<V> mine = new CompletableFuture<>();
+            CompletableFuture<V> shared = cache.get(key, (k, executor) -> mine);
+            if (shared == mine) {
+                try {
+                    V v = load.apply(key);
+                    mine.complete(v);
+                    return v;
+                } catch (RuntimeException | Error e) {
+                    mine.completeExceptionally(e);
+                    throw e;
+                }
+            }
+            try {
+                return await(shared);
+            } catch (RuntimeException | Error e) {
+                // the leader's request went away mid-load; this one still wants the value
+                if (!cancelled(e) || RequestCancellation.isCancelled()) throw e;
+            }
+        }
+    }
+
+    /** Waits for another caller's load, giving up as soon as this caller's own request is cancelled. */
+    private static <V> V await(CompletableFuture<V> f) {
+        while (true) {
+            RequestCancellation.checkCancelled();
+            try {
+                return f.get(WAIT_SLICE_MS, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                // keep waiting
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CancellationException("interrupted while waiting for a shared load");
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException re) throw re;
+                if (cause instanceof Error err) throw err;
+                throw new IllegalStateException(cause);
+            }
+        }
+    }
+
+    private static boolean cancelled(Throwable t) {
+        return t instanceof CancellationException
+                || (t instanceof StatusRuntimeException sre && sre.getStatus().getCode() == Status.Code.CANCELLED);
+    }
+}
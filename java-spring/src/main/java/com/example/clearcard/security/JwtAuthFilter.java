@@ -1,9 +1,12 @@
 package com.example.clearcard.security;
 
+import com.example.clearcard.config.AppProps;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.Claims;
 import jakarta.servlet.*;
 import jakarta.servlet.http.*;
-import lombok.RequiredArgsConstructor;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.*;
@@ -11,12 +14,49 @@ import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
 
 import java.io.IOException;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Bearer-token authentication. A token that verified once maps to its principal for
+ * {@code app.cache.principal-ttl-ms} (never past the token's exp), so repeat requests skip both the
+ * signature check and the app_users lookup. Only successful verifications are cached.
+ *
+ * <p>So a password, role or admin-list change, or a deleted user, takes effect on tokens already in
+ * the cache only once the TTL runs out. This service has no write path for any of those (accounts
+ * are only ever registered, admins come from configuration), so operators revoke early through
+ * {@code DELETE /admin/principals[/{username}]}; any such write path added later must call
+ * {@link #invalidateUser} itself.
+ */
 @Component
-@RequiredArgsConstructor
 public class JwtAuthFilter extends GenericFilter {
     private final JwtUtil jwt;
     private final UserDetailsService uds;
+    private final long ttlNanos;
+    private final Cache<String, Verified> principals;
+
+    private record Verified(UserDetails user, long expiresAtMillis) {}
+
+    public JwtAuthFilter(JwtUtil jwt, UserDetailsService uds, AppProps props) {
+        this.jwt = jwt;
+        this.uds = uds;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(props.cache().getPrincipalTtlMs());
+        this.principals = Caffeine.newBuilder()
+                .maximumSize(props.cache().getPrincipalMaxEntries())
+                .expireAfter(new Expiry<String, Verified>() {
+                    @Override public long expireAfterCreate(String k, Verified v, long now) {
+                        long untilExp = TimeUnit.MILLISECONDS.toNanos(v.expiresAtMillis() - System.currentTimeMillis());
+                        return Math.max(0, Math.min(ttlNanos, untilExp));
+                    }
+                    @Override public long expireAfterUpdate(String k, Verified v, long now, long cur) {
+                        return expireAfterCreate(k, v, now);
+                    }
+                    @Override public long expireAfterRead(String k, Verified v, long now, long cur) {
+                        return cur;
+                    }
+                })
+                .build();
+    }
 
     @Override
     public void doFilter(ServletRequest req, ServletResponse res, FilterChain chain) throws IOException, ServletException {
@@ -25,13 +65,45 @@ public class JwtAuthFilter extends GenericFilter {
         if (StringUtils.hasText(h) && h.startsWith("Bearer ")) {
             String token = h.substring(7);
             try {
-                Claims c = jwt.parse(token).getBody();
-                String username = c.getSubject();
-                UserDetails ud = uds.loadUserByUsername(username);
+                UserDetails ud = resolve(token);
                 var auth = new UsernamePasswordAuthenticationToken(ud, null, ud.getAuthorities());
                 SecurityContextHolder.getContext().setAuthentication(auth);
             } catch (Exception ignored) { /* fallthrough as anonymous */ }
         }
         chain.doFilter(req, res);
     }
+
+    private UserDetails resolve(String token) {
+        Verified v = ttlNanos > 0 ? principals.getIfPresent(token) : null;
+        if (v != null && v.expiresAtMillis() > System.currentTimeMillis()) return v.user();
+
+        Claims c = jwt.parse(token).getBody();
+        UserDetails loaded = uds.loadUserByUsername(c.getSubject());
+        // keep the password hash out of the cache; nothing downstream of this filter reads it
+        UserDetails ud = User.withUsername(loaded.getUsername()).password("")
+                .authorities(loaded.getAuthorities())
+                .accountExpired(!loaded.isAccountNonExpired())
+                .accountLocked(!loaded.isAccountNonLocked())
+                .credentialsExpired(!loaded.isCredentialsNonExpired())
+                .disabled(!loaded.isEnabled())
+                .build();
+        Date exp = c.getExpiration();
+        if (ttlNanos > 0) {
+            principals.put(token, new Verified(ud, exp == null ? Long.MAX_VALUE : exp.getTime()));
+        }
+        return ud;
+    }
+
+    /** Drop every cached token for a user (password change, deletion, role change); see /admin/principals. */
+    public void invalidateUser(String username) {
+        principals.asMap().values().removeIf(v -> v.user().getUsername().equals(username));
+    }
+
+    public void invalidateAll() {
+        principals.invalidateAll();
+    }
+
+    public long cachedPrincipals() {
+        return principals.estimatedSize();
+    }
 }
@@ -17,6 +17,7 @@ import java.util.Map;
 public class JwtUtil {
     private final Key key;
     private final long ttlMinutes;
+    private final JwtParser parser;
 
     public JwtUtil(@Value("${app.jwt.secret}") String secret,
                    @Value("${app.jwt.ttl-minutes:120}") long ttlMinutes) {
@@ -39,6 +40,7 @@ public class JwtUtil {
         }
         this.key = Keys.hmacShaKeyFor(keyBytes);
         this.ttlMinutes = ttlMinutes;
+        this.parser = Jwts.parserBuilder().setSigningKey(key).build(); // immutable, thread-safe
     }
 
     public String generate(String username) {
@@ -53,6 +55,6 @@ public class JwtUtil {
     }
 
     public Jws<Claims> parse(String token) {
-        return Jwts.parserBuilder().setSigningKey(key).build().parseClaimsJws(token);
+        return parser.parseClaimsJws(token);
     }
 }
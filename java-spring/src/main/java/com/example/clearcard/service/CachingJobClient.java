@@ -0,0 +1,100 @@
+package com.example.clearcard.service;
+
+import com.example.clearcard.JobServiceGrpc;
+import com.example.clearcard.JobStatus;
+import com.example.clearcard.ResultManifestRef;
+import com.example.clearcard.config.AppProps;
+import com.example.clearcard.resilience.Dependencies;
+import com.example.clearcard.resilience.SingleFlight;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import org.springframework.stereotype.Service;
+
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * JobClient with a read-through cache for status and manifest lookups.
+ *
+ * <ul>
+ *   <li>Terminal statuses and OK manifest refs never change, so they stay until evicted by the LRU bound.</li>
+ *   <li>Anything still in flight is reused for {@code app.cache.job-status-ttl-ms}.</li>
+ *   <li>Concurrent lookups for the same job id share one RPC ({@link SingleFlight}). The RPC runs on the
+ *       first caller's thread, never inside the cache's map lock, so a slow handler only delays
+ *       callers for that job id.</li>
+ * </ul>
+ * Submit and {@link #pollStatus} are never cached; cancel drops both entries for the job.
+ */
+@Service
+public class CachingJobClient extends JobClient {
+
+    private static final Set<String> TERMINAL = Set.of("SUCCEEDED", "FAILED", "CANCELLED");
+
+    private final AsyncCache<String, JobStatus> statuses;
+    private final AsyncCache<String, ResultManifestRef> manifests;
+
+    public CachingJobClient(JobServiceGrpc.JobServiceBlockingStub base, Dependencies deps, AppProps props) {
+        super(base, deps);
+        long ttlNanos = TimeUnit.MILLISECONDS.toNanos(props.cache().getJobStatusTtlMs());
+        int max = props.cache().getJobMaxEntries();
+        this.statuses = Caffeine.newBuilder()
+                .maximumSize(max)
+                .expireAfter(new SettledOrTtl<JobStatus>(s -> TERMINAL.contains(s.getState()), ttlNanos))
+                .buildAsync();
+        this.manifests = Caffeine.newBuilder()
+                .maximumSize(max)
+                .expireAfter(new SettledOrTtl<ResultManifestRef>(r -> "OK".equals(r.getStatus()), ttlNanos))
+                .buildAsync();
+    }
+
+    @Override
+    public JobStatus status(String jobId) {
+        return SingleFlight.get(statuses, jobId, super::status);
+    }
+
+    /** Never served from the cache; the fresh answer replaces the cached status for other callers. */
+    @Override
+    public JobStatus pollStatus(String jobId, long deadlineMs) {
+        JobStatus s = super.pollStatus(jobId, deadlineMs);
+        statuses.put(jobId, CompletableFuture.completedFuture(s));
+        return s;
+    }
+
+    @Override
+    public ResultManifestRef manifest(String jobId) {
+        return SingleFlight.get(manifests, jobId, super::manifest);
+    }
+
+    @Override
+    public JobStatus cancel(String jobId, String requestId) {
+        try {
+            return super.cancel(jobId, requestId);
+        } finally {
+            invalidate(jobId);
+        }
+    }
+
+    public void invalidate(String jobId) {
+        statuses.synchronous().invalidate(jobId);
+        manifests.synchronous().invalidate(jobId);
+    }
+
+    /** Settled values live until LRU eviction; everything else for a fixed TTL from when it was fetched. */
+    private record SettledOrTtl<V>(Predicate<V> settled, long ttlNanos) implements Expiry<String, V> {
+        @Override
+        public long expireAfterCreate(String key, V value, long currentTime) {
+            return settled.test(value) ? Long.MAX_VALUE : ttlNanos;
+        }
+        @Override
+        public long expireAfterUpdate(String key, V value, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+        }
+        @Override
+        public long expireAfterRead(String key, V value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
@@ -0,0 +1,368 @@
+package com.example.clearcard.service;
+
+import com.example.clearcard.config.AppProps;
+import com.example.clearcard.model.ResultManifest;
+import com.example.clearcard.resilience.SingleFlight;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.*;
+
+/**
+ * Server-side version of the grouping JobDetailPage does in the browser: one streaming pass over the
+ * result, aggregated per (x, series) where x and the series label come from the job's chart_config
+ * ({@code x}, {@code groupBy}) and the measure is the {@code n_articles} / {@code y_value} column the
+ * generated SQL produces. The largest series are kept and the rest folded into "Other"; too many x
+ * values are cut down to {@code points} (LTTB for line/scatter, largest totals for bar/pie).
+ *
+ * <p>Results are immutable once a job succeeded, so payloads are cached per job + parameters. The
+ * cache only holds futures: the pass runs on the requesting thread ({@link SingleFlight}), outside
+ * the cache's map lock, and stops with that request (the part reads poll {@code RequestCancellation}).
+ */
+@Slf4j
+@Service
+public class ChartService {
+
+    static final String OTHER = "Other";
+    private static final String SINGLE = "\u0000single";
+    private static final List<String> X_PREFS = List.of("cited_pub_year", "cited_pub_date", "cited_pub_month", "cited_pub_day");
+    private static final Set<String> KINDS = Set.of("line", "bar", "scatter", "pie");
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    public enum Agg {
+        COUNT, SUM, MEAN, MIN, MAX;
+
+        static Agg parse(String s) {
+            try {
+                return s == null ? SUM : valueOf(s.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "agg must be one of " + Arrays.toString(values()));
+            }
+        }
+    }
+
+    /** Chart-ready rows: {@code points} are objects keyed by {@code x} and each name in {@code series}, as InteractiveChart takes them. */
+    public record Chart(String job_id, String kind, String agg, String x, String measure, List<String> group_by,
+                        List<String> series, List<Map<String, Object>> points,
+                        long source_rows, int distinct_x, boolean downsampled) {}
+
+    private final GcsCsvJsonService results;
+    private final ManifestRepository manifests;
+    private final AppProps.Chart props;
+    private final AsyncCache<String, Chart> cache;
+
+    public ChartService(GcsCsvJsonService results, ManifestRepository manifests, AppProps appProps) {
+        this.results = results;
+        this.manifests = manifests;
+        this.props = appProps.chart();
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(appProps.cache().getChartMaxEntries())
+                .buildAsync();
+    }
+
+    /** {@code chartConfigJson} is job_configs.chart_config; when null the manifest's meta.chart_config is used. */
+    public Chart chart(String jobId, String manifestUri, String chartConfigJson, String kind, String agg, Integer points) {
+        String k = kind == null ? "line" : kind.toLowerCase(Locale.ROOT);
+        if (!KINDS.contains(k)) throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "kind must be one of " + KINDS);
+        Agg a = Agg.parse(agg);
+        int target = points == null ? props.getDefaultPoints() : Math.max(2, Math.min(points, props.getMaxPoints()));
+        String key = String.join("\n", jobId, k, a.name(), Integer.toString(target), String.valueOf(chartConfigJson));
+        return SingleFlight.get(cache, key, x -> compute(jobId, manifestUri, chartConfigJson, k, a, target));
+    }
+
+    private Chart compute(String jobId, String manifestUri, String chartConfigJson, String kind, Agg agg, int target) {
+        JsonNode cfg = parse(chartConfigJson);
+        if (cfg == null) cfg = manifests.get(manifestUri).meta().chartConfig();
+        Grouper g = new Grouper(cfg, agg, props.getMaxGroups());
+        long t0 = System.nanoTime();
+        long rows = results.scan(manifestUri, g);
+        Chart c = g.finish(jobId, kind, target, props.getMaxSeries(), rows);
+        log.info("chart job={} kind={} agg={} rows={} x={} points={} took_ms={}",
+                jobId, kind, agg, rows, c.distinct_x(), c.points().size(), (System.nanoTime() - t0) / 1_000_000);
+        return c;
+    }
+
+    private static JsonNode parse(String json) {
+        if (json == null || json.isBlank()) return null;
+        try {
+            JsonNode n = MAPPER.readTree(json);
+            return n != null && n.isObject() ? n : null;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /* ---------------- aggregation ---------------- */
+
+    static final class Acc {
+        long n;
+        double sum;
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+
+        void add(double y) {
+            n++;
+            if (Double.isNaN(y)) return;
+            sum += y;
+            if (y < min) min = y;
+            if (y > max) max = y;
+        }
+
+        void merge(Acc o) {
+            n += o.n;
+            sum += o.sum;
+            min = Math.min(min, o.min);
+            max = Math.max(max, o.max);
+        }
+
+        double value(Agg agg) {
+            return switch (agg) {
+                case COUNT -> n;
+                case SUM -> sum;
+                case MEAN -> n == 0 ? 0 : sum / n;
+                case MIN -> n == 0 ? 0 : min;
+                case MAX -> n == 0 ? 0 : max;
+            };
+        }
+    }
+
+    static final class Grouper implements GcsCsvJsonService.RowSink {
+        final JsonNode cfg;
+        Agg agg;
+        final int maxGroups;
+        final Map<String, Map<String, Acc>> byX = new HashMap<>();
+        int groups;
+        int xIdx;
+        int measureIdx = -1;
+        String xName;
+        String measure;
+        int[] groupIdx = new int[0];
+        List<String> groupBy = List.of();
+
+        Grouper(JsonNode cfg, Agg agg, int maxGroups) {
+            this.cfg = cfg;
+            this.agg = agg;
+            this.maxGroups = maxGroups;
+        }
+
+        @Override
+        public void header(List<String> columns) {
+            String wantX = cfg != null && cfg.path("x").isTextual() ? cfg.get("x").asText() : null;
+            xIdx = wantX != null ? columns.indexOf(wantX) : -1;
+            for (int i = 0; xIdx < 0 && i < X_PREFS.size(); i++) xIdx = columns.indexOf(X_PREFS.get(i));
+            if (xIdx < 0) xIdx = 0;
+            xName = columns.isEmpty() ? "x" : columns.get(xIdx);
+
+            List<String> gb = new ArrayList<>();
+            if (cfg != null && cfg.path("groupBy").isArray()) {
+                for (JsonNode f : cfg.get("groupBy")) {
+                    if (f.isTextual() && columns.contains(f.asText()) && !f.asText().equals(xName)) gb.add(f.asText());
+                }
+            }
+            groupBy = List.copyOf(gb);
+            groupIdx = gb.stream().mapToInt(columns::indexOf).toArray();
+
+            // same choice as JobDetailPage.pickMeasureKey
+            List<String> candidates = new ArrayList<>();
+            if (cfg != null) {
+                boolean count = "COUNT".equals(cfg.path("yAgg").asText()) || "n_article".equals(cfg.path("yField").asText());
+                candidates.add(count ? "n_articles" : "y_value");
+            }
+            candidates.add("n_articles");
+            candidates.add("y_value");
+            for (String c : candidates) {
+                if (columns.contains(c)) {
+                    measure = c;
+                    measureIdx = columns.indexOf(c);
+                    break;
+                }
+            }
+            if (measure == null) agg = Agg.COUNT; // nothing numeric to sum: plain row counts
+        }
+
+        @Override
+        public void row(List<String> cells) {
+            double y = Double.NaN;
+            if (measureIdx >= 0) {
+                y = number(cell(cells, measureIdx));
+                if (Double.isNaN(y) && agg != Agg.COUNT) return; // non-numeric measure: skipped, as in the browser
+            }
+            String x = cell(cells, xIdx);
+            String label;
+            if (groupIdx.length == 0) {
+                label = SINGLE;
+            } else {
+                StringBuilder sb = new StringBuilder();
+                for (int i = 0; i < groupIdx.length; i++) {
+                    if (i > 0) sb.append(" · ");
+                    String v = cell(cells, groupIdx[i]);
+                    sb.append(v.isEmpty() ? "∅" : v);
+                }
+                label = sb.toString();
+            }
+            Map<String, Acc> cellsAtX = byX.computeIfAbsent(x, k -> new HashMap<>());
+            Acc acc = cellsAtX.get(label);
+            if (acc == null) {
+                if (++groups > maxGroups) {
+                    throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY,
+                            "Too many distinct (" + xName + ", series) values to aggregate on the server; chart the download instead");
+                }
+                acc = new Acc();
+                cellsAtX.put(label, acc);
+            }
+            acc.add(y);
+        }
+
+        Chart finish(String jobId, String kind, int target, int maxSeries, long sourceRows) {
+            // rank series by overall weight (sum of the measure, or row count without one)
+            Map<String, Acc> totals = new HashMap<>();
+            for (Map<String, Acc> m : byX.values()) {
+                m.forEach((label, acc) -> totals.computeIfAbsent(label, l -> new Acc()).merge(acc));
+            }
+            List<String> ranked = new ArrayList<>(totals.keySet());
+            ranked.sort(Comparator.comparingDouble((String l) -> weight(totals.get(l))).reversed());
+            Set<String> top = new LinkedHashSet<>(ranked.subList(0, Math.min(maxSeries, ranked.size())));
+            boolean folded = ranked.size() > top.size();
+
+            // x order: numeric when every x parses, else lexical; orderDir from the config
+            boolean numericX = byX.keySet().stream().allMatch(v -> !Double.isNaN(number(v)));
+            List<String> xs = new ArrayList<>(byX.keySet());
+            if (numericX) xs.sort(Comparator.comparingDouble(ChartService::number));
+            else xs.sort(Comparator.naturalOrder());
+            if (cfg != null && "DESC".equalsIgnoreCase(cfg.path("orderDir").asText())) Collections.reverse(xs);
+
+            boolean downsampled = xs.size() > target;
+            if (downsampled) xs = reduce(xs, kind, target, numericX);
+
+            String single = measure != null ? measure : "count";
+            List<Map<String, Object>> points = new ArrayList<>(xs.size());
+            for (String x : xs) {
+                Map<String, Object> p = new LinkedHashMap<>();
+                p.put(xName, numericX ? numberValue(x) : x);
+                Acc other = null;
+                for (Map.Entry<String, Acc> e : byX.get(x).entrySet()) {
+                    if (top.contains(e.getKey())) continue;
+                    if (other == null) other = new Acc();
+                    other.merge(e.getValue());
+                }
+                for (String label : top) {
+                    Acc acc = byX.get(x).get(label);
+                    if (acc != null) p.put(SINGLE.equals(label) ? single : label, round(acc.value(agg)));
+                }
+                if (other != null) p.put(OTHER, round(other.value(agg)));
+                points.add(p);
+            }
+
+            List<String> series = new ArrayList<>();
+            for (String label : top) series.add(SINGLE.equals(label) ? single : label);
+            if (folded) series.add(OTHER);
+            return new Chart(jobId, kind, agg.name().toLowerCase(Locale.ROOT), xName, measure, groupBy,
+                    List.copyOf(series), points, sourceRows, byX.size(), downsampled);
+        }
+
+        /** Keep {@code target} of the ordered x values: LTTB on the all-series value for line/scatter, largest totals otherwise. */
+        private List<String> reduce(List<String> xs, String kind, int target, boolean numericX) {
+            double[] xv = new double[xs.size()];
+            double[] yv = new double[xs.size()];
+            for (int i = 0; i < xs.size(); i++) {
+                Acc all = new Acc();
+                byX.get(xs.get(i)).values().forEach(all::merge);
+                xv[i] = numericX ? number(xs.get(i)) : i;
+                yv[i] = "line".equals(kind) || "scatter".equals(kind) ? all.value(agg) : weight(all);
+            }
+            int[] keep;
+            if ("line".equals(kind) || "scatter".equals(kind)) {
+                keep = lttb(xv, yv, target);
+            } else {
+                Integer[] order = new Integer[xs.size()];
+                for (int i = 0; i < order.length; i++) order[i] = i;
+                Arrays.sort(order, (a, b) -> Double.compare(yv[b], yv[a]));
+                keep = Arrays.stream(order, 0, target).mapToInt(Integer::intValue).sorted().toArray();
+            }
+            List<String> out = new ArrayList<>(keep.length);
+            for (int i : keep) out.add(xs.get(i));
+            return out;
+        }
+
+        private double weight(Acc a) {
+            return measure != null ? Math.abs(a.sum) : a.n;
+        }
+    }
+
+    /**
+     * Largest-Triangle-Three-Buckets (Steinarsson 2013): keeps the first and last point and, per bucket,
+     * the point forming the largest triangle with the previous pick and the next bucket's average.
+     * Returns indices into {@code x}/{@code y}, ascending.
+     */
+    static int[] lttb(double[] x, double[] y, int threshold) {
+        int n = x.length;
+        if (threshold >= n) {
+            int[] all = new int[n];
+            for (int i = 0; i < n; i++) all[i] = i;
+            return all;
+        }
+        if (threshold < 3) return n == 1 ? new int[]{0} : new int[]{0, n - 1};
+
+        int[] out = new int[threshold];
+        double every = (double) (n - 2) / (threshold - 2);
+        int a = 0;
+        out[0] = 0;
+        for (int i = 0; i < threshold - 2; i++) {
+            int avgStart = (int) Math.floor((i + 1) * every) + 1;
+            int avgEnd = Math.min((int) Math.floor((i + 2) * every) + 1, n);
+            double avgX = 0, avgY = 0;
+            for (int j = avgStart; j < avgEnd; j++) {
+                avgX += x[j];
+                avgY += y[j];
+            }
+            int len = Math.max(1, avgEnd - avgStart);
+            avgX /= len;
+            avgY /= len;
+
+            int from = (int) Math.floor(i * every) + 1;
+            int to = (int) Math.floor((i + 1) * every) + 1;
+            double best = -1;
+            int pick = from;
+            for (int j = from; j < to; j++) {
+                double area = Math.abs((x[a] - avgX) * (y[j] - y[a]) - (x[a] - x[j]) * (avgY - y[a]));
+                if (area > best) {
+                    best = area;
+                    pick = j;
+                }
+            }
+            out[i + 1] = pick;
+            a = pick;
+        }
+        out[threshold - 1] = n - 1;
+        return out;
+    }
+
+    private static String cell(List<String> cells, int i) {
+        return i >= 0 && i < cells.size() ? cells.get(i) : "";
+    }
+
+    private static double number(String s) {
+        if (s == null || s.isBlank()) return Double.NaN;
+        try {
+            double d = Double.parseDouble(s.trim());
+            return Double.isFinite(d) ? d : Double.NaN;
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    private static Object numberValue(String s) {
+        double d = number(s);
+        return d == Math.rint(d) && Math.abs(d) < 1e15 ? (Object) (long) d : (Object) d;
+    }
+
+    private static double round(double v) {
+        return Math.abs(v) >= 1e6 || v == Math.rint(v) ? v : Math.round(v * 1e6) / 1e6;
+    }
+}
@@ -1,12 +1,25 @@
 package com.example.clearcard.service;
 
+import com.example.clearcard.dto.JobPreviewResponse;
+import com.example.clearcard.jfr.CsvDecodeEvent;
+import com.example.clearcard.jfr.GcsChunkReadEvent;
+import com.example.clearcard.jfr.JsonWriteEvent;
+import com.example.clearcard.metrics.ResultMetrics;
+import com.example.clearcard.model.GsUri;
+import com.example.clearcard.model.ResultManifest;
+import com.example.clearcard.resilience.Dependencies;
+import com.example.clearcard.resilience.Dependency;
+import com.example.clearcard.resilience.RequestCancellation;
+import com.example.clearcard.tracing.GcsSpans;
 import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonParser;
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.cloud.ReadChannel;
 import com.google.cloud.storage.BlobId;
 import com.google.cloud.storage.Storage;
+import com.google.cloud.storage.StorageException;
+import io.micrometer.tracing.Span;
+import io.micrometer.tracing.Tracer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -15,6 +28,7 @@ import java.io.*;
 import java.nio.channels.Channels;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.function.Predicate;
 import java.util.zip.GZIPInputStream;
 
 @Slf4j
@@ -23,6 +37,13 @@ import java.util.zip.GZIPInputStream;
 public class GcsCsvJsonService {
 
     private final Storage storage;
+    private final ManifestRepository manifests;
+    private final Dependencies deps;
+    private final ResultMetrics metrics;
+    private final Tracer tracer;
+
+    /** GCS read window for previews: enough for a few thousand gzip'd rows, far below the 2 MiB default. */
+    private static final int PREVIEW_READ_CHUNK_BYTES = 256 * 1024;
 
     private static final ObjectMapper MAPPER = new ObjectMapper(
             new JsonFactory()
@@ -37,154 +58,229 @@ public class GcsCsvJsonService {
      * This method avoids streaming writers entirely (no "Stream closed" risk).
      */
     public byte[] jsonArrayBytesFromManifestGs(String gsManifestUri) {
-        ManifestInfo mf = readManifest(gsManifestUri); // throws if invalid
+        return jsonArrayBytes(manifests.get(gsManifestUri)); // throws if invalid
+    }
 
+    /** Same for an already loaded manifest (e.g. the partial one of a running job). */
+    public byte[] jsonArrayBytes(ResultManifest mf) {
         List<Map<String, Object>> rows = new ArrayList<>(
-                (mf.rowCount > 0 && mf.rowCount < Integer.MAX_VALUE) ? (int) mf.rowCount : 1024
+                (mf.rowCount() > 0 && mf.rowCount() < Integer.MAX_VALUE) ? (int) mf.rowCount() : 1024
         );
 
-        List<String> header = (mf.columns.isEmpty() ? null : new ArrayList<>(mf.columns));
+        List<String> header = (mf.columns().isEmpty() ? null : new ArrayList<>(mf.columns()));
 
-        for (Chunk chunk : mf.chunks) {
-            String uri = chunk.uri;
+        for (ResultManifest.Chunk chunk : mf.chunks()) {
+            String uri = chunk.uri();
             if (!uri.startsWith("gs://")) {
                 log.warn("Skipping non-gs URI in manifest: {}", uri);
                 continue;
             }
-            GsLoc part = splitGs(uri);
-
-            try (ReadChannel rc = storage.reader(BlobId.of(part.bucket(), part.object()));
-                 InputStream baseIn = Channels.newInputStream(rc);
-                 InputStream in = needsGzip(mf.compression, uri) ? new GZIPInputStream(baseIn, 32 * 1024) : baseIn;
-                 BufferedReader r = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 64 * 1024)) {
-
-                String line;
-                boolean firstLineOfThisFile = true;
-
-                while ((line = r.readLine()) != null) {
-                    if (line.isEmpty()) continue;
-
-                    // establish header if unknown
-                    if (header == null) {
-                        header = parseCsvLine(line);
-                        firstLineOfThisFile = false;
-                        continue;
-                    }
-
-                    // first line per file might be a header; skip if equal
-                    if (firstLineOfThisFile) {
-                        List<String> maybeHeader = parseCsvLine(line);
-                        firstLineOfThisFile = false;
-                        if (maybeHeader.equals(header)) {
-                            continue; // skip duplicate header
-                        } else {
-                            rows.add(toObject(header, maybeHeader));
-                            continue;
-                        }
-                    }
+            GsUri part = GsUri.parse(uri);
+
+            // Read the whole part first, then decode: the two phases get separate JFR events and
+            // the chunk is small next to the row maps this method holds for the full result anyway.
+            List<String> lines = new ArrayList<>(
+                    (chunk.rows() > 0 && chunk.rows() < Integer.MAX_VALUE) ? (int) chunk.rows() + 1 : 1024);
+            readChunk(mf, chunk, part, "json", 0, lines::add);
+
+            CsvDecodeEvent decodeEvent = new CsvDecodeEvent(mf.jobId(), chunk.index());
+            decodeEvent.begin();
+            int before = rows.size();
+            boolean firstLineOfThisFile = true;
+            for (String line : lines) {
+                // establish header if unknown
+                if (header == null) {
+                    header = parseCsvLine(line);
+                    firstLineOfThisFile = false;
+                    continue;
+                }
 
-                    // normal data row
-                    List<String> cells = parseCsvLine(line);
-                    rows.add(toObject(header, cells));
+                // first line per file might be a header; skip if equal
+                if (firstLineOfThisFile) {
+                    List<String> maybeHeader = parseCsvLine(line);
+                    firstLineOfThisFile = false;
+                    if (!maybeHeader.equals(header)) rows.add(toObject(header, maybeHeader));
+                    continue;
                 }
-            } catch (IOException ioe) {
-                throw new RuntimeException("Failed reading CSV part: " + uri + " (" + ioe.getMessage() + ")", ioe);
+
+                // normal data row
+                List<String> cells = parseCsvLine(line);
+                rows.add(toObject(header, cells));
             }
+            decodeEvent.end();
+            decodeEvent.lines = lines.size();
+            decodeEvent.rows = rows.size() - before;
+            decodeEvent.commitTraced();
         }
 
+        JsonWriteEvent writeEvent = new JsonWriteEvent(mf.jobId());
+        writeEvent.begin();
         try {
-            return MAPPER.writeValueAsBytes(rows);
+            byte[] out = MAPPER.writeValueAsBytes(rows);
+            writeEvent.end();
+            writeEvent.rows = rows.size();
+            writeEvent.bytes = out.length;
+            writeEvent.commitTraced();
+            metrics.download("json", rows.size(), out.length);
+            return out;
         } catch (IOException e) {
             throw new RuntimeException("Failed to assemble JSON array from rows: " + e.getMessage(), e);
         }
     }
 
-    /* ===================== Manifest parsing ===================== */
+    /** Receives the column names once, then the raw cells of every data row in manifest order. */
+    public interface RowSink {
+        void header(List<String> columns);
+        void row(List<String> cells);
+    }
 
-    private static final class ManifestInfo {
-        List<String> columns = new ArrayList<>();
-        List<Chunk> chunks = new ArrayList<>();
-        String compression; // e.g. "gzip"
-        long rowCount = -1;
+    /**
+     * Single streaming pass over a result for server-side aggregation: nothing but the current line
+     * is held, so memory is bounded by what {@code sink} keeps. Returns the number of data rows.
+     */
+    public long scan(String gsManifestUri, RowSink sink) {
+        ResultManifest mf = manifests.get(gsManifestUri);
+        Scan scan = new Scan(sink, mf.columns().isEmpty() ? null : List.copyOf(mf.columns()));
+        for (ResultManifest.Chunk chunk : mf.chunks()) {
+            if (!chunk.uri().startsWith("gs://")) {
+                log.warn("Skipping non-gs URI in manifest: {}", chunk.uri());
+                continue;
+            }
+            scan.firstOfPart = true;
+            readChunk(mf, chunk, GsUri.parse(chunk.uri()), "scan", 0, line -> {
+                scan.line(line);
+                return true;
+            });
+        }
+        return scan.rows;
     }
-    private static final class Chunk {
-        final String uri;
-        final Long rows;
-        final Long bytes;
-        Chunk(String uri, Long rows, Long bytes) { this.uri = uri; this.rows = rows; this.bytes = bytes; }
+
+    /**
+     * First {@code limit} rows of a result. Reads parts in order (normally only chunks[0]) with a small
+     * GCS read window and closes the stream as soon as enough rows are decoded, so the cost is a
+     * few hundred KB however large the result is.
+     */
+    public JobPreviewResponse preview(String gsManifestUri, int limit) {
+        return preview(manifests.get(gsManifestUri), limit);
     }
 
-    private ManifestInfo readManifest(String gsManifestUri) {
-        if (gsManifestUri == null || !gsManifestUri.startsWith("gs://")) {
-            throw new IllegalArgumentException("Manifest must be a gs:// URI, got: " + gsManifestUri);
+    public JobPreviewResponse preview(ResultManifest mf, int limit) {
+        List<Map<String, Object>> rows = new ArrayList<>(Math.min(limit, 1024));
+        List<List<String>> header = new ArrayList<>(1);
+        Scan scan = new Scan(new RowSink() {
+            @Override public void header(List<String> columns) { header.add(columns); }
+            @Override public void row(List<String> cells) { rows.add(toObject(header.get(0), cells)); }
+        }, mf.columns().isEmpty() ? null : List.copyOf(mf.columns()));
+
+        for (ResultManifest.Chunk chunk : mf.chunks()) {
+            if (rows.size() >= limit) break;
+            if (!chunk.uri().startsWith("gs://")) {
+                log.warn("Skipping non-gs URI in manifest: {}", chunk.uri());
+                continue;
+            }
+            scan.firstOfPart = true;
+            readChunk(mf, chunk, GsUri.parse(chunk.uri()), "preview", PREVIEW_READ_CHUNK_BYTES, line -> {
+                scan.line(line);
+                return rows.size() < limit;
+            });
         }
-        GsLoc loc = splitGs(gsManifestUri);
-        String json = readAllUtf8(loc.bucket(), loc.object());
+        long total = mf.rowCount();
+        boolean more = mf.partial() || (total >= 0 ? total > rows.size() : rows.size() >= limit);
+        return new JobPreviewResponse(mf.jobId(), header.isEmpty() ? List.of() : header.get(0), rows,
+                total >= 0 ? total : null, more, mf.partial());
+    }
 
-        try {
-            JsonNode root = MAPPER.readTree(json);
-            ManifestInfo mf = new ManifestInfo();
+    /** Header bookkeeping for {@link #scan}: same rules as the JSON path (first line of a part may repeat the header). */
+    private static final class Scan {
+        final RowSink sink;
+        List<String> header;
+        boolean firstOfPart;
+        long rows;
+
+        Scan(RowSink sink, List<String> header) {
+            this.sink = sink;
+            this.header = header;
+            if (header != null) sink.header(header);
+        }
 
-            JsonNode cols = root.get("columns");
-            if (cols != null && cols.isArray()) {
-                for (JsonNode c : cols) if (c.isTextual()) mf.columns.add(c.asText());
+        void line(String line) {
+            List<String> cells = parseCsvLine(line);
+            if (header == null) {
+                header = cells;
+                firstOfPart = false;
+                sink.header(cells);
+                return;
             }
+            if (firstOfPart) {
+                firstOfPart = false;
+                if (cells.equals(header)) return;
+            }
+            sink.row(cells);
+            rows++;
+        }
+    }
 
-            JsonNode rc = root.get("row_count");
-            if (rc != null && rc.canConvertToLong()) mf.rowCount = rc.asLong();
-
-            JsonNode comp = root.get("compression");
-            if (comp != null && comp.isTextual()) mf.compression = comp.asText();
+    /**
+     * Streams the non-empty lines of one part to {@code lines} under the GCS bulkhead, a gcs.read span
+     * and a JFR event; the read stops (and the object is closed) once {@code lines} returns false.
+     * {@code readChunkBytes} > 0 overrides the client's read window for callers that stop early.
+     * Throws {@link java.util.concurrent.CancellationException} once the request it reads for is gone.
+     */
+    private void readChunk(ResultManifest mf, ResultManifest.Chunk chunk, GsUri part, String format,
+                           int readChunkBytes, Predicate<String> lines) {
+        GcsChunkReadEvent readEvent = new GcsChunkReadEvent(mf.jobId(), chunk.index(), part.object(), format);
+        readEvent.begin();
+        long n = 0;
+        boolean stopped = false;
+        RequestCancellation.checkCancelled();
+        Span span = GcsSpans.read(tracer, tracer.currentSpan(), mf, chunk, part);
+        try (Tracer.SpanInScope ws = tracer.withSpan(span);
+             Dependency.Call call = deps.gcs().begin()) {
+            try (ReadChannel rc = reader(part, readChunkBytes);
+                 InputStream baseIn = metrics.gcsChunk(Channels.newInputStream(rc), format);
+                 InputStream in = mf.isGzip(chunk) ? new GZIPInputStream(baseIn, 32 * 1024) : baseIn;
+                 BufferedReader r = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 64 * 1024)) {
 
-            JsonNode chunks = root.get("chunks");
-            if (chunks != null && chunks.isArray()) {
-                for (JsonNode ch : chunks) {
-                    JsonNode u = ch.get("uri");
-                    if (u != null && u.isTextual()) {
-                        Long rows = ch.has("rows") && ch.get("rows").canConvertToLong() ? ch.get("rows").asLong() : null;
-                        Long bytes = ch.has("bytes") && ch.get("bytes").canConvertToLong() ? ch.get("bytes").asLong() : null;
-                        mf.chunks.add(new Chunk(u.asText(), rows, bytes));
+                String line;
+                while ((line = r.readLine()) != null) {
+                    if (line.isEmpty()) continue;
+                    if ((++n & (RequestCancellation.CHECK_EVERY_LINES - 1)) == 0) RequestCancellation.checkCancelled();
+                    if (!lines.test(line)) {
+                        stopped = true;
+                        break;
                     }
                 }
+            } catch (IOException | RuntimeException e) {
+                // only GCS's own errors count against it, not a failing sink or a cancelled request
+                StorageException se = GcsCsvMergeService.storageCause(e);
+                if (se != null) call.failure(se);
+                throw e;
             }
-            if (mf.chunks.isEmpty()) {
-                JsonNode uris = root.get("uris");
-                if (uris != null && uris.isArray()) {
-                    for (JsonNode u : uris) if (u.isTextual()) mf.chunks.add(new Chunk(u.asText(), null, null));
-                }
-            }
-            if (mf.chunks.isEmpty()) {
-                throw new IllegalStateException("Manifest has no chunk URIs (expected chunks[].uri or uris[]).");
-            }
-
-            log.info("Manifest parsed: parts={}, compression={}, columns={}, rowCount={}",
-                    mf.chunks.size(), mf.compression, mf.columns.size(), mf.rowCount);
-            return mf;
-
-        } catch (RuntimeException re) {
-            throw re;
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to parse manifest JSON at " + gsManifestUri + ": " + e.getMessage(), e);
+            call.success();
+        } catch (IOException ioe) {
+            span.error(ioe);
+            throw new RuntimeException("Failed reading CSV part: " + chunk.uri() + " (" + ioe.getMessage() + ")", ioe);
+        } catch (RuntimeException e) {
+            span.error(e);
+            throw e;
+        } finally {
+            span.end();
         }
+        readEvent.end();
+        readEvent.rows = n;
+        readEvent.bytes = stopped ? -1 : chunk.bytes();
+        readEvent.commitTraced();
     }
 
-    private String readAllUtf8(String bucket, String object) {
-        BlobId id = BlobId.of(bucket, object);
-        try (ReadChannel rc = storage.reader(id);
-             InputStream in = Channels.newInputStream(rc);
-             ByteArrayOutputStream out = new ByteArrayOutputStream(64 * 1024)) {
-            in.transferTo(out);
-            String s = out.toString(StandardCharsets.UTF_8);
-            if (!s.isEmpty() && s.charAt(0) == '\uFEFF') s = s.substring(1);
-            return s;
-        } catch (IOException e) {
-            throw new RuntimeException("Failed to read manifest from gs://" + bucket + "/" + object, e);
-        }
+    private ReadChannel reader(GsUri part, int readChunkBytes) {
+        ReadChannel rc = storage.reader(BlobId.of(part.bucket(), part.object()));
+        if (readChunkBytes > 0) rc.setChunkSize(readChunkBytes);
+        return rc;
     }
 
-    /* ===================== CSV helpers ===================== */
+    /* ===================== CSV helpers (package-private for the jmh benchmarks) ===================== */
 
-    private Map<String, Object> toObject(List<String> header, List<String> cells) {
+    static Map<String, Object> toObject(List<String> header, List<String> cells) {
         Map<String, Object> obj = new LinkedHashMap<>(header.size() * 2);
         for (int i = 0; i < header.size(); i++) {
             String key = header.get(i);
@@ -194,12 +290,7 @@ public class GcsCsvJsonService {
         return obj;
     }
 
-    private boolean needsGzip(String compression, String uri) {
-        if (compression != null && "gzip".equalsIgnoreCase(compression)) return true;
-        return uri.toLowerCase(Locale.ROOT).endsWith(".gz");
-    }
-
-    private Object coerce(String val) {
+    static Object coerce(String val) {
         if (val == null) return null;
         String s = val.trim();
         if (s.isEmpty()) return "";
@@ -211,7 +302,7 @@ public class GcsCsvJsonService {
     }
 
     /** RFC4180-ish CSV parser (handles quotes, commas, escaped quotes). */
-    private List<String> parseCsvLine(String line) {
+    static List<String> parseCsvLine(String line) {
         List<String> out = new ArrayList<>();
         StringBuilder cell = new StringBuilder();
         boolean inQuotes = false;
@@ -234,14 +325,4 @@ public class GcsCsvJsonService {
         out.add(cell.toString());
         return out;
     }
-
-    /* ===================== URI helpers ===================== */
-
-    private record GsLoc(String bucket, String object) {}
-    private GsLoc splitGs(String gsUri) {
-        String noScheme = gsUri.substring("gs://".length());
-        int slash = noScheme.indexOf('/');
-        if (slash <= 0) throw new IllegalArgumentException("Bad gs uri: " + gsUri);
-        return new GsLoc(noScheme.substring(0, slash), noScheme.substring(slash + 1));
-    }
 }
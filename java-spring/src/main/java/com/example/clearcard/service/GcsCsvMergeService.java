@@ -1,21 +1,28 @@
 package com.example.clearcard.service;
 
+import com.example.clearcard.jfr.GcsChunkReadEvent;
+import com.example.clearcard.metrics.ResultMetrics;
+import com.example.clearcard.model.GsUri;
 import com.example.clearcard.model.ResultManifest;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.example.clearcard.resilience.Dependencies;
+import com.example.clearcard.resilience.Dependency;
+import com.example.clearcard.resilience.RequestCancellation;
+import com.example.clearcard.tracing.GcsSpans;
+import com.example.clearcard.tracing.RequestIds;
 import com.google.cloud.storage.Blob;
 import com.google.cloud.storage.BlobId;
 import com.google.cloud.storage.Storage;
-import org.springframework.http.StreamingHttpOutputMessage;
+import com.google.cloud.storage.StorageException;
+import io.micrometer.tracing.Span;
+import io.micrometer.tracing.Tracer;
 import org.springframework.stereotype.Service;
 import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
-import org.springframework.web.server.ResponseStatusException;
-import org.springframework.http.HttpStatus;
 
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
+import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
-import java.net.URI;
 import java.nio.channels.Channels;
 import java.nio.charset.StandardCharsets;
 import java.util.List;
@@ -25,75 +32,142 @@ import java.util.zip.GZIPInputStream;
 public class GcsCsvMergeService {
 
     private final Storage storage;
-    private final ObjectMapper mapper = new ObjectMapper();
+    private final ManifestRepository manifests;
+    private final Dependency gcs;
+    private final ResultMetrics metrics;
+    private final Tracer tracer;
 
-    public GcsCsvMergeService(Storage storage) {
+    public GcsCsvMergeService(Storage storage, ManifestRepository manifests, Dependencies deps,
+                              ResultMetrics metrics, Tracer tracer) {
         this.storage = storage;
+        this.manifests = manifests;
+        this.gcs = deps.gcs();
+        this.metrics = metrics;
+        this.tracer = tracer;
     }
 
-    /** Build a StreamingResponseBody that merges all gzipped CSV parts listed by the manifest. */
-    public StreamingResponseBody mergedCsvFromManifestGs(String manifestGsUri) {
-        // Parse gs://bucket/object
-        GcsPath mp = parseGsUri(manifestGsUri);
+    /**
+     * Later versions of a partial manifest for a following download; null when nothing more will come.
+     * Closed when the download ends, however it ends.
+     */
+    @FunctionalInterface
+    public interface Tail extends AutoCloseable {
+        ResultManifest next(ResultManifest current);
 
-        // Read manifest JSON
-        Blob manifest = storage.get(BlobId.of(mp.bucket(), mp.object()));
-        if (manifest == null) {
-            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Manifest not found in GCS: " + manifestGsUri);
-        }
+        @Override
+        default void close() {}
+    }
 
-        final ResultManifest rm;
-        try {
-            var json = new String(storage.readAllBytes(manifest.getBlobId()), StandardCharsets.UTF_8);
-            rm = mapper.readValue(json, ResultManifest.class);
-        } catch (Exception e) {
-            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Invalid manifest JSON", e);
-        }
+    /** Build a StreamingResponseBody that merges all gzipped CSV parts listed by the manifest. */
+    public StreamingResponseBody mergedCsvFromManifestGs(String manifestGsUri) {
+        // Cached + validated (404 if missing, 500 if it has no chunks)
+        return mergedCsv(manifests.get(manifestGsUri), null);
+    }
 
-        // Validate minimal fields
-        if (rm.columns() == null || rm.chunks() == null) {
-            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Manifest missing columns/chunks");
-        }
+    /**
+     * Same merge for an already loaded manifest. With a {@code tail} and a partial manifest the
+     * response stays open after the listed parts and appends new ones as {@code tail} reports them,
+     * through to the final manifest's last part.
+     */
+    public StreamingResponseBody mergedCsv(ResultManifest rm, Tail tail) {
+        // the body runs on an MVC executor thread: carry the request span and id over explicitly
+        final Span parent = tracer.currentSpan();
+        final String requestId = RequestIds.current();
 
         // Build stream
         return output -> {
-            try (var writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8))) {
-                // Single header
-                writer.write(csvJoin(rm.columns()));
-                writer.write('\n');
-                writer.flush();
-
-                // Stream each gzipped part
-                for (int i = 0; i < rm.chunks().size(); i++) {
-                    var chunk = rm.chunks().get(i);
-                    GcsPath cp = parseGsUri(chunk.uri());
-
-                    Blob part = storage.get(BlobId.of(cp.bucket(), cp.object()));
-                    if (part == null) continue; // skip missing parts
-
-                    try (var rc = part.reader();
-                         var is = Channels.newInputStream(rc);
-                         var gis = new GZIPInputStream(is);
-                         var br = new BufferedReader(new InputStreamReader(gis, StandardCharsets.UTF_8))) {
-
-                        String line;
-                        boolean first = true;
-                        while ((line = br.readLine()) != null) {
-                            // skip header for parts after the first
-                            if (i > 0 && first) { first = false; continue; }
-                            writer.write(line);
-                            writer.write('\n');
+            try (var mdc = RequestIds.bind(requestId)) {
+                var counted = metrics.counting(output);
+                long rows = 0;
+                try (tail; var writer = new BufferedWriter(new OutputStreamWriter(counted, StandardCharsets.UTF_8))) {
+                    // Single header
+                    String header = csvJoin(rm.columns());
+                    writer.write(header);
+                    writer.write('\n');
+                    writer.flush();
+
+                    // Stream each gzipped part; a partial manifest's chunks are a prefix of every later version
+                    ResultManifest current = rm;
+                    int streamed = 0;
+                    while (current != null) {
+                        for (; streamed < current.chunks().size(); streamed++) {
+                            rows += copyChunk(current, current.chunks().get(streamed), parent, header, writer);
                         }
-                        writer.flush();
+                        current = tail != null && current.partial() ? tail.next(current) : null;
                     }
                 }
+                metrics.download("csv", rows, counted.count());
             }
         };
     }
 
+    /** Appends one part's lines to {@code writer}; returns the number of rows written. */
+    private long copyChunk(ResultManifest rm, ResultManifest.Chunk chunk, Span parent, String header,
+                           BufferedWriter writer) throws IOException {
+        GsUri cp = GsUri.parse(chunk.uri());
+        GcsChunkReadEvent event = new GcsChunkReadEvent(rm.jobId(), chunk.index(), cp.object(), "csv");
+        event.begin();
+        long rows = 0;
+        RequestCancellation.checkCancelled();
+
+        // A broken client pipe is also an IOException here, so only failures GCS itself raised
+        // (a StorageException, possibly wrapped by the read channel) count against GCS.
+        Span span = GcsSpans.read(tracer, parent, rm, chunk, cp);
+        try (Tracer.SpanInScope ws = tracer.withSpan(span);
+             Dependency.Call call = gcs.begin()) {
+            try {
+                Blob part = storage.get(BlobId.of(cp.bucket(), cp.object()));
+                if (part == null) { call.success(); span.tag("gcs.missing", "true"); return 0; } // skip missing parts
+
+                try (var rc = part.reader();
+                     var is = metrics.gcsChunk(Channels.newInputStream(rc), "csv");
+                     var gis = new GZIPInputStream(is);
+                     var br = new BufferedReader(new InputStreamReader(gis, StandardCharsets.UTF_8))) {
+
+                    String line;
+                    boolean first = true;
+                    while ((line = br.readLine()) != null) {
+                        // the worker writes headerless parts; only drop a first line that IS the header
+                        if (first) {
+                            first = false;
+                            if (line.equals(header)) continue;
+                        }
+                        writer.write(line);
+                        writer.write('\n');
+                        if ((++rows & (RequestCancellation.CHECK_EVERY_LINES - 1)) == 0) RequestCancellation.checkCancelled();
+                    }
+                    writer.flush();
+                }
+            } catch (IOException | RuntimeException e) {
+                StorageException se = storageCause(e);
+                if (se != null) call.failure(se);
+                throw e;
+            }
+            call.success();
+        } catch (IOException | RuntimeException e) {
+            span.error(e);
+            throw e;
+        } finally {
+            span.end();
+        }
+        event.end();
+        event.rows = rows;
+        event.bytes = chunk.bytes();
+        event.commitTraced();
+        return rows;
+    }
+
     // --- helpers ---
 
-    private static String csvJoin(List<String> cols) {
+    /** The GCS error behind {@code t} (itself or a cause), or null when GCS was not the problem. */
+    static StorageException storageCause(Throwable t) {
+        for (Throwable c = t; c != null; c = c.getCause()) {
+            if (c instanceof StorageException se) return se;
+        }
+        return null;
+    }
+
+    static String csvJoin(List<String> cols) {
         StringBuilder sb = new StringBuilder();
         for (int i = 0; i < cols.size(); i++) {
             String s = cols.get(i);
@@ -105,16 +179,4 @@ public class GcsCsvMergeService {
         }
         return sb.toString();
     }
-
-    private static GcsPath parseGsUri(String gs) {
-        if (gs == null || !gs.startsWith("gs://")) {
-            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Bad GCS URI: " + gs);
-        }
-        // Quick parse without java.net.URI quirks
-        int slash3 = gs.indexOf('/', 5);
-        if (slash3 < 0) throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Bad GCS URI: " + gs);
-        return new GcsPath(gs.substring(5, slash3), gs.substring(slash3 + 1));
-    }
-
-    private record GcsPath(String bucket, String object) {}
 }
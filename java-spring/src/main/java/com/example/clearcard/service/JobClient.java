@@ -2,29 +2,32 @@ package com.example.clearcard.service;
 
 import com.example.clearcard.*;
 import io.grpc.*;
+import com.example.clearcard.resilience.Dependencies;
+import com.example.clearcard.resilience.Dependency;
+import com.example.clearcard.tracing.RequestIds;
 import io.grpc.stub.MetadataUtils;
-import org.springframework.stereotype.Service;
 
-import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 
-@Service
+/** Thin wrapper over the JobService stub. The bean in use is {@link CachingJobClient}. */
 public class JobClient {
 
     private final JobServiceGrpc.JobServiceBlockingStub base;
+    private final Dependency guard;
 
-    public JobClient(JobServiceGrpc.JobServiceBlockingStub base) {
+    public JobClient(JobServiceGrpc.JobServiceBlockingStub base, Dependencies deps) {
         this.base = base;
+        this.guard = deps.jobRpc();
     }
 
     private JobServiceGrpc.JobServiceBlockingStub withHeadersAndDeadline(String requestId, long deadlineMin) {
-        String rid = (requestId == null || requestId.isBlank()) ? UUID.randomUUID().toString() : requestId;
+        String rid = (requestId == null || requestId.isBlank()) ? RequestIds.currentOrNew() : requestId;
         Metadata h = new Metadata();
         h.put(Metadata.Key.of("x-request-id", Metadata.ASCII_STRING_MARSHALLER), rid);
 
+        // withInterceptors keeps the base stub's call options (compression, max inbound size)
         ClientInterceptor it = MetadataUtils.newAttachHeadersInterceptor(h);
-        Channel intercepted = ClientInterceptors.intercept(base.getChannel(), it);
-        return JobServiceGrpc.newBlockingStub(intercepted).withDeadlineAfter(deadlineMin, TimeUnit.MINUTES);
+        return base.withInterceptors(it).withDeadlineAfter(deadlineMin, TimeUnit.MINUTES);
     }
 
     // Back-compat: existing submit without title/config
@@ -37,6 +40,7 @@ public class JobClient {
     public JobAck submit(String sql, String format, int pageSize, long maxRows,
                          String userId, String requestId,
                          String title, String tableConfigJson, String chartConfigJson) {
+        String rid = (requestId == null || requestId.isBlank()) ? RequestIds.currentOrNew() : requestId;
         SqlJobOptions opts = SqlJobOptions.newBuilder()
                 .setFormat(format == null ? "csv" : format)
                 .setPageSize(pageSize)
@@ -47,27 +51,34 @@ public class JobClient {
                 .setSql(sql == null ? "" : sql)
                 .setOptions(opts)
                 .setUserId(userId == null ? "anonymous" : userId)
-                .setRequestId(requestId == null ? "" : requestId);
+                .setRequestId(rid);
 
         if (title != null) b.setTitle(title);
         if (tableConfigJson != null) b.setTableConfigJson(tableConfigJson);
         if (chartConfigJson != null) b.setChartConfigJson(chartConfigJson);
 
-        return withHeadersAndDeadline(requestId, 2).submit(b.build());
+        SubmitJobRequest req = b.build();
+        return guard.execute(() -> withHeadersAndDeadline(rid, 2).submit(req));
     }
 
     public JobStatus status(String jobId) {
-        return base.withDeadlineAfter(2, TimeUnit.MINUTES)
-                .getStatus(JobId.newBuilder().setJobId(jobId).build());
+        return guard.execute(() -> base.withDeadlineAfter(2, TimeUnit.MINUTES)
+                .getStatus(JobId.newBuilder().setJobId(jobId).build()));
+    }
+
+    /** Status straight from the handler with a short deadline, for pollers that must see every change. */
+    public JobStatus pollStatus(String jobId, long deadlineMs) {
+        return guard.execute(() -> base.withDeadlineAfter(deadlineMs, TimeUnit.MILLISECONDS)
+                .getStatus(JobId.newBuilder().setJobId(jobId).build()));
     }
 
     public ResultManifestRef manifest(String jobId) {
-        return base.withDeadlineAfter(2, TimeUnit.MINUTES)
-                .getResultManifest(JobId.newBuilder().setJobId(jobId).build());
+        return guard.execute(() -> base.withDeadlineAfter(2, TimeUnit.MINUTES)
+                .getResultManifest(JobId.newBuilder().setJobId(jobId).build()));
     }
 
     public JobStatus cancel(String jobId, String requestId) {
-        return withHeadersAndDeadline(requestId, 2)
-                .cancel(JobId.newBuilder().setJobId(jobId).build());
+        return guard.execute(() -> withHeadersAndDeadline(requestId, 2)
+                .cancel(JobId.newBuilder().setJobId(jobId).build()));
     }
 }
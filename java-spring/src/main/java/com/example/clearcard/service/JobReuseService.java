@@ -0,0 +1,116 @@
+package com.example.clearcard.service;
+
+import com.example.clearcard.JobAck;
+import com.example.clearcard.JobStatus;
+import com.example.clearcard.config.AppProps;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Maps (user, normalized SQL, format, pageSize, maxRows, title, table/chart config) to the job that
+ * already produced or is producing that result. Scoped per user because job listing/detail/pins are
+ * per user in dbo.jobs, and keyed on the saved config too because a reused job keeps the config it
+ * was submitted with: a new title or chart setup has to become a job of its own.
+ *
+ * <p>A remembered job is reused while it is PENDING/RUNNING (the caller attaches to it) or when it
+ * SUCCEEDED within {@code app.reuse.freshness-minutes}. Concurrent identical submissions share one
+ * upstream Submit.
+ */
+@Slf4j
+@Service
+public class JobReuseService {
+
+    private static final Set<String> IN_FLIGHT = Set.of("PENDING", "QUEUED", "RUNNING");
+
+    public record Outcome(String jobId, String status, boolean reused) {}
+
+    private record Entry(String jobId, Instant submittedAt) {}
+
+    private final JobClient jobClient;
+    private final AppProps.Reuse props;
+    private final Cache<String, Entry> byFingerprint;
+    private final ConcurrentHashMap<String, CompletableFuture<JobAck>> submitting = new ConcurrentHashMap<>();
+
+    public JobReuseService(JobClient jobClient, AppProps appProps) {
+        this.jobClient = jobClient;
+        this.props = appProps.reuse();
+        // staleness is decided on lookup (reusableState), so only bound the size here
+        this.byFingerprint = Caffeine.newBuilder()
+                .maximumSize(props.getMaxEntries())
+                .build();
+    }
+
+    public boolean enabled() { return props.isEnabled(); }
+
+    public static String fingerprint(String user, String sql, String format, int pageSize, long maxRows,
+                                     String title, String tableConfigJson, String chartConfigJson) {
+        return SqlFingerprint.sha256(user, SqlFingerprint.normalize(sql), format,
+                Integer.toString(pageSize), Long.toString(maxRows), title, tableConfigJson, chartConfigJson);
+    }
+
+    /** Reuse a matching job if there is one, otherwise run {@code submit} (at most once per fingerprint at a time). */
+    public Outcome submitOrReuse(String fingerprint, Supplier<JobAck> submit) {
+        Entry known = byFingerprint.getIfPresent(fingerprint);
+        if (known != null) {
+            String state = reusableState(known);
+            if (state != null) {
+                log.info("job reuse: fingerprint={} -> job {} ({})", fingerprint.substring(0, 12), known.jobId(), state);
+                return new Outcome(known.jobId(), state, true);
+            }
+            byFingerprint.asMap().remove(fingerprint, known);
+        }
+
+        CompletableFuture<JobAck> mine = new CompletableFuture<>();
+        CompletableFuture<JobAck> leader = submitting.putIfAbsent(fingerprint, mine);
+        if (leader != null) {
+            try {
+                JobAck ack = leader.join();
+                return new Outcome(ack.getJobId(), ack.getStatus(), true);
+            } catch (CompletionException e) {
+                // the leader's submit failed; fall through and try on our own
+                return fresh(submit.get(), fingerprint);
+            }
+        }
+        try {
+            JobAck ack = submit.get();
+            mine.complete(ack);
+            return fresh(ack, fingerprint);
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            submitting.remove(fingerprint, mine);
+        }
+    }
+
+    private Outcome fresh(JobAck ack, String fingerprint) {
+        byFingerprint.put(fingerprint, new Entry(ack.getJobId(), Instant.now()));
+        return new Outcome(ack.getJobId(), ack.getStatus(), false);
+    }
+
+    /** Current state if the remembered job can stand in for a new submission, else null. */
+    private String reusableState(Entry e) {
+        JobStatus s;
+        try {
+            s = jobClient.status(e.jobId());
+        } catch (Exception ex) {
+            return null;
+        }
+        if (IN_FLIGHT.contains(s.getState())) return s.getState();
+        if (!"SUCCEEDED".equals(s.getState())) return null;
+        Instant done = s.hasCompletedAt()
+                ? Instant.ofEpochSecond(s.getCompletedAt().getSeconds(), s.getCompletedAt().getNanos())
+                : e.submittedAt();
+        return done.isAfter(Instant.now().minus(Duration.ofMinutes(props.getFreshnessMinutes()))) ? s.getState() : null;
+    }
+}
@@ -0,0 +1,153 @@
+package com.example.clearcard.service;
+
+import com.example.clearcard.JobStatus;
+import com.example.clearcard.config.AppProps;
+import com.example.clearcard.dto.JobStatusResponse;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+
+/**
+ * Fans job status out to SSE subscribers. Each job has at most one upstream poller no matter how
+ * many tabs are open; it stops as soon as the job is terminal or the last subscriber leaves.
+ *
+ * <p>The message-handler only exposes unary GetStatus, so the "watch" is a coalesced poll rather
+ * than a server-streaming RPC; swapping in a WatchStatus stream later only changes {@link Watch#poll}.
+ */
+@Slf4j
+@Service
+public class JobStatusWatcher {
+
+    static final Set<String> TERMINAL = Set.of("SUCCEEDED", "FAILED", "CANCELLED");
+    private static final int MAX_CONSECUTIVE_ERRORS = 10;
+
+    private final JobClient jobClient;
+    private final AppProps.Watch props;
+    private final ConcurrentHashMap<String, Watch> watches = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler;
+
+    public JobStatusWatcher(JobClient jobClient, AppProps appProps) {
+        this.jobClient = jobClient;
+        this.props = appProps.watch();
+        this.scheduler = Executors.newScheduledThreadPool(props.getPollThreads(), r -> {
+            Thread t = new Thread(r, "job-status-watch");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        scheduler.shutdownNow();
+        watches.values().forEach(Watch::completeAll);
+    }
+
+    public SseEmitter subscribe(String jobId) {
+        SseEmitter emitter = new SseEmitter(props.getEmitterTimeoutMs());
+        Watch w;
+        while (true) {
+            w = watches.computeIfAbsent(jobId, id -> {
+                if (watches.size() >= props.getMaxJobs()) {
+                    throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Too many watched jobs");
+                }
+                return new Watch(id);
+            });
+            if (w.add(emitter)) break;
+            // lost a race with a watch that just finished; start a fresh one
+            watches.remove(jobId, w);
+        }
+        Watch owner = w;
+        emitter.onCompletion(() -> owner.remove(emitter));
+        emitter.onTimeout(() -> owner.remove(emitter));
+        emitter.onError(e -> owner.remove(emitter));
+        return emitter;
+    }
+
+    /** Number of jobs with a live upstream poller (for diagnostics). */
+    public int activeWatches() { return watches.size(); }
+
+    private final class Watch {
+        final String jobId;
+        final List<SseEmitter> subscribers = new CopyOnWriteArrayList<>();
+        ScheduledFuture<?> future;
+        JobStatusResponse last;
+        int errors;
+        boolean closed;
+
+        Watch(String jobId) { this.jobId = jobId; }
+
+        synchronized boolean add(SseEmitter e) {
+            if (closed) return false;
+            subscribers.add(e);
+            if (last != null && !send(e, last)) subscribers.remove(e);
+            if (future == null) {
+                future = scheduler.scheduleWithFixedDelay(this::poll, 0, props.getPollIntervalMs(), TimeUnit.MILLISECONDS);
+            }
+            return true;
+        }
+
+        synchronized void remove(SseEmitter e) {
+            subscribers.remove(e);
+            if (subscribers.isEmpty()) close();
+        }
+
+        void poll() {
+            JobStatusResponse now;
+            try {
+                // uncached and short deadline: a watch exists to see changes as soon as the handler has them
+                JobStatus s = jobClient.pollStatus(jobId, props.getPollDeadlineMs());
+                now = new JobStatusResponse(s.getState(), s.getRowCount(), s.getBytes(), s.getErrorMessage());
+            } catch (Exception ex) {
+                synchronized (this) {
+                    if (++errors >= MAX_CONSECUTIVE_ERRORS) {
+                        log.warn("status watch for {} giving up after {} errors: {}", jobId, errors, ex.toString());
+                        subscribers.forEach(e -> e.completeWithError(ex));
+                        close();
+                    }
+                }
+                return;
+            }
+            synchronized (this) {
+                errors = 0;
+                if (closed || now.equals(last)) return;
+                last = now;
+                subscribers.removeIf(e -> !send(e, now));
+                if (TERMINAL.contains(now.state())) {
+                    completeAll();
+                } else if (subscribers.isEmpty()) {
+                    close();
+                }
+            }
+        }
+
+        synchronized void completeAll() {
+            subscribers.forEach(SseEmitter::complete);
+            subscribers.clear();
+            close();
+        }
+
+        private void close() {
+            if (closed) return;
+            closed = true;
+            if (future != null) future.cancel(false);
+            watches.remove(jobId, this);
+        }
+
+        private boolean send(SseEmitter e, JobStatusResponse s) {
+            try {
+                e.send(SseEmitter.event().name("status").data(s));
+                return true;
+            } catch (IOException | IllegalStateException ex) {
+                return false;
+            }
+        }
+    }
+}
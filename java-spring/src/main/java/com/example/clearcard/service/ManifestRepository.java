@@ -0,0 +1,153 @@
+package com.example.clearcard.service;
+
+import com.example.clearcard.config.AppProps;
+import com.example.clearcard.model.GsUri;
+import com.example.clearcard.model.ResultManifest;
+import com.example.clearcard.resilience.Dependencies;
+import com.example.clearcard.resilience.Dependency;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.cloud.storage.BlobId;
+import com.google.cloud.storage.Storage;
+import com.google.cloud.storage.StorageException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Single place that fetches and parses manifest.json. A finished manifest is immutable, so parsed
+ * results are cached by gs URI (bounded LRU) and repeat downloads skip the GCS GET entirely.
+ */
+@Slf4j
+@Service
+public class ManifestRepository {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper(
+            new JsonFactory()
+                    .enable(JsonParser.Feature.ALLOW_COMMENTS)
+                    .enable(JsonParser.Feature.ALLOW_TRAILING_COMMA)
+    );
+
+    private final Storage storage;
+    private final Dependency gcs;
+    private final Cache<String, ResultManifest> cache;
+
+    public ManifestRepository(Storage storage, Dependencies deps, AppProps props) {
+        this.storage = storage;
+        this.gcs = deps.gcs();
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(props.cache().getManifestMaxEntries())
+                .build();
+    }
+
+    /** Parsed manifest for a gs:// URI; 404 if the object is missing, 500 if it is not a usable manifest. */
+    public ResultManifest get(String gsManifestUri) {
+        return cache.get(gsManifestUri, this::load);
+    }
+
+    public void evict(String gsManifestUri) {
+        cache.invalidate(gsManifestUri);
+    }
+
+    /** A running job's manifest.partial.json, read fresh every time (never cached); null if it is not there (yet). */
+    public ResultManifest fetchPartial(String gsManifestUri) {
+        JsonNode root = read(gsManifestUri);
+        return root == null ? null : parse(gsManifestUri, root);
+    }
+
+    private ResultManifest load(String gsManifestUri) {
+        JsonNode root = read(gsManifestUri);
+        if (root == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Manifest not found in GCS: " + gsManifestUri);
+        }
+        ResultManifest mf = parse(gsManifestUri, root);
+        log.info("Manifest parsed: uri={} job={} parts={} compression={} columns={} rowCount={}",
+                gsManifestUri, mf.jobId(), mf.chunks().size(), mf.compression(), mf.columns().size(), mf.rowCount());
+        return mf;
+    }
+
+    private JsonNode read(String gsManifestUri) {
+        GsUri loc = GsUri.parse(gsManifestUri);
+        byte[] raw;
+        try {
+            raw = gcs.execute(() -> storage.readAllBytes(BlobId.of(loc.bucket(), loc.object())));
+        } catch (StorageException e) {
+            if (e.getCode() == 404) return null;
+            throw e;
+        }
+        String json = new String(raw, StandardCharsets.UTF_8);
+        if (!json.isEmpty() && json.charAt(0) == '\uFEFF') json = json.substring(1);
+
+        try {
+            return MAPPER.readTree(json);
+        } catch (Exception e) {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Invalid manifest JSON", e);
+        }
+    }
+
+    /** Accepts both chunks[].{uri,rows,bytes} and the older flat uris[] layout. */
+    static ResultManifest parse(String uri, JsonNode root) {
+        List<String> columns = new ArrayList<>();
+        JsonNode cols = root.get("columns");
+        if (cols != null && cols.isArray()) {
+            for (JsonNode c : cols) if (c.isTextual()) columns.add(c.asText());
+        }
+
+        long rowCount = root.path("row_count").canConvertToLong() ? root.path("row_count").asLong() : -1;
+        String format = root.path("format").isTextual() ? root.get("format").asText() : "csv";
+        String compression = root.path("compression").isTextual() ? root.get("compression").asText() : null;
+        String jobId = root.path("job_id").isTextual() ? root.get("job_id").asText() : null;
+        boolean partial = root.path("partial").asBoolean(false);
+
+        List<ResultManifest.Chunk> chunks = new ArrayList<>();
+        long offset = 0;
+        JsonNode arr = root.get("chunks");
+        if (arr != null && arr.isArray()) {
+            for (JsonNode ch : arr) {
+                JsonNode u = ch.get("uri");
+                if (u == null || !u.isTextual()) continue;
+                long rows = ch.path("rows").canConvertToLong() ? ch.get("rows").asLong() : -1;
+                long bytes = ch.path("bytes").canConvertToLong() ? ch.get("bytes").asLong() : -1;
+                chunks.add(new ResultManifest.Chunk(chunks.size(), u.asText(), rows, bytes, offset));
+                if (rows >= 0 && offset >= 0) offset += rows; else offset = -1;
+            }
+        }
+        if (chunks.isEmpty()) {
+            JsonNode uris = root.get("uris");
+            if (uris != null && uris.isArray()) {
+                for (JsonNode u : uris) {
+                    if (u.isTextual()) chunks.add(new ResultManifest.Chunk(chunks.size(), u.asText(), -1, -1, -1));
+                }
+            }
+        }
+        if (chunks.isEmpty() && !partial) {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR,
+                    "Manifest has no chunk URIs (expected chunks[].uri or uris[]).");
+        }
+        if (compression == null && !chunks.isEmpty() && chunks.get(0).uri().endsWith(".gz")) compression = "gzip";
+
+        ResultManifest.Meta meta = ResultManifest.Meta.EMPTY;
+        JsonNode m = root.get("meta");
+        if (m != null && m.isObject()) {
+            JsonNode title = m.get("title");
+            meta = new ResultManifest.Meta(
+                    title != null && title.isTextual() && !title.asText().isEmpty() ? title.asText() : null,
+                    nullIfJsonNull(m.get("table_config")),
+                    nullIfJsonNull(m.get("chart_config")));
+        }
+        return new ResultManifest(uri, jobId, List.copyOf(columns), rowCount, format, compression, List.copyOf(chunks), meta, partial);
+    }
+
+    private static JsonNode nullIfJsonNull(JsonNode n) {
+        return n == null || n.isNull() ? null : n;
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.clearcard.service;
+
+import com.example.clearcard.JobStatus;
+import com.example.clearcard.ResultManifestRef;
+import com.example.clearcard.config.AppProps;
+import com.example.clearcard.model.GsUri;
+import com.example.clearcard.model.ResultManifest;
+import com.example.clearcard.resilience.RequestCancellation;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Results of jobs that are still running. The worker rewrites jobs/&lt;id&gt;/manifest.partial.json
+ * after every part it uploads (and once up front with just the columns), so the existing download
+ * paths can serve what has landed so far. Partial manifests are read fresh on every call; only the
+ * final manifest.json goes through the {@link ManifestRepository} cache.
+ */
+@Slf4j
+@Service
+public class PartialResultService {
+
+    static final String OBJECT_NAME = "manifest.partial.json";
+    private static final Set<String> IN_FLIGHT = Set.of("PENDING", "QUEUED", "RUNNING");
+
+    private final JobClient jobClient;
+    private final ManifestRepository manifests;
+    private final AppProps.Partial props;
+    private final String bucket;
+    private final Semaphore followers;
+
+    public PartialResultService(JobClient jobClient, ManifestRepository manifests, AppProps appProps) {
+        this.jobClient = jobClient;
+        this.manifests = manifests;
+        this.props = appProps.partial();
+        this.bucket = appProps.gcs().getBucket();
+        this.followers = new Semaphore(props.getMaxFollowers());
+    }
+
+    /** What a running job has written so far, or null when the job is not running or nothing has landed yet. */
+    public ResultManifest running(String jobId) {
+        if (!props.isEnabled()) return null;
+        if (!IN_FLIGHT.contains(jobClient.status(jobId).getState())) return null;
+        return manifests.fetchPartial(uri(jobId));
+    }
+
+    /**
+     * Follows a running job for a download that started from a partial manifest: waits for more
+     * parts, hands over the final manifest once the job succeeded, and gives up (null) when the job
+     * failed or was cancelled, the follow timeout passed, the download's request is gone, or the
+     * thread was interrupted. Each follower sleeps on an async request thread, so at most
+     * {@code app.partial.max-followers} follow at once; past that a download ends with the parts it
+     * already has, as without {@code follow}.
+     */
+    public GcsCsvMergeService.Tail tail(String jobId) {
+        return new Follower(jobId, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(props.getFollowTimeoutMs()));
+    }
+
+    private final class Follower implements GcsCsvMergeService.Tail {
+        final String jobId;
+        final long deadline;
+        boolean following;
+
+        Follower(String jobId, long deadline) {
+            this.jobId = jobId;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public ResultManifest next(ResultManifest current) {
+            if (!following) {
+                following = followers.tryAcquire();
+                if (!following) {
+                    log.info("partial download of job {} not followed: {} followers already", jobId, props.getMaxFollowers());
+                    return null;
+                }
+            }
+            while (System.nanoTime() < deadline) {
+                try {
+                    Thread.sleep(props.getPollIntervalMs());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return null;
+                }
+                if (RequestCancellation.isCancelled()) return null; // the client went away between parts
+                JobStatus s = jobClient.status(jobId);
+                if ("SUCCEEDED".equals(s.getState())) {
+                    ResultManifestRef ref = jobClient.manifest(jobId);
+                    if ("OK".equals(ref.getStatus())) return manifests.get(ref.getGcsManifestUri());
+                    continue; // status and manifest ref come from different stores; catch up next round
+                }
+                ResultManifest latest = manifests.fetchPartial(uri(jobId));
+                boolean grew = latest != null && latest.chunks().size() > current.chunks().size();
+                if (grew) return latest;
+                if (!IN_FLIGHT.contains(s.getState())) return null;
+            }
+            log.info("partial download of job {} stopped following after {} ms", jobId, props.getFollowTimeoutMs());
+            return null;
+        }
+
+        @Override
+        public void close() {
+            if (following) {
+                following = false;
+                followers.release();
+            }
+        }
+    }
+
+    private String uri(String jobId) {
+        return new GsUri(bucket, "jobs/" + jobId + "/" + OBJECT_NAME).toString();
+    }
+}
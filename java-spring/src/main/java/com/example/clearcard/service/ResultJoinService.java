@@ -0,0 +1,497 @@
+package com.example.clearcard.service;
+
+import com.example.clearcard.config.AppProps;
+import com.example.clearcard.metrics.ResultMetrics;
+import com.example.clearcard.model.ResultManifest;
+import com.example.clearcard.tracing.RequestIds;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Joins two finished results on a key column without downloading either to the client. The smaller
+ * side (by manifest row_count) is the build side and is hashed in memory; the other side is streamed
+ * past it and joined rows are written out as they are found. When the build side outgrows
+ * {@code app.compare.max-build-bytes}, both sides are hash-partitioned into temp files and joined one
+ * partition at a time (grace hash join). A partition whose build side is still over the budget is
+ * partitioned again with another hash seed, up to {@value #MAX_REPARTITIONS} times; a single key
+ * with more build rows than the budget cannot be split and fails the join with 422.
+ *
+ * <p>Output columns are the key, then {@code left.<col>} and {@code right.<col>} for every other
+ * column. Blank keys never match, as SQL NULLs would not.
+ */
+@Slf4j
+@Service
+public class ResultJoinService {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    static final int MAX_REPARTITIONS = 4;
+
+    public enum How {
+        INNER, LEFT, RIGHT, FULL;
+
+        static How parse(String s) {
+            try {
+                return s == null ? INNER : valueOf(s.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "how must be one of " + Arrays.toString(values()));
+            }
+        }
+    }
+
+    public enum Format {
+        CSV, NDJSON;
+
+        static Format parse(String s) {
+            try {
+                return s == null ? CSV : valueOf(s.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "format must be csv or ndjson");
+            }
+        }
+    }
+
+    private final GcsCsvJsonService results;
+    private final ManifestRepository manifests;
+    private final ResultMetrics metrics;
+    private final AppProps.Compare props;
+
+    public ResultJoinService(GcsCsvJsonService results, ManifestRepository manifests, ResultMetrics metrics,
+                             AppProps appProps) {
+        this.results = results;
+        this.manifests = manifests;
+        this.metrics = metrics;
+        this.props = appProps.compare();
+    }
+
+    /** Validates both manifests and the key up front (400/404 before any byte is streamed). */
+    public StreamingResponseBody join(String leftUri, String rightUri, String key, String how, String format) {
+        How h = How.parse(how);
+        Format f = Format.parse(format);
+        ResultManifest left = manifests.get(leftUri);
+        ResultManifest right = manifests.get(rightUri);
+        requireKey(left, key, "left");
+        requireKey(right, key, "right");
+        // unknown row counts: keep the caller's orientation and hash the right side
+        boolean buildLeft = left.rowCount() >= 0 && right.rowCount() >= 0 && left.rowCount() < right.rowCount();
+        final String requestId = RequestIds.current();
+
+        return output -> {
+            try (var mdc = RequestIds.bind(requestId)) {
+                var counted = metrics.counting(output);
+                long t0 = System.nanoTime();
+                Join j = new Join(key, h, buildLeft, f == Format.CSV ? new CsvOut(counted) : new NdjsonOut(counted));
+                try {
+                    j.run(buildLeft ? leftUri : rightUri, buildLeft ? rightUri : leftUri);
+                } finally {
+                    j.close();
+                }
+                metrics.download("compare", j.written, counted.count());
+                log.info("compare left={} right={} key={} how={} build={} rows={} spilled={} took_ms={}",
+                        left.jobId(), right.jobId(), key, h, buildLeft ? "left" : "right", j.written,
+                        j.spill != null, (System.nanoTime() - t0) / 1_000_000);
+            }
+        };
+    }
+
+    private static void requireKey(ResultManifest mf, String key, String side) {
+        if (!mf.columns().isEmpty() && !mf.columns().contains(key)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Key column '" + key + "' not in " + side + " result " + mf.columns());
+        }
+    }
+
+    /* ---------------- join state ---------------- */
+
+    private static final class Row {
+        final String[] cells;
+        boolean matched;
+
+        Row(String[] cells) { this.cells = cells; }
+
+        long bytes() {
+            long b = 48;
+            for (String c : cells) b += 40 + 2L * c.length();
+            return b;
+        }
+    }
+
+    private final class Join implements Closeable {
+        final String key;
+        final boolean buildLeft;
+        final boolean keepUnmatchedBuild;
+        final boolean keepUnmatchedProbe;
+        final Out out;
+
+        List<String> buildCols;
+        List<String> probeCols;
+        int buildKey = -1;
+        int probeKey = -1;
+        Map<String, List<Row>> table = new HashMap<>();
+        long tableBytes;
+        Spill spill;
+        long written;
+
+        Join(String key, How how, boolean buildLeft, Out out) {
+            this.key = key;
+            this.buildLeft = buildLeft;
+            boolean keepLeft = how == How.LEFT || how == How.FULL;
+            boolean keepRight = how == How.RIGHT || how == How.FULL;
+            this.keepUnmatchedBuild = buildLeft ? keepLeft : keepRight;
+            this.keepUnmatchedProbe = buildLeft ? keepRight : keepLeft;
+            this.out = out;
+        }
+
+        void run(String buildUri, String probeUri) throws IOException {
+            results.scan(buildUri, new GcsCsvJsonService.RowSink() {
+                @Override public void header(List<String> columns) {
+                    buildCols = columns;
+                    buildKey = keyIndex(columns);
+                }
+                @Override public void row(List<String> cells) { addBuild(cells.toArray(String[]::new)); }
+            });
+            if (buildCols == null) {
+                buildCols = List.of(key);
+                buildKey = 0;
+            }
+            results.scan(probeUri, new GcsCsvJsonService.RowSink() {
+                @Override public void header(List<String> columns) {
+                    probeCols = columns;
+                    probeKey = keyIndex(columns);
+                    out.header(outputColumns());
+                }
+                @Override public void row(List<String> cells) {
+                    String[] row = cells.toArray(String[]::new);
+                    if (spill != null) spill.probe(keyOf(row, probeKey), row);
+                    else probe(row);
+                }
+            });
+            if (probeCols == null) {
+                // neither a manifest column list nor a single line on the probe side
+                probeCols = List.of(key);
+                probeKey = 0;
+                out.header(outputColumns());
+            }
+            if (spill == null) {
+                emitUnmatchedBuild();
+            } else {
+                for (int p = 0; p < spill.partitions; p++) joinPartition(spill, p, 0);
+            }
+            out.flush();
+        }
+
+        /** Joins one spilled partition, splitting it again if its build side does not fit the budget. */
+        private void joinPartition(Spill from, int p, int depth) throws IOException {
+            table = new HashMap<>();
+            tableBytes = 0;
+            Spill[] split = {null};
+            from.readBuild(p, r -> {
+                if (keyOf(r, buildKey).isEmpty()) {
+                    // never matches, so it need not be held (all blank keys share a partition)
+                    if (keepUnmatchedBuild) emit("", r, null);
+                    return;
+                }
+                if (split[0] != null) {
+                    split[0].build(keyOf(r, buildKey), r);
+                    return;
+                }
+                Row row = new Row(r);
+                put(row);
+                tableBytes += row.bytes();
+                if (tableBytes > props.getMaxBuildBytes()) split[0] = repartition(depth + 1);
+            });
+            if (split[0] == null) {
+                from.readProbe(p, this::probe);
+                emitUnmatchedBuild();
+                return;
+            }
+            try (Spill sub = split[0]) {
+                from.readProbe(p, r -> sub.probe(keyOf(r, probeKey), r));
+                for (int q = 0; q < sub.partitions; q++) joinPartition(sub, q, depth + 1);
+            }
+        }
+
+        /** Moves the in-memory build rows of an over-budget partition into a new spill with its own hash seed. */
+        private Spill repartition(int depth) {
+            if (table.size() == 1 || depth > MAX_REPARTITIONS) {
+                String what = table.size() == 1
+                        ? "key '" + table.keySet().iterator().next() + "' alone has"
+                        : "a key partition still has, after " + MAX_REPARTITIONS + " repartitions,";
+                throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY, "Cannot join on '" + key + "': "
+                        + what + " more build rows than app.compare.max-build-bytes allows");
+            }
+            Spill sub;
+            try {
+                sub = new Spill(props.getSpillPartitions(), spillDirectory(), depth);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            for (List<Row> rows : table.values()) {
+                for (Row r : rows) sub.build(keyOf(r.cells, buildKey), r.cells);
+            }
+            log.info("compare partition passed {} bytes; repartitioning (level {})", tableBytes, depth);
+            table = new HashMap<>();
+            tableBytes = 0;
+            return sub;
+        }
+
+        private int keyIndex(List<String> columns) {
+            int i = columns.indexOf(key);
+            if (i < 0) throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Key column '" + key + "' not in " + columns);
+            return i;
+        }
+
+        private void addBuild(String[] cells) {
+            if (spill != null) {
+                spill.build(keyOf(cells, buildKey), cells);
+                return;
+            }
+            Row r = new Row(cells);
+            put(r);
+            tableBytes += r.bytes();
+            if (tableBytes > props.getMaxBuildBytes()) spillTable();
+        }
+
+        private void put(Row r) {
+            table.computeIfAbsent(keyOf(r.cells, buildKey), k -> new ArrayList<>(1)).add(r);
+        }
+
+        private void spillTable() {
+            try {
+                spill = new Spill(props.getSpillPartitions(), spillDirectory(), 0);
+                for (List<Row> rows : table.values()) {
+                    for (Row r : rows) spill.build(keyOf(r.cells, buildKey), r.cells);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            log.info("compare build side passed {} bytes; spilling to {} partitions", tableBytes, spill.partitions);
+            table = null;
+        }
+
+        private void probe(String[] row) {
+            String k = keyOf(row, probeKey);
+            List<Row> matches = k.isEmpty() ? null : table.get(k);
+            if (matches == null) {
+                if (keepUnmatchedProbe) emit(k, null, row);
+                return;
+            }
+            for (Row b : matches) {
+                b.matched = true;
+                emit(k, b.cells, row);
+            }
+        }
+
+        private void emitUnmatchedBuild() {
+            if (!keepUnmatchedBuild) return;
+            for (Map.Entry<String, List<Row>> e : table.entrySet()) {
+                for (Row b : e.getValue()) if (!b.matched) emit(e.getKey(), b.cells, null);
+            }
+        }
+
+        private List<String> outputColumns() {
+            List<String> leftCols = buildLeft ? buildCols : probeCols;
+            List<String> rightCols = buildLeft ? probeCols : buildCols;
+            List<String> cols = new ArrayList<>(leftCols.size() + rightCols.size() - 1);
+            cols.add(key);
+            for (String c : leftCols) if (!c.equals(key)) cols.add("left." + c);
+            for (String c : rightCols) if (!c.equals(key)) cols.add("right." + c);
+            return cols;
+        }
+
+        private void emit(String k, String[] build, String[] probe) {
+            String[] l = buildLeft ? build : probe;
+            String[] r = buildLeft ? probe : build;
+            int lKey = buildLeft ? buildKey : probeKey;
+            int rKey = buildLeft ? probeKey : buildKey;
+            int lSize = buildLeft ? buildCols.size() : probeCols.size();
+            int rSize = buildLeft ? probeCols.size() : buildCols.size();
+            List<String> row = new ArrayList<>(lSize + rSize - 1);
+            row.add(k);
+            for (int i = 0; i < lSize; i++) if (i != lKey) row.add(cell(l, i));
+            for (int i = 0; i < rSize; i++) if (i != rKey) row.add(cell(r, i));
+            try {
+                out.row(row);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            written++;
+        }
+
+        @Override
+        public void close() {
+            if (spill != null) spill.close();
+        }
+    }
+
+    private static String keyOf(String[] cells, int idx) {
+        return idx < cells.length ? cells[idx] : "";
+    }
+
+    private static String cell(String[] cells, int i) {
+        return cells == null || i >= cells.length ? "" : cells[i];
+    }
+
+    private Path spillDirectory() throws IOException {
+        String dir = props.getSpillDirectory();
+        Path base = dir == null || dir.isBlank()
+                ? Paths.get(System.getProperty("java.io.tmpdir"))
+                : Files.createDirectories(Paths.get(dir));
+        return Files.createTempDirectory(base, "clearcard-compare-");
+    }
+
+    /* ---------------- spill files ---------------- */
+
+    /** Length-prefixed UTF-8 rows, one build and one probe file per partition. */
+    private static final class Spill implements Closeable {
+        final int partitions;
+        final Path dir;
+        final long seed;
+        final DataOutputStream[] build;
+        final DataOutputStream[] probe;
+
+        Spill(int partitions, Path dir, long seed) throws IOException {
+            this.partitions = partitions;
+            this.dir = dir;
+            this.seed = seed;
+            this.build = new DataOutputStream[partitions];
+            this.probe = new DataOutputStream[partitions];
+            for (int p = 0; p < partitions; p++) {
+                build[p] = open(dir.resolve("build-" + p));
+                probe[p] = open(dir.resolve("probe-" + p));
+            }
+        }
+
+        void build(String key, String[] row) { write(build[partition(key)], row); }
+        void probe(String key, String[] row) { write(probe[partition(key)], row); }
+
+        void readBuild(int p, Consumer<String[]> rows) throws IOException {
+            read(build[p], dir.resolve("build-" + p), rows);
+        }
+
+        void readProbe(int p, Consumer<String[]> rows) throws IOException {
+            read(probe[p], dir.resolve("probe-" + p), rows);
+        }
+
+        private int partition(String key) {
+            // murmur3 finalizer over hash + seed: a repartition spreads keys that shared a partition;
+            // high bits, so a partition's keys do not also share their low hash bits (HashMap buckets)
+            long h = key.hashCode() * 0x9E3779B97F4A7C15L + seed * 0xC2B2AE3D27D4EB4FL;
+            h ^= h >>> 33;
+            h *= 0xff51afd7ed558ccdL;
+            h ^= h >>> 33;
+            return (int) ((h >>> 32) % partitions);
+        }
+
+        private static DataOutputStream open(Path file) throws IOException {
+            return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 64 * 1024));
+        }
+
+        private static void write(DataOutputStream out, String[] row) {
+            try {
+                out.writeInt(row.length);
+                for (String c : row) {
+                    byte[] b = c.getBytes(StandardCharsets.UTF_8);
+                    out.writeInt(b.length);
+                    out.write(b);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private static void read(DataOutputStream writer, Path file, Consumer<String[]> rows)
+                throws IOException {
+            writer.close();
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 64 * 1024))) {
+                while (true) {
+                    int n;
+                    try {
+                        n = in.readInt();
+                    } catch (EOFException eof) {
+                        break;
+                    }
+                    String[] row = new String[n];
+                    for (int i = 0; i < n; i++) {
+                        byte[] b = new byte[in.readInt()];
+                        in.readFully(b);
+                        row[i] = new String(b, StandardCharsets.UTF_8);
+                    }
+                    rows.accept(row);
+                }
+            }
+            Files.deleteIfExists(file);
+        }
+
+        @Override
+        public void close() {
+            for (int p = 0; p < partitions; p++) {
+                try { build[p].close(); } catch (IOException ignore) {}
+                try { probe[p].close(); } catch (IOException ignore) {}
+            }
+            try (var files = Files.list(dir)) {
+                for (Path f : (Iterable<Path>) files::iterator) Files.deleteIfExists(f);
+                Files.deleteIfExists(dir);
+            } catch (IOException e) {
+                log.warn("could not clean up spill directory {}: {}", dir, e.toString());
+            }
+        }
+    }
+
+    /* ---------------- output ---------------- */
+
+    private interface Out {
+        void header(List<String> columns);
+        void row(List<String> cells) throws IOException;
+        void flush() throws IOException;
+    }
+
+    private static final class CsvOut implements Out {
+        final BufferedWriter w;
+
+        CsvOut(OutputStream os) {
+            this.w = new BufferedWriter(new OutputStreamWriter(os, StandardCharsets.UTF_8), 64 * 1024);
+        }
+
+        @Override public void header(List<String> columns) {
+            try {
+                row(columns);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        @Override public void row(List<String> cells) throws IOException {
+            w.write(GcsCsvMergeService.csvJoin(cells));
+            w.write('\n');
+        }
+        @Override public void flush() throws IOException { w.flush(); }
+    }
+
+    /** One JSON object per line, values typed the same way download.json types them. */
+    private static final class NdjsonOut implements Out {
+        final BufferedWriter w;
+        List<String> columns;
+
+        NdjsonOut(OutputStream os) {
+            this.w = new BufferedWriter(new OutputStreamWriter(os, StandardCharsets.UTF_8), 64 * 1024);
+        }
+
+        @Override public void header(List<String> columns) { this.columns = columns; }
+        @Override public void row(List<String> cells) throws IOException {
+            w.write(MAPPER.writeValueAsString(GcsCsvJsonService.toObject(columns, cells)));
+            w.write('\n');
+        }
+        @Override public void flush() throws IOException { w.flush(); }
+    }
+}
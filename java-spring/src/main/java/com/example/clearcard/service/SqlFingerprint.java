@@ -0,0 +1,152 @@
+package com.example.clearcard.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.regex.Pattern;
+
+/**
+ * Canonical forms of T-SQL text. Comments are dropped and whitespace runs collapse to one space;
+ * anything inside '...' , N'...' , "..." or [...] is copied verbatim.
+ */
+public final class SqlFingerprint {
+
+    private static final Pattern PLACEHOLDER_LIST = Pattern.compile("\\?(?: ?, ?\\?)+");
+
+    private SqlFingerprint() {}
+
+    /** Same statement regardless of formatting/comments; literal values are kept. */
+    public static String normalize(String sql) {
+        if (sql == null) return "";
+        StringBuilder out = new StringBuilder(sql.length());
+        int n = sql.length();
+        boolean pendingSpace = false;
+        for (int i = 0; i < n; ) {
+            char c = sql.charAt(i);
+            if (c == '-' && i + 1 < n && sql.charAt(i + 1) == '-') {          // line comment
+                while (i < n && sql.charAt(i) != '\n') i++;
+                pendingSpace = true;
+                continue;
+            }
+            if (c == '/' && i + 1 < n && sql.charAt(i + 1) == '*') {          // block comment
+                int end = sql.indexOf("*/", i + 2);
+                i = end < 0 ? n : end + 2;
+                pendingSpace = true;
+                continue;
+            }
+            if (Character.isWhitespace(c)) {
+                pendingSpace = true;
+                i++;
+                continue;
+            }
+            if (pendingSpace && out.length() > 0) out.append(' ');
+            pendingSpace = false;
+            if (c == '\'' || c == '"' || c == '[') {
+                int end = quotedEnd(sql, i);
+                out.append(sql, i, end);
+                i = end;
+                continue;
+            }
+            out.append(c);
+            i++;
+        }
+        int len = out.length();
+        while (len > 0 && (out.charAt(len - 1) == ';' || out.charAt(len - 1) == ' ')) len--;
+        out.setLength(len);
+        return out.toString();
+    }
+
+    /**
+     * {@link #normalize}d text with literals replaced by {@code ?}: strings ('..', N'..'), numbers and
+     * 0x constants. A list of placeholders ({@code IN (?, ?, ?)}) collapses to {@code ?, ...} so that
+     * queries built from the same qb tree group together whatever values were typed. Quoted
+     * identifiers ("..", [..]) are structure, not data, and are kept.
+     */
+    public static String shape(String sql) {
+        String norm = normalize(sql);
+        StringBuilder out = new StringBuilder(norm.length());
+        int n = norm.length();
+        for (int i = 0; i < n; ) {
+            char c = norm.charAt(i);
+            boolean afterIdent = out.length() > 0 && isIdentChar(out.charAt(out.length() - 1));
+            if (c == '\'') {
+                i = quotedEnd(norm, i);
+                out.append('?');
+                continue;
+            }
+            if ((c == 'N' || c == 'n') && !afterIdent && i + 1 < n && norm.charAt(i + 1) == '\'') {
+                i = quotedEnd(norm, i + 1);
+                out.append('?');
+                continue;
+            }
+            if (c == '"' || c == '[') {
+                int end = quotedEnd(norm, i);
+                out.append(norm, i, end);
+                i = end;
+                continue;
+            }
+            if (c >= '0' && c <= '9' && !afterIdent) {
+                i = numberEnd(norm, i);
+                out.append('?');
+                continue;
+            }
+            out.append(c);
+            i++;
+        }
+        return PLACEHOLDER_LIST.matcher(out).replaceAll("?, ...");
+    }
+
+    /** Index just past a numeric literal: 0x hex, or digits with optional fraction and exponent. */
+    static int numberEnd(String s, int start) {
+        int i = start, n = s.length();
+        if (s.charAt(i) == '0' && i + 1 < n && (s.charAt(i + 1) == 'x' || s.charAt(i + 1) == 'X')) {
+            i += 2;
+            while (i < n && Character.digit(s.charAt(i), 16) >= 0) i++;
+            return i;
+        }
+        while (i < n && (Character.isDigit(s.charAt(i)) || s.charAt(i) == '.')) i++;
+        if (i < n && (s.charAt(i) == 'e' || s.charAt(i) == 'E')) {
+            int j = i + 1;
+            if (j < n && (s.charAt(j) == '+' || s.charAt(j) == '-')) j++;
+            if (j < n && Character.isDigit(s.charAt(j))) {
+                i = j;
+                while (i < n && Character.isDigit(s.charAt(i))) i++;
+            }
+        }
+        return i;
+    }
+
+    private static boolean isIdentChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '@' || c == '#' || c == '$';
+    }
+
+    /** Hex SHA-256 over the given parts, separated so ("a","bc") != ("ab","c"). */
+    public static String sha256(String... parts) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            for (String p : parts) {
+                md.update((p == null ? "" : p).getBytes(StandardCharsets.UTF_8));
+                md.update((byte) 0);
+            }
+            return HexFormat.of().formatHex(md.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** Index just past the quoted token starting at {@code start}; doubled closers are escapes. */
+    static int quotedEnd(String sql, int start) {
+        char open = sql.charAt(start);
+        char close = open == '[' ? ']' : open;
+        int i = start + 1, n = sql.length();
+        while (i < n) {
+            if (sql.charAt(i) == close) {
+                if (i + 1 < n && sql.charAt(i + 1) == close) { i += 2; continue; }
+                return i + 1;
+            }
+            i++;
+        }
+        return n;
+    }
+}
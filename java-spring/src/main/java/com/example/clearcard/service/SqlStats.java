@@ -0,0 +1,164 @@
+package com.example.clearcard.service;
+
+import com.example.clearcard.config.AppProps;
+import com.example.clearcard.metrics.LatencyHistogram;
+import com.example.clearcard.tracing.RequestIds;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-shape statistics for the SQL this service streams from the handler (articles, /sql).
+ * Statements are grouped by {@link SqlFingerprint#shape}, so qb searches that differ only in the
+ * values typed land on one row. The table is bounded by {@code app.sql-stats.max-fingerprints};
+ * Caffeine's frequency-aware eviction keeps the hot shapes when one-offs would overflow it.
+ *
+ * <p>Statements slower than {@code app.sql-stats.slow-threshold-ms} are also kept verbatim, with the
+ * request parameters that produced them, in a small ring of the most recent ones.
+ */
+@Slf4j
+@Service
+public class SqlStats {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    public record Summary(String fingerprint, String shape, Set<String> sources, long count, long errors,
+                          double total_ms, double mean_ms, double p50_ms, double p95_ms, double p99_ms, double max_ms,
+                          long rows, double mean_rows, long bytes, Instant first_seen, Instant last_seen) {}
+
+    public record Slow(Instant at, String fingerprint, String source, String request_id, double elapsed_ms,
+                       long rows, long bytes, String status, String sql, String params) {}
+
+    private final AppProps.SqlStats props;
+    private final Cache<String, Entry> byShape;
+    private final ArrayDeque<Slow> slow = new ArrayDeque<>();
+
+    public SqlStats(AppProps appProps) {
+        this.props = appProps.sqlStats();
+        this.byShape = Caffeine.newBuilder()
+                .maximumSize(props.getMaxFingerprints())
+                .build();
+    }
+
+    /** Account one finished statement; {@code status} is the handler's ("OK", "ERROR", ...). */
+    public void record(String source, String sql, Object params, long elapsedNanos, long rows, long bytes, String status) {
+        if (!props.isEnabled() || sql == null) return;
+        String shape = SqlFingerprint.shape(sql);
+        Entry e = byShape.get(shape, Entry::new);
+        e.add(source, elapsedNanos, rows, bytes, !"OK".equals(status));
+
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+        if (elapsedMs >= props.getSlowThresholdMs()) {
+            Slow s = new Slow(Instant.now(), e.id, source, RequestIds.current(), elapsedNanos / 1e6,
+                    rows, bytes, status, clip(sql), clip(json(params)));
+            log.warn("slow sql source={} fingerprint={} elapsed_ms={} rows={} status={}",
+                    source, e.id, elapsedMs, rows, status);
+            synchronized (slow) {
+                slow.addFirst(s);
+                while (slow.size() > props.getSlowKeep()) slow.removeLast();
+            }
+        }
+    }
+
+    /** Top {@code limit} shapes by {@code sort}: total (time), count, p95, p99, mean, rows or bytes. */
+    public List<Summary> top(String sort, int limit) {
+        Comparator<Summary> by = switch (sort == null ? "total" : sort) {
+            case "count" -> Comparator.comparingLong(Summary::count);
+            case "p95"   -> Comparator.comparingDouble(Summary::p95_ms);
+            case "p99"   -> Comparator.comparingDouble(Summary::p99_ms);
+            case "mean"  -> Comparator.comparingDouble(Summary::mean_ms);
+            case "rows"  -> Comparator.comparingLong(Summary::rows);
+            case "bytes" -> Comparator.comparingLong(Summary::bytes);
+            default      -> Comparator.comparingDouble(Summary::total_ms);
+        };
+        return byShape.asMap().values().stream()
+                .map(Entry::summary)
+                .sorted(by.reversed())
+                .limit(Math.max(1, limit))
+                .toList();
+    }
+
+    public List<Slow> slow() {
+        synchronized (slow) {
+            return new ArrayList<>(slow);
+        }
+    }
+
+    public void reset() {
+        byShape.invalidateAll();
+        synchronized (slow) {
+            slow.clear();
+        }
+    }
+
+    private String clip(String s) {
+        if (s == null || s.length() <= props.getMaxSqlChars()) return s;
+        return s.substring(0, props.getMaxSqlChars()) + "...";
+    }
+
+    private static String json(Object params) {
+        if (params == null) return null;
+        try {
+            return MAPPER.writeValueAsString(params);
+        } catch (Exception ex) {
+            return String.valueOf(params);
+        }
+    }
+
+    private static final class Entry {
+        final String id;
+        final String shape;
+        final Instant firstSeen = Instant.now();
+        final Set<String> sources = ConcurrentHashMap.newKeySet();
+        final LongAdder count = new LongAdder();
+        final LongAdder errors = new LongAdder();
+        final LongAdder rows = new LongAdder();
+        final LongAdder bytes = new LongAdder();
+        final LongAdder totalMicros = new LongAdder();
+        final AtomicLong lastSeenMillis = new AtomicLong();
+        final LatencyHistogram micros = new LatencyHistogram();
+
+        Entry(String shape) {
+            this.shape = shape;
+            this.id = SqlFingerprint.sha256(shape).substring(0, 16);
+        }
+
+        void add(String source, long elapsedNanos, long r, long b, boolean error) {
+            long us = TimeUnit.NANOSECONDS.toMicros(elapsedNanos);
+            sources.add(source);
+            count.increment();
+            if (error) errors.increment();
+            rows.add(r);
+            bytes.add(b);
+            totalMicros.add(us);
+            micros.recordMicros(us);
+            lastSeenMillis.set(System.currentTimeMillis());
+        }
+
+        Summary summary() {
+            long n = count.sum();
+            double total = totalMicros.sum() / 1000.0;
+            long r = rows.sum();
+            return new Summary(id, shape, new TreeSet<>(sources), n, errors.sum(),
+                    total, n == 0 ? 0 : total / n,
+                    micros.percentile(0.50) / 1000.0, micros.percentile(0.95) / 1000.0,
+                    micros.percentile(0.99) / 1000.0, micros.max() / 1000.0,
+                    r, n == 0 ? 0 : (double) r / n, bytes.sum(),
+                    firstSeen, Instant.ofEpochMilli(lastSeenMillis.get()));
+        }
+    }
+}
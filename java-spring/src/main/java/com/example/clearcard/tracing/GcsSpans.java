@@ -0,0 +1,27 @@
+package com.example.clearcard.tracing;
+
+import com.example.clearcard.model.GsUri;
+import com.example.clearcard.model.ResultManifest;
+import io.micrometer.tracing.Span;
+import io.micrometer.tracing.Tracer;
+
+/** Span names and tags for result-chunk reads, shared by the JSON and CSV download paths. */
+public final class GcsSpans {
+
+    private GcsSpans() {}
+
+    /**
+     * Started span for reading one chunk. {@code parent} is passed explicitly because streaming
+     * bodies run on an MVC executor thread where the request span is no longer current.
+     */
+    public static Span read(Tracer tracer, Span parent, ResultManifest mf, ResultManifest.Chunk chunk, GsUri part) {
+        Span span = (parent != null ? tracer.nextSpan(parent) : tracer.nextSpan())
+                .name("gcs.read")
+                .tag("gcs.bucket", part.bucket())
+                .tag("gcs.object", part.object())
+                .tag("chunk.index", chunk.index());
+        if (mf.jobId() != null) span.tag("job.id", mf.jobId());
+        if (chunk.bytes() >= 0) span.tag("chunk.bytes", chunk.bytes());
+        return span.start();
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.clearcard.tracing;
+
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.ForwardingClientCall;
+import io.grpc.ForwardingClientCallListener;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+import io.micrometer.tracing.Span;
+import io.micrometer.tracing.Tracer;
+import io.micrometer.tracing.propagation.Propagator;
+import org.springframework.stereotype.Component;
+
+/**
+ * One CLIENT span per outbound call, with its context injected as W3C {@code traceparent} metadata
+ * so the handler (and through the Redis payload, the worker) can join the trace. Also fills in
+ * {@code x-request-id} from MDC when the caller did not set one explicitly.
+ */
+@Component
+public class GrpcTracingInterceptor implements ClientInterceptor {
+
+    static final Metadata.Key<String> REQUEST_ID = Metadata.Key.of("x-request-id", Metadata.ASCII_STRING_MARSHALLER);
+
+    private final Tracer tracer;
+    private final Propagator propagator;
+
+    public GrpcTracingInterceptor(Tracer tracer, Propagator propagator) {
+        this.tracer = tracer;
+        this.propagator = propagator;
+    }
+
+    @Override
+    public <Q, R> ClientCall<Q, R> interceptCall(MethodDescriptor<Q, R> method, CallOptions options, Channel next) {
+        String requestId = RequestIds.current();
+        Span.Builder builder = tracer.spanBuilder()
+                .name(method.getFullMethodName())
+                .kind(Span.Kind.CLIENT)
+                .tag("rpc.system", "grpc")
+                .tag("rpc.method", method.getFullMethodName());
+        if (requestId != null) builder.tag("request.id", requestId);
+
+        return new ForwardingClientCall.SimpleForwardingClientCall<>(next.newCall(method, options)) {
+            @Override
+            public void start(Listener<R> listener, Metadata headers) {
+                Span span = builder.start();
+                propagator.inject(span.context(), headers,
+                        (h, k, v) -> h.put(Metadata.Key.of(k, Metadata.ASCII_STRING_MARSHALLER), v));
+                if (requestId != null && !headers.containsKey(REQUEST_ID)) headers.put(REQUEST_ID, requestId);
+
+                super.start(new ForwardingClientCallListener.SimpleForwardingClientCallListener<>(listener) {
+                    @Override
+                    public void onClose(Status status, Metadata trailers) {
+                        span.tag("rpc.grpc.status_code", status.getCode().name());
+                        if (!status.isOk()) span.error(status.asRuntimeException());
+                        span.end();
+                        super.onClose(status, trailers);
+                    }
+                }, headers);
+            }
+        };
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.clearcard.tracing;
+
+import io.micrometer.tracing.Span;
+import io.micrometer.tracing.Tracer;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.MDC;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Accepts the caller's X-Request-Id (or mints one), puts it in MDC for the log pattern, echoes it on
+ * the response and tags the server span with it. Ordered just after Boot's observation filter so the
+ * span already exists, and ahead of Spring Security so 401/403 responses carry the id too.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 2)
+public class RequestIdFilter extends OncePerRequestFilter {
+
+    private static final String ATTRIBUTE = RequestIdFilter.class.getName() + ".id";
+
+    private final Tracer tracer;
+
+    public RequestIdFilter(Tracer tracer) {
+        this.tracer = tracer;
+    }
+
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        return false; // async dispatches run on another thread and need the same id in MDC again
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest req, HttpServletResponse res, FilterChain chain)
+            throws ServletException, IOException {
+        String id = (String) req.getAttribute(ATTRIBUTE);
+        if (id == null) {
+            id = RequestIds.acceptOrGenerate(req.getHeader(RequestIds.HEADER));
+            req.setAttribute(ATTRIBUTE, id);
+            res.setHeader(RequestIds.HEADER, id);
+            Span span = tracer.currentSpan();
+            if (span != null) span.tag("request.id", id);
+        }
+        MDC.put(RequestIds.MDC_KEY, id);
+        try {
+            chain.doFilter(req, res);
+        } finally {
+            MDC.remove(RequestIds.MDC_KEY);
+        }
+    }
+}
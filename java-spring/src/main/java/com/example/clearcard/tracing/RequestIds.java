@@ -0,0 +1,41 @@
+package com.example.clearcard.tracing;
+
+import org.slf4j.MDC;
+
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+/**
+ * The request id lives in MDC under {@value #MDC_KEY} for the life of an HTTP request (see
+ * {@link RequestIdFilter}); everything that talks to the handler or the worker reads it from here.
+ */
+public final class RequestIds {
+
+    public static final String MDC_KEY = "request_id";
+    public static final String HEADER = "X-Request-Id";
+
+    private static final Pattern VALID = Pattern.compile("[A-Za-z0-9._:-]{1,128}");
+
+    private RequestIds() {}
+
+    /** The caller's id if it is safe to log and forward, otherwise a fresh one. */
+    public static String acceptOrGenerate(String candidate) {
+        return candidate != null && VALID.matcher(candidate).matches() ? candidate : UUID.randomUUID().toString();
+    }
+
+    /** Id of the request on this thread, or null outside a request (schedulers, async bodies). */
+    public static String current() {
+        return MDC.get(MDC_KEY);
+    }
+
+    /** {@link #current()} or a fresh id, for calls that must always carry one. */
+    public static String currentOrNew() {
+        String id = current();
+        return id != null ? id : UUID.randomUUID().toString();
+    }
+
+    /** Re-binds a captured id on another thread; closing removes it again. */
+    public static MDC.MDCCloseable bind(String requestId) {
+        return MDC.putCloseable(MDC_KEY, requestId);
+    }
+}
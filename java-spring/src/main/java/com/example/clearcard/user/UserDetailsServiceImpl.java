@@ -1,5 +1,6 @@
 package com.example.clearcard.user;
 
+import com.example.clearcard.config.AppProps;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.core.userdetails.*;
 import org.springframework.stereotype.Service;
@@ -7,10 +8,14 @@ import org.springframework.stereotype.Service;
 @Service @RequiredArgsConstructor
 public class UserDetailsServiceImpl implements UserDetailsService {
     private final UserRepository repo;
+    private final AppProps props;
 
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
         var u = repo.findByUsername(username).orElseThrow(() -> new UsernameNotFoundException("not found"));
-        return User.withUsername(u.getUsername()).password(u.getPasswordHash()).roles("USER").build();
+        String[] roles = props.admin().getUsernames().contains(u.getUsername())
+                ? new String[] { "USER", "ADMIN" }
+                : new String[] { "USER" };
+        return User.withUsername(u.getUsername()).password(u.getPasswordHash()).roles(roles).build();
     }
 }
@@ -0,0 +1,75 @@
+package com.example.clearcard.profile;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class HyperLogLogTest {
+
+    private static HyperLogLog of(int from, int to) {
+        HyperLogLog h = new HyperLogLog();
+        for (int i = from; i < to; i++) h.add("value-" + i);
+        return h;
+    }
+
+    private static double relativeError(long estimate, long actual) {
+        return Math.abs(estimate - actual) / (double) actual;
+    }
+
+    @Test
+    void emptyIsZero() {
+        assertThat(new HyperLogLog().estimate()).isEqualTo(0);
+    }
+
+    @Test
+    void smallCardinalitiesAreNearlyExact() {
+        // linear counting range: a handful of collisions among 4096 registers at most
+        for (int n : new int[]{1, 10, 100, 1_000}) {
+            long e = of(0, n).estimate();
+            assertThat(Math.abs(e - n)).as("n=" + n).isLessThanOrEqualTo(Math.max(1, n / 100));
+        }
+    }
+
+    @Test
+    void duplicatesDoNotCount() {
+        HyperLogLog h = new HyperLogLog();
+        for (int round = 0; round < 50; round++) {
+            for (int i = 0; i < 500; i++) h.add("value-" + i);
+        }
+
+        assertThat(h.estimate()).isEqualTo(of(0, 500).estimate());
+    }
+
+    @Test
+    void largeCardinalitiesStayWithinThreeStandardErrors() {
+        // 1.04 / sqrt(4096) = 1.6% standard error
+        for (int n : new int[]{20_000, 200_000, 1_000_000}) {
+            assertThat(relativeError(of(0, n).estimate(), n)).as("n=" + n).isLessThan(0.05);
+        }
+    }
+
+    @Test
+    void mergeEstimatesTheUnion() {
+        HyperLogLog a = of(0, 60_000);
+        HyperLogLog b = of(40_000, 100_000);
+
+        a.merge(b);
+
+        assertThat(relativeError(a.estimate(), 100_000)).isLessThan(0.05);
+        // register-wise max: identical to one sketch fed everything
+        assertThat(a.estimate()).isEqualTo(of(0, 100_000).estimate());
+    }
+
+    @Test
+    void mergeWithSelfOrEmptyChangesNothing() {
+        HyperLogLog a = of(0, 5_000);
+        long before = a.estimate();
+
+        a.merge(new HyperLogLog());
+        assertThat(a.estimate()).isEqualTo(before);
+        a.merge(of(0, 5_000));
+        assertThat(a.estimate()).isEqualTo(before);
+        assertThat(relativeError(before, 5_000)).isCloseTo(0, within(0.03));
+    }
+}
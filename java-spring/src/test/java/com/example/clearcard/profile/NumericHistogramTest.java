@@ -0,0 +1,79 @@
+package com.example.clearcard.profile;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+class NumericHistogramTest {
+
+    private static long total(List<ResultProfile.Bin> bins) {
+        return bins.stream().mapToLong(ResultProfile.Bin::count).sum();
+    }
+
+    private static long countIn(List<ResultProfile.Bin> bins, double v) {
+        for (ResultProfile.Bin b : bins) {
+            if (v >= b.from() && v <= b.to()) return b.count();
+        }
+        return -1;
+    }
+
+    @Test
+    void rejectsOddBinCounts() {
+        assertThatThrownBy(() -> new NumericHistogram(5, 10)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new NumericHistogram(0, 10)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void emptyAndSeedOnly() {
+        assertThat(new NumericHistogram(10, 100).bins()).isEmpty();
+
+        NumericHistogram h = new NumericHistogram(10, 100);
+        for (int i = 0; i < 10; i++) h.add(i);
+        List<ResultProfile.Bin> bins = h.bins();
+        assertThat(bins).hasSize(10);
+        assertThat(total(bins)).isEqualTo(10);
+        assertThat(bins.get(0).from()).isEqualTo(0.0);
+        assertThat(bins.get(9).to()).isEqualTo(9.0);
+    }
+
+    @Test
+    void uniformValuesFillBinsEvenly() {
+        NumericHistogram h = new NumericHistogram(10, 1_000);
+        Random rnd = new Random(7);
+        h.add(0);
+        h.add(100);
+        for (int i = 0; i < 99_998; i++) h.add(rnd.nextDouble() * 100);
+
+        List<ResultProfile.Bin> bins = h.bins();
+        assertThat(bins).hasSize(10);
+        assertThat(total(bins)).isEqualTo(100_000);
+        for (ResultProfile.Bin b : bins) {
+            assertThat(b.to() - b.from()).isCloseTo(10.0, within(1e-9));
+            assertThat((double) b.count()).isCloseTo(10_000, within(500.0));
+        }
+    }
+
+    @Test
+    void growingMergesNeighbouringBinsWithoutLosingCounts() {
+        NumericHistogram h = new NumericHistogram(8, 8);
+        for (int i = 0; i < 8; i++) h.add(10 + i);      // seed range [10, 17]
+        for (int i = 0; i < 100; i++) h.add(20 + i % 5); // above: bins merge upwards
+        for (int i = 0; i < 50; i++) h.add(-40);         // below: bins merge downwards
+        h.add(1_000);
+
+        List<ResultProfile.Bin> bins = h.bins();
+        assertThat(total(bins)).isEqualTo(159);
+        assertThat(bins.get(0).from()).isLessThanOrEqualTo(-40.0);
+        assertThat(bins.get(bins.size() - 1).to()).isGreaterThanOrEqualTo(1_000.0);
+        for (int i = 1; i < bins.size(); i++) {
+            assertThat(bins.get(i).from()).isCloseTo(bins.get(i - 1).to(), within(1e-9));
+        }
+        assertThat(countIn(bins, -40)).isGreaterThanOrEqualTo(50);
+        assertThat(countIn(bins, 1_000)).isGreaterThanOrEqualTo(1);
+    }
+}
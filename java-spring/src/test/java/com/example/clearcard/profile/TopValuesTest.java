@@ -0,0 +1,63 @@
+package com.example.clearcard.profile;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TopValuesTest {
+
+    @Test
+    void exactWhileUnderCapacity() {
+        TopValues t = new TopValues(10);
+        for (int i = 0; i < 5; i++) t.add("a");
+        for (int i = 0; i < 3; i++) t.add("b");
+        t.add("c");
+
+        assertThat(t.top(10)).containsExactly(
+                new ResultProfile.Top("a", 5, 0),
+                new ResultProfile.Top("b", 3, 0),
+                new ResultProfile.Top("c", 1, 0));
+        assertThat(t.top(1)).containsExactly(new ResultProfile.Top("a", 5, 0));
+    }
+
+    @Test
+    void heavyHittersAreTrackedWithBoundedCounts() {
+        int capacity = 20;
+        TopValues t = new TopValues(capacity);
+        Map<String, Long> actual = new HashMap<>();
+        Random rnd = new Random(42);
+        int rows = 100_000;
+        for (int i = 0; i < rows; i++) {
+            // 3 heavy values at ~10%, 8%, 6%; the rest spread over 50k values
+            double r = rnd.nextDouble();
+            String v = r < 0.10 ? "h1" : r < 0.18 ? "h2" : r < 0.24 ? "h3" : "tail-" + rnd.nextInt(50_000);
+            t.add(v);
+            actual.merge(v, 1L, Long::sum);
+        }
+
+        List<ResultProfile.Top> top = t.top(3);
+
+        assertThat(top.stream().map(ResultProfile.Top::value).toList()).containsExactly("h1", "h2", "h3");
+        for (ResultProfile.Top e : top) {
+            long truth = actual.get(e.value());
+            assertThat(truth).isGreaterThan(rows / capacity);
+            // Space-Saving: count overestimates by at most error, and error is at most rows / capacity
+            assertThat(e.count()).isGreaterThanOrEqualTo(truth);
+            assertThat(e.count() - e.error()).isLessThanOrEqualTo(truth);
+            assertThat(e.error()).isLessThanOrEqualTo(rows / capacity);
+        }
+    }
+
+    @Test
+    void countersThatAreMostlyErrorAreLeftOut() {
+        TopValues t = new TopValues(2);
+        for (int i = 0; i < 100; i++) t.add("u" + i);
+
+        assertThat(t.top(5)).isEmpty();
+    }
+}
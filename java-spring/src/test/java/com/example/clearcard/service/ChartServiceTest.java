@@ -0,0 +1,140 @@
+package com.example.clearcard.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ChartServiceTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    /* ---------------- lttb ---------------- */
+
+    @Test
+    void lttbReturnsEveryIndexWhenThresholdCoversTheSeries() {
+        double[] x = {1, 2, 3, 4, 5};
+        double[] y = {5, 1, 4, 2, 3};
+
+        assertThat(ChartService.lttb(x, y, 5)).containsExactly(0, 1, 2, 3, 4);
+        assertThat(ChartService.lttb(x, y, 50)).containsExactly(0, 1, 2, 3, 4);
+    }
+
+    @Test
+    void lttbKeepsEndpointsAndAscendingIndices() {
+        int n = 1_000;
+        double[] x = new double[n];
+        double[] y = new double[n];
+        for (int i = 0; i < n; i++) {
+            x[i] = i;
+            y[i] = Math.sin(i / 25.0) * 100 + (i % 7);
+        }
+
+        for (int threshold : new int[]{3, 10, 97, 500, n - 1}) {
+            int[] keep = ChartService.lttb(x, y, threshold);
+            assertThat(keep).hasSize(threshold).startsWith(0).endsWith(n - 1).isSorted().doesNotHaveDuplicates();
+        }
+    }
+
+    @Test
+    void lttbKeepsASpike() {
+        int n = 200;
+        double[] x = new double[n];
+        double[] y = new double[n];
+        for (int i = 0; i < n; i++) x[i] = i;
+        y[137] = 1_000;
+
+        int[] keep = ChartService.lttb(x, y, 20);
+
+        assertThat(Arrays.stream(keep).anyMatch(i -> i == 137)).isTrue();
+    }
+
+    @Test
+    void lttbBelowThreeKeepsOnlyTheEnds() {
+        double[] x = {1, 2, 3, 4};
+        double[] y = {1, 2, 3, 4};
+
+        assertThat(ChartService.lttb(x, y, 2)).containsExactly(0, 3);
+        assertThat(ChartService.lttb(new double[]{7}, new double[]{7}, 0)).containsExactly(0);
+    }
+
+    /* ---------------- Grouper.finish ---------------- */
+
+    private static ChartService.Grouper grouper(String cfg, ChartService.Agg agg) throws Exception {
+        JsonNode node = cfg == null ? null : MAPPER.readTree(cfg);
+        ChartService.Grouper g = new ChartService.Grouper(node, agg, 10_000);
+        g.header(List.of("cited_pub_year", "cited_category", "n_articles"));
+        return g;
+    }
+
+    @Test
+    void seriesBeyondMaxSeriesFoldIntoOther() throws Exception {
+        ChartService.Grouper g = grouper("{\"x\":\"cited_pub_year\",\"groupBy\":[\"cited_category\"],\"yAgg\":\"COUNT\"}",
+                ChartService.Agg.SUM);
+        // totals: A=60, B=40, C=7, D=5
+        g.row(List.of("2001", "A", "30"));
+        g.row(List.of("2001", "B", "20"));
+        g.row(List.of("2001", "C", "4"));
+        g.row(List.of("2001", "D", "5"));
+        g.row(List.of("2002", "A", "30"));
+        g.row(List.of("2002", "B", "20"));
+        g.row(List.of("2002", "C", "3"));
+
+        ChartService.Chart c = g.finish("job", "bar", 100, 2, 7);
+
+        assertThat(c.series()).containsExactly("A", "B", ChartService.OTHER);
+        assertThat(c.measure()).isEqualTo("n_articles");
+        assertThat(c.group_by()).containsExactly("cited_category");
+        assertThat(c.points()).hasSize(2);
+        assertThat(c.points().get(0)).isEqualTo(Map.of("cited_pub_year", 2001L, "A", 30.0, "B", 20.0, ChartService.OTHER, 9.0));
+        assertThat(c.points().get(1)).isEqualTo(Map.of("cited_pub_year", 2002L, "A", 30.0, "B", 20.0, ChartService.OTHER, 3.0));
+        assertThat(c.downsampled()).isFalse();
+    }
+
+    @Test
+    void noOtherSeriesWhenEverySeriesFits() throws Exception {
+        ChartService.Grouper g = grouper("{\"groupBy\":[\"cited_category\"]}", ChartService.Agg.SUM);
+        g.row(List.of("2001", "A", "1"));
+        g.row(List.of("2001", "B", "2"));
+
+        ChartService.Chart c = g.finish("job", "line", 100, 2, 2);
+
+        assertThat(c.series()).containsExactly("B", "A");
+        assertThat(c.points().get(0).containsKey(ChartService.OTHER)).isFalse();
+    }
+
+    @Test
+    void descOrderDirReversesNumericX() throws Exception {
+        ChartService.Grouper g = grouper("{\"x\":\"cited_pub_year\",\"orderDir\":\"DESC\"}", ChartService.Agg.SUM);
+        for (String year : List.of("2010", "9", "2003", "100", "2021")) g.row(List.of(year, "A", "1"));
+
+        ChartService.Chart c = g.finish("job", "line", 100, 12, 5);
+
+        assertThat(c.points().stream().map(p -> p.get("cited_pub_year")).toList())
+                .containsExactly(2021L, 2010L, 2003L, 100L, 9L);
+        assertThat(c.series()).containsExactly("n_articles");
+    }
+
+    @Test
+    void descOrderIsKeptWhenDownsampling() throws Exception {
+        ChartService.Grouper g = grouper("{\"orderDir\":\"desc\"}", ChartService.Agg.SUM);
+        for (int year = 1900; year < 2000; year++) g.row(List.of(Integer.toString(year), "A", Integer.toString(year % 13)));
+
+        ChartService.Chart c = g.finish("job", "line", 10, 12, 100);
+
+        List<Object> xs = c.points().stream().map(p -> p.get("cited_pub_year")).toList();
+        assertThat(c.downsampled()).isTrue();
+        assertThat(c.distinct_x()).isEqualTo(100);
+        assertThat(xs).hasSize(10);
+        assertThat(xs.get(0)).isEqualTo(1999L);
+        assertThat(xs.get(9)).isEqualTo(1900L);
+        for (int i = 1; i < xs.size(); i++) {
+            assertThat((Long) xs.get(i)).isLessThan((Long) xs.get(i - 1));
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package com.example.clearcard.service;
+
+import com.example.clearcard.config.AppProps;
+import com.example.clearcard.metrics.ResultMetrics;
+import com.example.clearcard.model.ResultManifest;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * The grace-hash path (build side past max-build-bytes, both sides partitioned to disk) has to give
+ * the same rows as the in-memory join, for every join type and whichever side is hashed.
+ */
+class ResultJoinServiceTest {
+
+    private static final String LEFT = "gs://results/left/manifest.json";
+    private static final String RIGHT = "gs://results/right/manifest.json";
+    private static final List<String> LEFT_COLS = List.of("id", "title", "year");
+    private static final List<String> RIGHT_COLS = List.of("journal", "id");
+
+    @TempDir
+    Path tmp;
+
+    private final Map<String, List<List<String>>> rows = new HashMap<>();
+    private final Map<String, ResultManifest> manifests = new HashMap<>();
+    private GcsCsvJsonService results;
+    private ManifestRepository manifestRepository;
+
+    @BeforeEach
+    void setUp() {
+        // duplicate keys on both sides, keys only one side has, and blank keys (which never match)
+        List<List<String>> left = new ArrayList<>();
+        for (int i = 0; i < 600; i++) {
+            String key = i % 50 == 0 ? "" : "k" + (i % 400);
+            left.add(List.of(key, "title " + i, Integer.toString(1990 + i % 30)));
+        }
+        List<List<String>> right = new ArrayList<>();
+        for (int i = 0; i < 900; i++) {
+            String key = i % 70 == 0 ? "" : "k" + (250 + i % 450);
+            right.add(List.of("journal " + i, key));
+        }
+        rows.put(LEFT, left);
+        rows.put(RIGHT, right);
+
+        results = mock(GcsCsvJsonService.class);
+        when(results.scan(anyString(), any())).thenAnswer(inv -> {
+            String uri = inv.getArgument(0);
+            GcsCsvJsonService.RowSink sink = inv.getArgument(1);
+            sink.header(uri.equals(LEFT) ? LEFT_COLS : RIGHT_COLS);
+            rows.get(uri).forEach(sink::row);
+            return (long) rows.get(uri).size();
+        });
+        manifestRepository = mock(ManifestRepository.class);
+        when(manifestRepository.get(anyString())).thenAnswer(inv -> manifests.get(inv.<String>getArgument(0)));
+    }
+
+    /** The side with the smaller row_count is hashed; {@code buildLeft} picks it through the manifests. */
+    private void manifests(boolean buildLeft) {
+        long small = 10, large = 20;
+        manifests.put(LEFT, manifest(LEFT, LEFT_COLS, buildLeft ? small : large));
+        manifests.put(RIGHT, manifest(RIGHT, RIGHT_COLS, buildLeft ? large : small));
+    }
+
+    private static ResultManifest manifest(String uri, List<String> columns, long rowCount) {
+        return new ResultManifest(uri, uri, columns, rowCount, "csv", "none", List.of(),
+                ResultManifest.Meta.EMPTY, false);
+    }
+
+    private ResultJoinService service(long maxBuildBytes, Path spillDirectory) {
+        AppProps props = new AppProps();
+        props.compare().setMaxBuildBytes(maxBuildBytes);
+        props.compare().setSpillPartitions(7);
+        props.compare().setSpillDirectory(spillDirectory.toString());
+        return new ResultJoinService(results, manifestRepository, new ResultMetrics(new SimpleMeterRegistry()), props);
+    }
+
+    private static List<String> run(ResultJoinService service, ResultJoinService.How how) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        service.join(LEFT, RIGHT, "id", how.name(), "csv").writeTo(out);
+        return Arrays.asList(out.toString(StandardCharsets.UTF_8).split("\n"));
+    }
+
+    /** Header first, then the rows in a fixed order: neither join promises one. */
+    private static List<String> canonical(List<String> lines) {
+        List<String> out = new ArrayList<>(lines.subList(0, 1));
+        out.addAll(lines.subList(1, lines.size()).stream().sorted().toList());
+        return out;
+    }
+
+    /** Nested-loop join over the test data, in the service's output layout. */
+    private List<String> expected(ResultJoinService.How how) {
+        boolean keepLeft = how == ResultJoinService.How.LEFT || how == ResultJoinService.How.FULL;
+        boolean keepRight = how == ResultJoinService.How.RIGHT || how == ResultJoinService.How.FULL;
+        List<String> out = new ArrayList<>();
+        out.add("id,left.title,left.year,right.journal");
+        boolean[] rightMatched = new boolean[rows.get(RIGHT).size()];
+        for (List<String> l : rows.get(LEFT)) {
+            boolean matched = false;
+            for (int j = 0; j < rows.get(RIGHT).size(); j++) {
+                List<String> r = rows.get(RIGHT).get(j);
+                if (l.get(0).isEmpty() || !l.get(0).equals(r.get(1))) continue;
+                matched = rightMatched[j] = true;
+                out.add(String.join(",", l.get(0), l.get(1), l.get(2), r.get(0)));
+            }
+            if (!matched && keepLeft) out.add(String.join(",", l.get(0), l.get(1), l.get(2), ""));
+        }
+        for (int j = 0; j < rightMatched.length; j++) {
+            List<String> r = rows.get(RIGHT).get(j);
+            if (!rightMatched[j] && keepRight) out.add(String.join(",", r.get(1), "", "", r.get(0)));
+        }
+        return canonical(out);
+    }
+
+    @Test
+    void spilledJoinMatchesInMemoryJoin() throws Exception {
+        for (boolean buildLeft : new boolean[]{true, false}) {
+            manifests(buildLeft);
+            for (ResultJoinService.How how : ResultJoinService.How.values()) {
+                String what = how + (buildLeft ? " build=left" : " build=right");
+                Path memSpill = tmp.resolve("mem-" + what.replace(' ', '-'));
+                Path diskSpill = tmp.resolve("disk-" + what.replace(' ', '-'));
+
+                List<String> inMemory = canonical(run(service(64L * 1024 * 1024, memSpill), how));
+                List<String> spilled = canonical(run(service(2 * 1024, diskSpill), how));
+
+                assertThat(inMemory).as(what).isEqualTo(expected(how));
+                assertThat(spilled).as(what).isEqualTo(inMemory);
+                // the spill directory is only created once the build side overflows, and is emptied afterwards
+                assertThat(Files.exists(memSpill)).as(what).isFalse();
+                assertThat(Files.isDirectory(diskSpill)).as(what).isTrue();
+                try (Stream<Path> left = Files.list(diskSpill)) {
+                    assertThat(left.toList()).as(what).isEmpty();
+                }
+            }
+        }
+    }
+
+    @Test
+    void spilledJoinKeepsEveryDuplicateKeyPair() throws Exception {
+        rows.put(LEFT, List.of(List.of("a", "t1", "2000"), List.of("a", "t2", "2001"), List.of("b", "t3", "2002")));
+        rows.put(RIGHT, List.of(List.of("j1", "a"), List.of("j2", "a"), List.of("j3", "a"), List.of("j4", "c")));
+        manifests(true);
+
+        List<String> spilled = canonical(run(service(450, tmp.resolve("spill")), ResultJoinService.How.FULL));
+
+        assertThat(spilled).isEqualTo(expected(ResultJoinService.How.FULL));
+        assertThat(spilled).hasSize(1 + 6 + 1 + 1);
+    }
+
+    @Test
+    void overBudgetPartitionsAreSplitAgain() throws Exception {
+        // 2 partitions cannot bring the build side under 16 KB in one step: the partitions are split again
+        manifests(true);
+        AppProps props = new AppProps();
+        props.compare().setMaxBuildBytes(16 * 1024);
+        props.compare().setSpillPartitions(2);
+        props.compare().setSpillDirectory(tmp.resolve("spill").toString());
+        ResultJoinService service = new ResultJoinService(results, manifestRepository,
+                new ResultMetrics(new SimpleMeterRegistry()), props);
+
+        List<String> spilled = canonical(run(service, ResultJoinService.How.FULL));
+
+        assertThat(spilled).isEqualTo(expected(ResultJoinService.How.FULL));
+        try (Stream<Path> left = Files.list(tmp.resolve("spill"))) {
+            assertThat(left.toList()).isEmpty();
+        }
+    }
+
+    @Test
+    void oneKeyOverTheBudgetFailsWith422() {
+        List<List<String>> hot = new ArrayList<>();
+        for (int i = 0; i < 200; i++) hot.add(List.of("a", "title " + i, "2000"));
+        rows.put(LEFT, hot);
+        manifests(true);
+
+        assertThatThrownBy(() -> run(service(2 * 1024, tmp.resolve("spill")), ResultJoinService.How.INNER))
+                .isInstanceOf(ResponseStatusException.class)
+                .hasMessageContaining("max-build-bytes");
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.clearcard.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SqlFingerprintTest {
+
+    /** What ArticleController builds for a qb search; only the typed values differ between calls. */
+    private static String search(String title, int yearFrom, int yearTo, String... categories) {
+        StringBuilder in = new StringBuilder();
+        for (String c : categories) in.append(in.length() == 0 ? "" : ",").append("N'").append(c.replace("'", "''")).append("'");
+        return """
+                SELECT TOP (5000) cited_title, cited_doi, cited_pub_year
+                FROM dbo.cited_articles
+                """ + " WHERE 1=1  AND (cited_title LIKE N'%" + title + "%' ESCAPE '\\') "
+                + " AND ((cited_pub_year >= " + yearFrom + " AND cited_pub_year <= " + yearTo + ")"
+                + " AND cited_category IN (" + in + ")) ORDER BY cited_pub_year DESC;";
+    }
+
+    @Test
+    void differentlyValuedSearchesShareOneShape() {
+        String a = SqlFingerprint.shape(search("graphene", 2008, 2018, "Physics", "Chemistry"));
+        String b = SqlFingerprint.shape(search("o''brien", 1999, 2024, "Biology", "Medicine", "Ecology", "Law"));
+
+        assertThat(a).isEqualTo(b);
+        assertThat(a).doesNotContain("graphene", "2008", "Physics");
+    }
+
+    @Test
+    void formattingAndCommentsDoNotChangeTheShape() {
+        String a = SqlFingerprint.shape("SELECT a FROM t WHERE b = 1;");
+        String b = SqlFingerprint.shape("select  a\n  from t -- trailing\n where /* why */ b = 42");
+
+        assertThat(SqlFingerprint.normalize("SELECT a\n\tFROM t ;")).isEqualTo("SELECT a FROM t");
+        assertThat(a).isEqualTo("SELECT a FROM t WHERE b = ?");
+        assertThat(b).isEqualTo("select a from t where b = ?");
+    }
+
+    @Test
+    void literalsBecomePlaceholders() {
+        assertThat(SqlFingerprint.shape("WHERE a = 'x''y' AND b = N'xyz' AND c = n'z'"))
+                .isEqualTo("WHERE a = ? AND b = ? AND c = ?");
+        assertThat(SqlFingerprint.shape("WHERE a = 12 AND b = -3.5 AND c > 1.5e-3 AND d = 0xFF00"))
+                .isEqualTo("WHERE a = ? AND b = -? AND c > ? AND d = ?");
+    }
+
+    @Test
+    void identifiersAreKept() {
+        assertThat(SqlFingerprint.shape("SELECT [col 1], \"x'y\", t2.c3, @p1 FROM tbl2 WHERE id = 7"))
+                .isEqualTo("SELECT [col 1], \"x'y\", t2.c3, @p1 FROM tbl2 WHERE id = ?");
+        assertThat(SqlFingerprint.shape("SELECT TOKEN(N'x')")).isEqualTo("SELECT TOKEN(?)");
+    }
+
+    @Test
+    void inListsCollapseWhateverTheirLength() {
+        String two = SqlFingerprint.shape("WHERE id IN (1, 2)");
+        String many = SqlFingerprint.shape("WHERE id IN (1,2,3,4,5,6,7)");
+        String strings = SqlFingerprint.shape("WHERE id IN (N'a' , N'b', 'c')");
+
+        assertThat(two).isEqualTo("WHERE id IN (?, ...)");
+        assertThat(many).isEqualTo(two);
+        assertThat(strings).isEqualTo(two);
+        // a single value is an equality in disguise and stays its own shape
+        assertThat(SqlFingerprint.shape("WHERE id IN (1)")).isEqualTo("WHERE id IN (?)");
+    }
+
+    @Test
+    void sha256SeparatesParts() {
+        assertThat(SqlFingerprint.sha256("a", "bc")).isNotEqualTo(SqlFingerprint.sha256("ab", "c"));
+        assertThat(SqlFingerprint.sha256("x")).hasSize(64).isEqualTo(SqlFingerprint.sha256("x"));
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.clearcard.service;
+
+import com.example.clearcard.config.AppProps;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SqlStatsTest {
+
+    private static SqlStats stats(long slowThresholdMs) {
+        AppProps props = new AppProps();
+        props.sqlStats().setSlowThresholdMs(slowThresholdMs);
+        return new SqlStats(props);
+    }
+
+    @Test
+    void statementsDifferingOnlyInValuesShareOneRow() {
+        SqlStats stats = stats(60_000);
+        stats.record("articles.search", "SELECT * FROM t WHERE y >= 2008 AND c IN (N'a', N'b')",
+                null, TimeUnit.MILLISECONDS.toNanos(10), 5, 500, "OK");
+        stats.record("sql.http", "SELECT *  FROM t\nWHERE y >= 1999 AND c IN (N'x',N'y',N'z');",
+                null, TimeUnit.MILLISECONDS.toNanos(30), 7, 700, "ERROR");
+
+        List<SqlStats.Summary> top = stats.top("count", 10);
+        assertThat(top).hasSize(1);
+        SqlStats.Summary s = top.get(0);
+        assertThat(s.shape()).isEqualTo("SELECT * FROM t WHERE y >= ? AND c IN (?, ...)");
+        assertThat(s.count()).isEqualTo(2);
+        assertThat(s.errors()).isEqualTo(1);
+        assertThat(s.rows()).isEqualTo(12);
+        assertThat(s.bytes()).isEqualTo(1200);
+        assertThat(s.sources()).containsExactly("articles.search", "sql.http");
+        assertThat(s.total_ms()).isEqualTo(40.0);
+        assertThat(s.fingerprint()).isEqualTo(SqlFingerprint.sha256(s.shape()).substring(0, 16));
+    }
+
+    @Test
+    void topSortsByTheRequestedColumn() {
+        SqlStats stats = stats(60_000);
+        for (int i = 0; i < 3; i++) {
+            stats.record("a", "SELECT a FROM t WHERE id = " + i, null, TimeUnit.MILLISECONDS.toNanos(1), 1, 10, "OK");
+        }
+        stats.record("b", "SELECT b FROM t", null, TimeUnit.MILLISECONDS.toNanos(50), 100, 10, "OK");
+
+        assertThat(stats.top("count", 10).get(0).shape()).isEqualTo("SELECT a FROM t WHERE id = ?");
+        assertThat(stats.top("total", 10).get(0).shape()).isEqualTo("SELECT b FROM t");
+        assertThat(stats.top("rows", 1)).hasSize(1);
+    }
+
+    @Test
+    void slowStatementsAreKeptVerbatim() {
+        SqlStats stats = stats(20);
+        stats.record("sql.http", "SELECT 1", Map.of("pageSize", 500), TimeUnit.MILLISECONDS.toNanos(5), 1, 1, "OK");
+        stats.record("sql.http", "SELECT 2", Map.of("pageSize", 500), TimeUnit.MILLISECONDS.toNanos(25), 1, 1, "OK");
+
+        List<SqlStats.Slow> slow = stats.slow();
+        assertThat(slow).hasSize(1);
+        assertThat(slow.get(0).sql()).isEqualTo("SELECT 2");
+        assertThat(slow.get(0).params()).isEqualTo("{\"pageSize\":500}");
+    }
+}
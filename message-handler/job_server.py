@@ -29,6 +29,20 @@ MSSQL_QUERY_TIMEOUT = int(os.getenv("MSSQL_QUERY_TIMEOUT", "300"))
 
 GCS_BUCKET   = os.getenv("GCS_BUCKET", "clearcard-sql-results")
 
+# SqlChunk pages are text cells and compress well. grpc-java accepts gzip (and identity) out of the
+# box; deflate is not in its default registry, so it is not offered here.
+_RESPONSE_CODECS = {"gzip": grpc.Compression.Gzip, "identity": grpc.Compression.NoCompression,
+                    "none": grpc.Compression.NoCompression, "": grpc.Compression.NoCompression}
+
+def _response_compression():
+    name = os.getenv("SQL_RESPONSE_COMPRESSION", "gzip").strip().lower()
+    if name not in _RESPONSE_CODECS:
+        print(f"[sql] unknown SQL_RESPONSE_COMPRESSION={name!r} (expected gzip | identity); using gzip", flush=True)
+        name = "gzip"
+    return _RESPONSE_CODECS[name]
+
+SQL_RESPONSE_COMPRESSION = _response_compression()
+
 # ---------- helpers ----------
 def _now_ts():
     ts = timestamp_pb2.Timestamp()
@@ -68,10 +82,13 @@ class JobService(pb_grpc.JobServiceServicer):
 
     def Submit(self, request, context):
         job_id  = str(uuid.uuid4())
-        req_id  = request.request_id or str(uuid.uuid4())
+        md      = dict(context.invocation_metadata() or [])
+        req_id  = request.request_id or md.get("x-request-id") or str(uuid.uuid4())
         user_id = request.user_id or "anonymous"
+        # W3C trace context from the gateway; handed to the worker so its logs join the same trace
+        traceparent = md.get("traceparent", "")
 
-        print(f"[broker] Submit job {job_id} for user {user_id} (req {req_id})", flush=True)
+        print(f"[broker] Submit job {job_id} for user {user_id} (req {req_id} trace {traceparent or '-'})", flush=True)
 
         # core fields
         sql_raw   = request.sql or ""
@@ -108,6 +125,8 @@ class JobService(pb_grpc.JobServiceServicer):
             "title": title,
             "table_config": table_cfg,
             "chart_config": chart_cfg,
+            "request_id": req_id,
+            "traceparent": traceparent,
         }
         self.r.lpush("jobs:queue", json.dumps(payload))
 
@@ -192,6 +211,8 @@ class SqlController(sql_pb2_grpc.SqlControllerServicer):
         except Exception:
             pass
 
+        context.set_compression(SQL_RESPONSE_COMPRESSION)
+
         t0 = time.time()
         print(f"[sql] Run start req={req_id} pageSize={page_size}", flush=True)
         try:
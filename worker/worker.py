@@ -63,6 +63,13 @@ def _update_sql_status(cx, job_id, **kwargs):
     vals.append(job_id)
     cx.cursor().execute(f"UPDATE dbo.jobs SET {', '.join(sets)} WHERE job_id=?", *vals)
 
+def _delete_partial_manifest(bucket_ref, job_id):
+    # readers serve a partial manifest as a running job's parts; none may outlive the job
+    try:
+        bucket_ref.blob(f"jobs/{job_id}/manifest.partial.json").delete()
+    except Exception:
+        pass
+
 def run_once():
     r = redis.from_url(REDIS_URL, decode_responses=True)
     msg = r.brpop("jobs:queue", timeout=5)
@@ -76,6 +83,9 @@ def run_once():
     page_sz  = int(job.get("page_size", 5000))
     max_rows = int(job.get("max_rows", 5_000_000))
     bucket   = job.get("gcs_bucket", GCS_BUCKET)
+    req_id      = job.get("request_id") or ""
+    traceparent = job.get("traceparent") or ""
+    print(f"job {job_id} start req={req_id or '-'} trace={traceparent or '-'}", flush=True)
 
     # NEW meta (optional)
     title         = (job.get("title") or "").strip()
@@ -112,6 +122,41 @@ def run_once():
             bucket_ref = client.bucket(bucket)
             base_path = f"jobs/{job_id}/"
 
+            def build_manifest(partial: bool):
+                m = {
+                    "job_id": job_id,
+                    "request_id": req_id,
+                    "traceparent": traceparent,
+                    "columns": columns,
+                    # while partial, only what has been uploaded so far
+                    "row_count": sum(c["rows"] for c in chunks_meta) if partial else row_count,
+                    "format": "csv",
+                    "compression": "gzip",
+                    "chunks": list(chunks_meta),
+                    "meta": {
+                        "title": title,
+                        "table_config": _parse_json(table_config),
+                        "chart_config": _parse_json(chart_config),
+                    }
+                }
+                if partial:
+                    m["partial"] = True
+                return m
+
+            def write_json(name: str, obj, no_store: bool = False):
+                buf = json.dumps(obj, ensure_ascii=False).encode("utf-8")
+                blob = bucket_ref.blob(name)
+                if no_store:
+                    blob.cache_control = "no-store"
+                blob.upload_from_file(io.BytesIO(buf), size=len(buf), content_type="application/json")
+
+            def write_partial_manifest():
+                # readers tail this while the job runs; losing one update only delays them
+                try:
+                    write_json(f"{base_path}manifest.partial.json", build_manifest(partial=True), no_store=True)
+                except Exception as e:
+                    print(f"job {job_id} partial manifest write failed: {_short_err(e, 200)}", flush=True)
+
             def upload_chunk(buf: bytes, idx: int, rows_in_chunk: int):
                 nonlocal total_bytes
                 if rows_in_chunk <= 0 or not buf:
@@ -121,6 +166,10 @@ def run_once():
                 blob.upload_from_file(io.BytesIO(buf), size=len(buf), content_type="application/gzip")
                 total_bytes += len(buf)
                 chunks_meta.append({"uri": f"gs://{bucket}/{name}", "rows": rows_in_chunk, "bytes": len(buf)})
+                write_partial_manifest()
+
+            # columns are known now: let readers show the header before the first part lands
+            write_partial_manifest()
 
             # --- chunk state ---
             idx = 0
@@ -156,6 +205,7 @@ def run_once():
                     _record_event(cx, job_id, "CANCELLED", "cancel flag set")
                     _update_sql_status(cx, job_id, state="CANCELLED", completed_at=datetime.utcnow())
                     _set_cache_status(r, job_id, "CANCELLED", rows=row_count, bytes_=total_bytes)
+                    _delete_partial_manifest(bucket_ref, job_id)
                     return
 
                 batch = cur.fetchmany(page_sz)
@@ -187,21 +237,7 @@ def run_once():
             upload_chunk(data, idx, rows_in_chunk)
 
             # write manifest (now includes meta)
-            manifest = {
-                "columns": columns,
-                "row_count": row_count,
-                "format": "csv",
-                "compression": "gzip",
-                "chunks": chunks_meta,
-                "meta": {
-                    "title": title,
-                    "table_config": _parse_json(table_config),
-                    "chart_config": _parse_json(chart_config),
-                }
-            }
-            mblob = storage.Client().bucket(bucket).blob(f"{base_path}manifest.json")
-            mbuf = json.dumps(manifest, ensure_ascii=False).encode("utf-8")
-            mblob.upload_from_file(io.BytesIO(mbuf), size=len(mbuf), content_type="application/json")
+            write_json(f"{base_path}manifest.json", build_manifest(partial=False))
 
             _record_event(cx, job_id, "SUCCEEDED", None)
             _update_sql_status(cx, job_id,
@@ -211,6 +247,7 @@ def run_once():
                                bytes=total_bytes,
                                gcs_uri=f"gs://{bucket}/{base_path}manifest.json")
             _set_cache_status(r, job_id, "SUCCEEDED", rows=row_count, bytes_=total_bytes)
+            _delete_partial_manifest(bucket_ref, job_id)
 
     except Exception as e:
         err = _short_err(e)
@@ -224,7 +261,11 @@ def run_once():
         except Exception:
             pass
         _set_cache_status(r, job_id, "FAILED", rows=row_count, bytes_=total_bytes, error=err)
-        print(f"job {job_id} FAILED: {err}")
+        try:
+            _delete_partial_manifest(storage.Client().bucket(bucket), job_id)
+        except Exception:
+            pass
+        print(f"job {job_id} FAILED req={req_id or '-'}: {err}")
 
 def main():
     while True: